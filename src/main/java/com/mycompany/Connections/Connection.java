@@ -1,73 +1,68 @@
 package com.mycompany.Connections;
 
-import javax.swing.JComponent;
-
 import com.mycompany.entrances.EntranceIcon;
 
-import java.awt.geom.Line2D;
 import java.awt.Color;
 import java.awt.BasicStroke;
-import java.awt.Point;
 
-public class Connection extends JComponent {
-    private Line2D line;
-    private EntranceIcon entr;
-    private EntranceIcon ext;
-    private Point entrDrawPt;
-    private Point extDrawPt;
+/**
+ * A line between two {@code EntranceIcon}s, drawn by a {@code ConnectionPnl}.
+ *
+ * Holds only what is drawn and how; the endpoints themselves are kept by the
+ * panel the connection is added to.
+ *
+ * @author aauyong
+ * @see ConnectionPnl
+ */
+public class Connection {
+    private final EntranceIcon entr;
+    private final EntranceIcon ext;
 
-    private Color color;
-    private BasicStroke stroke;
+    private final Color color;
+    private final BasicStroke stroke;
 
     public Connection(EntranceIcon a, EntranceIcon b) {
-        this.line = new Line2D.Double();
+        this(a, b, DEFAULT_COLOR, DEFAULT_STROKE);
+    }
+
+    public Connection(EntranceIcon a, EntranceIcon b, Color color,
+            BasicStroke stroke) {
         this.entr = a;
         this.ext = b;
-        updateDrawPts();
-
-        this.color = Color.RED;
-        this.stroke = new BasicStroke(3);
-        this.setVisible(true);
+        this.color = color;
+        this.stroke = stroke;
+        this.slot = -1;
     }
 
-    @Override
-    public void paintComponent(java.awt.Graphics g) {
-        java.awt.Graphics2D g2 = (java.awt.Graphics2D) g;
-        this.line.setLine(this.entrDrawPt, this.extDrawPt);
-        System.out.println("Painting");
+    public EntranceIcon getEntrance() {
+        return this.entr;
+    }
 
-        System.out.println(this.entrDrawPt);
-        System.out.println(this.extDrawPt);
-        g2.setPaint(this.color);
-        g2.setStroke(stroke);
-        g2.draw(this.line);
+    public EntranceIcon getExit() {
+        return this.ext;
     }
 
-    protected final void updateDrawPts() {
-        System.out.println("Update %s - %s".formatted( this.entr.getEntrName(), this.ext.getEntrName()));
-        Point translate;
-        java.awt.Dimension d;
-        this.entrDrawPt = this.entr.getLocation();
+    public Color getColor() {
+        return this.color;
+    }
 
-        translate = this.entr.getParent().getLocation();
-        d = this.entr.getPreferredSize();
-        this.entrDrawPt.translate(
-            translate.x + d.width/2,
-            translate.y + d.height/2
-        );
+    public BasicStroke getStroke() {
+        return this.stroke;
+    }
 
-        this.extDrawPt = this.ext.getLocation();
-        System.out.println(extDrawPt);
-        translate = this.ext.getParent().getLocation();
-        d = this.ext.getPreferredSize();
-        System.out.println(translate);
+    /** Slot in the owning {@code ConnectionPnl}, {@code -1} if not added */
+    int getSlot() {
+        return this.slot;
+    }
 
-        this.extDrawPt.translate(
-            translate.x + d.width/2,
-            translate.y + d.height/2
-        );
-        System.out.println(extDrawPt);
-        System.out.println();
+    void setSlot(int slot) {
+        this.slot = slot;
     }
 
+    private static final Color DEFAULT_COLOR = Color.RED;
+
+    private static final BasicStroke DEFAULT_STROKE = new BasicStroke(3);
+
+    /** Slot in the owning {@code ConnectionPnl}, {@code -1} if not added */
+    private int slot;
 }
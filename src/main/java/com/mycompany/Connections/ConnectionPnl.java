@@ -1,31 +1,238 @@
 package com.mycompany.Connections;
 
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+import com.mycompany.entrances.EntranceIcon;
+import com.mycompany.maptracker.FrameScheduler;
 
+/**
+ * A transparent overlay that draws every {@code Connection} in one pass.
+ *
+ * Endpoints are kept in primitive arrays indexed by slot, and lines are
+ * batched into one cached {@code Path2D} per colour and stroke. Endpoints are
+ * recomputed only when the panel is resized or a connected icon moves, at
+ * most once per paint, and the paths are rebuilt only after endpoints or
+ * connections change.
+ *
+ * Removed connections free their slot for the next connection added.
+ * Repaints are batched into the next frame by the {@code FrameScheduler}.
+ *
+ * @author aauyong
+ */
 public class ConnectionPnl extends JPanel {
     public ConnectionPnl() {
-        this.setLayout(null);
-        setVisible(true);
-        setOpaque(false);
-        addComponentListener(new java.awt.event.ComponentAdapter() {
+        this.conns = new Connection[INITIAL_CAPACITY];
+        this.x0 = new float[INITIAL_CAPACITY];
+        this.y0 = new float[INITIAL_CAPACITY];
+        this.x1 = new float[INITIAL_CAPACITY];
+        this.y1 = new float[INITIAL_CAPACITY];
+        this.freeSlots = new int[INITIAL_CAPACITY];
+        this.paths = new LinkedHashMap<>();
+
+        this.iconMoved = new java.awt.event.ComponentAdapter() {
+            @Override
+            public void componentMoved(java.awt.event.ComponentEvent evt) {
+                markPtsDirty();
+            }
+
             @Override
             public void componentResized(java.awt.event.ComponentEvent evt) {
-                updateConnections();
+                markPtsDirty();
             }
-        });
+        };
+
+        this.setLayout(null);
+        setVisible(true);
+        setOpaque(false);
+        addComponentListener(this.iconMoved);
+    }
+
+    /**
+     * Adds {@code c} to be drawn, reusing a freed slot if there is one.
+     * @param c Connection to draw
+     */
+    public void addConnection(Connection c) {
+        if (c.getSlot() >= 0)
+            return;
+
+        int slot;
+        if (this.freeCount > 0) {
+            slot = this.freeSlots[--this.freeCount];
+        } else {
+            if (this.used == this.conns.length)
+                grow();
+            slot = this.used++;
+        }
+
+        c.setSlot(slot);
+        this.conns[slot] = c;
+        c.getEntrance().addComponentListener(this.iconMoved);
+        c.getExit().addComponentListener(this.iconMoved);
+
+        updateDrawPts(slot);
+        this.pathsDirty = true;
+        FrameScheduler.markDirty(this);
+    }
+
+    /**
+     * Stops drawing {@code c} and frees its slot.
+     * @param c Connection to remove
+     */
+    public void removeConnection(Connection c) {
+        int slot = c.getSlot();
+        if (slot < 0 || this.conns[slot] != c)
+            return;
+
+        this.conns[slot] = null;
+        c.setSlot(-1);
+        c.getEntrance().removeComponentListener(this.iconMoved);
+        c.getExit().removeComponentListener(this.iconMoved);
+
+        if (this.freeCount == this.freeSlots.length)
+            this.freeSlots = Arrays.copyOf(this.freeSlots, this.freeSlots.length * 2);
+        this.freeSlots[this.freeCount++] = slot;
+
+        this.pathsDirty = true;
+        FrameScheduler.markDirty(this);
+    }
+
+    @Override
+    public void paintComponent(Graphics g) {
+        if (this.ptsDirty)
+            updateConnections();
+        if (this.pathsDirty)
+            rebuildPaths();
+
+        Graphics2D g2 = (Graphics2D) g;
+        var stroke = g2.getStroke();
+        for (var e : this.paths.entrySet()) {
+            g2.setPaint(e.getKey().color());
+            g2.setStroke(e.getKey().stroke());
+            g2.draw(e.getValue());
+        }
+        g2.setStroke(stroke);
     }
-    
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /**
+     * Flags the endpoints to be recomputed on the next paint, so a relayout
+     * that moves many icons only recomputes them once.
+     */
+    private void markPtsDirty() {
+        if (!this.ptsDirty) {
+            this.ptsDirty = true;
+            FrameScheduler.markDirty(this);
+        }
+    }
+
+    /** Recomputes the endpoints of every connection */
     private void updateConnections() {
-        for (var c : getComponents() ) {
-            var connect = (Connection) c;
-            connect.updateDrawPts();
+        for (int i = 0; i < this.used; i++) {
+            if (this.conns[i] != null)
+                updateDrawPts(i);
         }
-        repaint();
+        this.ptsDirty = false;
+        this.pathsDirty = true;
     }
-            
-    public void addConnection(Connection c) {
-        add(c);
-        c.setBounds(0,0,getParent().getWidth(),getParent().getHeight());
+
+    /**
+     * Sets the endpoints of the connection in {@code slot} to the centers of
+     * its icons, in the coordinate space of {@code this}.
+     */
+    private void updateDrawPts(int slot) {
+        Connection c = this.conns[slot];
+        Point a = centerOf(c.getEntrance());
+        Point b = centerOf(c.getExit());
+        this.x0[slot] = a.x;
+        this.y0[slot] = a.y;
+        this.x1[slot] = b.x;
+        this.y1[slot] = b.y;
+    }
+
+    private Point centerOf(EntranceIcon e) {
+        var d = e.getPreferredSize();
+        var p = new Point(d.width / 2, d.height / 2);
+        return e.getParent() != null
+                ? SwingUtilities.convertPoint(e, p, this)
+                : p;
+    }
+
+    /** Batches every line into one path per colour and stroke */
+    private void rebuildPaths() {
+        for (var p : this.paths.values()) {
+            p.reset();
+        }
+
+        for (int i = 0; i < this.used; i++) {
+            Connection c = this.conns[i];
+            if (c == null)
+                continue;
+            var path = this.paths.computeIfAbsent(
+                new Style(c.getColor(), c.getStroke()),
+                k -> new Path2D.Float());
+            path.moveTo(this.x0[i], this.y0[i]);
+            path.lineTo(this.x1[i], this.y1[i]);
+        }
+
+        this.paths.values().removeIf(p -> p.getCurrentPoint() == null);
+        this.pathsDirty = false;
+    }
+
+    private void grow() {
+        int cap = this.conns.length * 2;
+        this.conns = Arrays.copyOf(this.conns, cap);
+        this.x0 = Arrays.copyOf(this.x0, cap);
+        this.y0 = Arrays.copyOf(this.y0, cap);
+        this.x1 = Arrays.copyOf(this.x1, cap);
+        this.y1 = Arrays.copyOf(this.y1, cap);
     }
 
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    /** Key for batching lines that are drawn the same way */
+    private record Style(Color color, BasicStroke stroke) {}
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    /** Connection in each slot, {@code null} for free slots */
+    private Connection[] conns;
+
+    /** Endpoint coordinates of each slot */
+    private float[] x0, y0, x1, y1;
+
+    /** Number of slots ever handed out */
+    private int used;
+
+    /** Stack of freed slots */
+    private int[] freeSlots;
+
+    private int freeCount;
+
+    /** Cached batched lines, by style */
+    private final Map<Style, Path2D.Float> paths;
+
+    /** Whether the endpoints are out of date */
+    private boolean ptsDirty;
+
+    /** Whether {@code paths} is out of date */
+    private boolean pathsDirty;
+
+    /** Listener that recomputes endpoints when an icon moves */
+    private final java.awt.event.ComponentAdapter iconMoved;
 }
@@ -1,8 +1,8 @@
 package com.mycompany.displaypnl;
 
 import com.mycompany.entrancerando.SettingsHandler;
+import com.mycompany.eventhandling.EventLog;
 
-import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 
@@ -32,13 +32,12 @@ public class DisplayPnl extends JPanel {
     }
 
     /**
-     * Calls the {@code EvntTbl}'s {@code addEvent} with the parameters
-     * @param evntType Type of event to add
-     * @param entr Name of entrance
-     * @param ext Name of exit
+     * Calls the {@code EvntTbl}'s {@code setEventLog} with {@code log}, so
+     * that the table shows its events.
+     * @param log Log of events to show
      */
-    public void addEvent(String evntType, String entr, String ext) {
-        evntLogTbl.addEvent(evntType, entr, ext);
+    public void setEventLog(EventLog log) {
+        evntLogTbl.setEventLog(log);
     }
 
     /**
@@ -48,28 +47,6 @@ public class DisplayPnl extends JPanel {
         return this.evntLogTbl.getModel();
     }
 
-    /**
-     * Call {@code evntLog}'s {@code getEvents}
-     * @return List of String[] containing the events
-     *
-     * @see com.mycompany.displaypnl.EvntTbl
-     */
-    public List<String[]> getEvents() {
-        return evntLogTbl.getEvents();
-    }
-
-    /**
-     * Retreives the row indicated by {@code rowIdx}
-     *
-     * {@code EventTbl} stores items from recent to latest, therefore index 0
-     * refers to the newest item.
-     * @param rowIdx
-     * @return
-     */
-    public int getRow(int rowIdx) {
-        return evntLogTbl.getModel().getRowCount() - rowIdx;
-    }
-
     /** Accesser to the {@code this.toggleUseless} button*/
     public javax.swing.JToggleButton getUselessButton() {
         return this.toggleUseless;
@@ -8,27 +8,33 @@ import javax.swing.JTable;
 import java.awt.Component;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.time.format.DateTimeFormatter;
 
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableCellRenderer;
-import java.time.LocalTime;
-import java.util.ArrayList;
-import java.util.List;
+
+import com.mycompany.eventhandling.EntranceEvent;
+import com.mycompany.eventhandling.EventLog;
 
 
 /**
- * A JTable for storing and displaying Events as String[].
+ * A JTable for displaying Events.
  *
  * The table displays each event as a row, with the timestamp of the event,
  * type of event, name of affected entrance, and name of affected exit.
  * Additionally, the final column is a delete button to remove a specific
  * events
  *
- * Events are stored in a stack-like manner: Most recent events are stored
- * at the top of the table, whereas the oldest events are at the bottom.
+ * The table doesn't keep events of its own. Its model reads them straight
+ * from an {@code EventLog}, which is kept oldest first, backwards so that the
+ * most recent events are at the top of the table, whereas the oldest events
+ * are at the bottom. Cell strings are only made when a row is drawn.
  *
  * Access is limited, most interfacing is done through the {@code DisplayPnl}.
  *
- * Supports deleting and getting specific rows by index.
+ * Deleting a row removes its event from the log by the event's id, which
+ * stays the same however the rows move, and the log tells whoever else is
+ * following it.
  *
  * Utilizes a custom table model and custom cell editors and renderers to
  * build the table buttons.
@@ -37,7 +43,6 @@ import java.util.List;
 public class EvntTbl extends JTable {
     public EvntTbl() {
         this.model = new EvntTblModel();
-        this.events = new ArrayList<>();
 
         setModel(model);
         getColumn("Delete").setCellRenderer(new ButtonRenderer());
@@ -54,24 +59,11 @@ public class EvntTbl extends JTable {
     }
 
     /**
-     * Adds an Event to the table.
-     *
-     * An event is described as four Strings; A timestamp, an Event Type,
-     * the entrance name, and the exit name.
-     *
-     * The timestamp is calculated and truncated down to seconds. All of these
-     * elements then intstantiate a string array that is inserted into the table at
-     * index 0.
-     * @param evntType
-     * @param entrName
-     * @param extName
+     * Shows the events of {@code log}, replacing any log shown before.
+     * @param log
      */
-    public void addEvent(String evntType, String entrName, String extName) {
-        LocalTime time = LocalTime.now();
-        time = time.truncatedTo(java.time.temporal.ChronoUnit.SECONDS);
-        String[] s = {time.toString(), evntType, entrName, extName};
-        this.model.insertRow(0, s);
-        events.add(0, s);
+    public void setEventLog(EventLog log) {
+        this.model.setEventLog(log);
     }
 
     /**
@@ -79,31 +71,80 @@ public class EvntTbl extends JTable {
      * @param row
      */
     protected void deleteEvent(int row) {
-        model.removeRow(row);
+        this.model.deleteRow(row);
     }
 
-
-    protected List<String[]> getEvents() {
-        return events;
+    /**
+     * Delete the event with id {@code id}, wherever its row is
+     * @param id
+     */
+    protected void deleteEventById(int id) {
+        this.model.deleteId(id);
     }
 
     /**
      * Custom Table Model encapsulated in the {@code EvntTbl}.
      *
-     * Creates a five column table; Timestamp, Event, Entrance, Exit, and Delete.
+     * Creates a five column table; Timestamp, Event, Entrance, Exit, and Delete,
+     * with a row for each event of the {@code EventLog}, newest first. Each
+     * batch of appended events is one insertion of rows at the top.
      *
      * Only allows the 5th column to be edited, the delete button.
      *
      * @author aauyong
      */
-    private class EvntTblModel extends javax.swing.table.DefaultTableModel {
-        public EvntTblModel() {
-            super(
-                new Object [][] {},
-                new String [] {
-                    "Timestamp", "Event", "Entrance", "Exit", "Delete"
-                }
-            );
+    private class EvntTblModel extends AbstractTableModel
+            implements EventLog.Listener {
+
+        void setEventLog(EventLog log) {
+            if (this.log != null)
+                this.log.removeListener(this);
+            this.log = log;
+            if (log != null)
+                log.addListener(this);
+            fireTableDataChanged();
+        }
+
+        void deleteRow(int row) {
+            if (this.log != null && row >= 0 && row < getRowCount())
+                this.log.remove(indexOf(row));
+        }
+
+        void deleteId(int id) {
+            if (this.log != null)
+                this.log.removeById(id);
+        }
+
+        /** Id of the event shown in {@code row} */
+        int idAt(int row) {
+            return this.log.getId(indexOf(row));
+        }
+
+        @Override
+        public int getRowCount() {
+            return this.log == null ? 0 : this.log.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            int i = indexOf(row);
+            return switch (column) {
+                case 0 -> TIME_FORMAT.format(this.log.getTime(i));
+                case 1 -> this.log.getType(i);
+                case 2 -> this.log.nameOf(this.log.getEntranceA(i));
+                case 3 -> this.log.nameOf(this.log.getEntranceB(i));
+                default -> null;
+            };
         }
 
         /**
@@ -113,6 +154,37 @@ public class EvntTbl extends JTable {
         public boolean isCellEditable(int row, int column) {
             return column == 4;
         }
+
+        /** New events are the newest, so they go in at the top */
+        @Override
+        public void eventsAppended(int from, int to) {
+            fireTableRowsInserted(0, to - from - 1);
+        }
+
+        @Override
+        public void eventRemoved(int i, EntranceEvent e) {
+            int row = this.log.size() - i;
+            fireTableRowsDeleted(row, row);
+        }
+
+        /** Index in the log of the event shown in {@code row} */
+        private int indexOf(int row) {
+            return this.log.size() - 1 - row;
+        }
+
+        private static final String[] COLUMNS = {
+            "Timestamp", "Event", "Entrance", "Exit", "Delete"
+        };
+
+        /**
+         * Timestamps as they were always shown, to the second. Unlike
+         * {@code LocalTime.toString}, keeps the seconds on the minute.
+         */
+        private static final DateTimeFormatter TIME_FORMAT =
+                DateTimeFormatter.ofPattern("HH:mm:ss");
+
+        /** Log the rows are read from, {@code null} if none is shown */
+        private EventLog log;
     }
 
     /**
@@ -146,11 +218,13 @@ public class EvntTbl extends JTable {
     /**
      * Custom DefaultCellEditor with a JButton
      *
-     * Deletes rows of the table when the button is pressed
+     * Deletes rows of the table when the button is pressed. The event is
+     * picked by id when editing starts, so that rows added before the press
+     * don't change which event goes.
      */
     private class ButtonEditor extends DefaultCellEditor {
         protected JButton button;
-        private int currentRow;
+        private int currentId;
 
         public ButtonEditor(JCheckBox checkBox) {
             super(checkBox);
@@ -160,19 +234,19 @@ public class EvntTbl extends JTable {
 
             button.addActionListener(new ActionListener() {
                 public void actionPerformed(ActionEvent e) {
-                    deleteEvent(currentRow);
+                    // The row is about to go, stop editing it first
+                    fireEditingStopped();
+                    deleteEventById(currentId);
                 }
             });
         }
 
         public Component getTableCellEditorComponent(JTable table, Object value,
                 boolean isSelected, int row, int column) {
-            this.currentRow = row;
+            this.currentId = model.idAt(row);
             return button;
         }
     }
 
     private EvntTblModel model;
-
-    private List<String[]> events;
 }
@@ -13,6 +13,14 @@ public class EntranceRando {
      * @param args the command line arguments
      */
     public static void main(String args[]) {
+        StartupPipeline.start();
+    }
+
+    /**
+     * Sets the Nimbus look and feel, staying with the default one if it
+     * isn't available. Called on the EDT before any component is created.
+     */
+    static void installLookAndFeel() {
         /* Set the Nimbus look and feel */
         //<editor-fold defaultstate="collapsed" desc=" Look and feel setting code (optional) ">
         /* If Nimbus (introduced in Java SE 6) is not available, stay with the default look and feel.
@@ -35,12 +43,18 @@ public class EntranceRando {
             java.util.logging.Logger.getLogger(EntranceWindow.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
         }
         //</editor-fold>
+    }
 
-        /* Create and display the form */
-        java.awt.EventQueue.invokeLater(new Runnable() {
-            public void run() {
-                new EntranceWindow().setVisible(true);
-            }
-        });
+    /**
+     * Directory that the tracker keeps its local files in, such as caches.
+     * Not created by this call.
+     *
+     * @return {@code ~/.entrancerando}
+     */
+    public static java.nio.file.Path getAppDir() {
+        return java.nio.file.Paths.get(System.getProperty("user.home"), APP_DIR_NAME);
     }
+
+    /** Name of the per-user directory the tracker keeps its files in */
+    private static final String APP_DIR_NAME = ".entrancerando";
 }
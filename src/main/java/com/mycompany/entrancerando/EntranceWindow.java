@@ -16,12 +16,36 @@ import com.mycompany.entrances.ConnectionHandler;
 public class EntranceWindow extends javax.swing.JFrame {
 
     /**
-     * Creates new form EntranceWindow
+     * Creates new form EntranceWindow. The map tracker starts out empty, and
+     * the entrance events are wired up by {@code initEntranceEvents} once its
+     * entrances have been added.
+     *
+     * @see StartupPipeline
      */
     public EntranceWindow() {
         initComponents();
     }
 
+    public MapTracker getMapTracker() {
+        return this.mapTrckr;
+    }
+
+    /**
+     * Starts handling clicks on the entrances of the map tracker. Must be
+     * called once, after the entrances are added.
+     */
+    public void initEntranceEvents() {
+        this.evntHndlr = new EventHandler(dispPnl, mapTrckr);
+    }
+
+    /**
+     * Offers to restore the last session and starts journaling this one.
+     * Must be called once, after {@code initEntranceEvents}.
+     */
+    public void restoreSession() {
+        this.evntHndlr.restoreSession();
+    }
+
     /**
      * This method is called from within the constructor to initialize the form. WARNING:
      * Do NOT modify this code. The content of this method is always regenerated by the
@@ -34,7 +58,6 @@ public class EntranceWindow extends javax.swing.JFrame {
         setDefaultCloseOperation(javax.swing.WindowConstants.EXIT_ON_CLOSE);
         this.dispPnl = new DisplayPnl();
         this.mapTrckr = new MapTracker();
-        this.evntHndlr = new EventHandler(dispPnl, mapTrckr);
 
         sttngsHndlr = SettingsHandler.createInstance(dispPnl, mapTrckr);
         cnnctnHndlr = ConnectionHandler.createInstance();
@@ -54,6 +54,7 @@ public class SettingsHandler {
                 currGroupingSetting = Grouping.getGrouping((String)groupSettings.getSelectedItem());
 
                 ConnectionHandler.updateGroupSettings(currGroupingSetting);
+                mapTrckr.startAnalysis();
             }
 
         });
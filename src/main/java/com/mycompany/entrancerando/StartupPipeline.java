@@ -0,0 +1,261 @@
+package com.mycompany.entrancerando;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import javax.swing.SwingUtilities;
+
+import com.mycompany.locationdata.LocationCatalog;
+import com.mycompany.maptracker.MapDecoder;
+import com.mycompany.maptracker.MapTracker;
+
+/**
+ * Starts the tracker as a graph of phases, so that the window can be shown
+ * before the maps and location data have finished loading.<p>
+ *
+ * Loading phases run on a worker pool, and every phase that touches
+ * components runs on the EDT once the phases it depends on are done:
+ * <pre>
+ *  look and feel --> window --+--> entrances --> events
+ *  catalog -------------------+
+ *  light map size ------------+
+ *  dark map size -------------+
+ *  light map decode ---------> light map   (also after window)
+ *  dark map decode ----------> dark map    (also after window)
+ * </pre>
+ * The window opens with placeholder maps, which are replaced as the decodes
+ * finish. Once the events are wired up, the last session is offered to be
+ * restored, outside of any phase.<p>
+ *
+ * The time each phase took is kept, along with the time until the window was
+ * first shown and the time until entrances could be clicked, and a summary is
+ * printed once every phase is done.
+ *
+ * @author aauyong
+ */
+public final class StartupPipeline {
+
+    /**
+     * Starts the tracker. Returns straight away; the phases carry on in the
+     * background.
+     * @return The running pipeline
+     */
+    public static StartupPipeline start() {
+        var p = new StartupPipeline();
+        current = p;
+        p.run();
+        return p;
+    }
+
+    /** The pipeline the tracker was started with, {@code null} if none */
+    public static StartupPipeline getCurrent() {
+        return current;
+    }
+
+    /**
+     * Milliseconds each finished phase took, in the order they finished.
+     * Phases that run on the EDT include none of the time spent waiting for
+     * it.
+     */
+    public Map<String, Double> getPhaseMillis() {
+        synchronized (this.phaseMillis) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(this.phaseMillis));
+        }
+    }
+
+    /**
+     * Milliseconds from start until the window was first shown, or
+     * {@code -1} if it hasn't been yet
+     */
+    public double getTimeToFirstFrameMillis() {
+        return sinceStart(this.firstFrameNanos);
+    }
+
+    /**
+     * Milliseconds from start until entrances could be clicked, or {@code -1}
+     * if they can't be yet
+     */
+    public double getTimeToInteractiveMillis() {
+        return sinceStart(this.interactiveNanos);
+    }
+
+    /** Completes once every phase has finished, successfully or not */
+    public CompletableFuture<Void> getDone() {
+        return this.done;
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    private StartupPipeline() {
+        this.startNanos = System.nanoTime();
+        this.phaseMillis = new LinkedHashMap<>();
+        this.firstFrameNanos = 0;
+        this.interactiveNanos = 0;
+    }
+
+    private void run() {
+        ExecutorService workers = Executors.newFixedThreadPool(WORKERS, r -> {
+            var t = new Thread(r, "startup");
+            t.setDaemon(true);
+            return t;
+        });
+        Executor edt = SwingUtilities::invokeLater;
+
+        MapDecoder lightDec = MapTracker.createDecoder(true);
+        MapDecoder darkDec = MapTracker.createDecoder(false);
+
+        var lookAndFeel = phase("look and feel", edt, () -> {
+            EntranceRando.installLookAndFeel();
+            return null;
+        });
+        var catalog = phase("catalog", workers, LocationCatalog::load);
+        var lightSize = phase("light map size", workers, () -> sourceSize(lightDec));
+        var darkSize = phase("dark map size", workers, () -> sourceSize(darkDec));
+        var lightImg = phase("light map decode", workers, () -> decode(lightDec));
+        var darkImg = phase("dark map decode", workers, () -> decode(darkDec));
+
+        var window = phase("window", edt, () -> {
+            var w = new EntranceWindow();
+            w.addWindowListener(new java.awt.event.WindowAdapter() {
+                @Override
+                public void windowOpened(java.awt.event.WindowEvent evt) {
+                    firstFrameNanos = System.nanoTime();
+                }
+            });
+            w.setVisible(true);
+            return w;
+        }, lookAndFeel);
+
+        var lightShown = phase("light map", edt, () -> {
+            window.join().getMapTracker().setMap(true, lightDec, lightImg.join());
+            return null;
+        }, window, lightImg);
+        var darkShown = phase("dark map", edt, () -> {
+            window.join().getMapTracker().setMap(false, darkDec, darkImg.join());
+            return null;
+        }, window, darkImg);
+
+        var entrances = phase("entrances", edt, () -> {
+            if (catalog.join() != null)
+                window.join().getMapTracker().addEntrances(catalog.join(),
+                        lightSize.join(), darkSize.join());
+            return null;
+        }, window, catalog, lightSize, darkSize);
+
+        var events = phase("events", edt, () -> {
+            window.join().initEntranceEvents();
+            this.interactiveNanos = System.nanoTime();
+            return null;
+        }, entrances);
+
+        // Asked once the tracker is up, so the prompt holds up neither the
+        // window nor the timings
+        events.thenRunAsync(() -> window.join().restoreSession(), edt);
+
+        this.done = CompletableFuture
+            .allOf(lightShown, darkShown, events)
+            .handle((v, ex) -> {
+                workers.shutdown();
+                printSummary();
+                return null;
+            });
+    }
+
+    /**
+     * Runs {@code work} on {@code ex} once every one of {@code deps} has
+     * completed, timing it. If a dependency failed, {@code work} is skipped
+     * and the returned future fails too.
+     */
+    private <T> CompletableFuture<T> phase(String name, Executor ex,
+            Supplier<T> work, CompletableFuture<?>... deps) {
+        return CompletableFuture.allOf(deps).thenApplyAsync(v -> {
+            long start = System.nanoTime();
+            try {
+                return work.get();
+            } finally {
+                synchronized (this.phaseMillis) {
+                    this.phaseMillis.put(name, (System.nanoTime() - start) / 1e6);
+                }
+            }
+        }, ex).whenComplete((v, t) -> {
+            if (t != null && !(t.getCause() instanceof PhaseSkipped))
+                System.out.println("Startup phase " + name + " failed: " + t.getCause());
+        }).exceptionallyCompose(t -> CompletableFuture.failedFuture(new PhaseSkipped()));
+    }
+
+    /** Decodes the map at the size it's first shown at, {@code null} if it can't */
+    private static BufferedImage decode(MapDecoder dec) {
+        try {
+            return dec.decode(com.mycompany.maptracker.MapPnl.DEFAULT_SIZE);
+        } catch (java.io.IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Size of the full resolution map, which entrance coordinates are
+     * relative to. Falls back to {@code DEFAULT_MAP_SIZE} if it can't be read.
+     */
+    private static Dimension sourceSize(MapDecoder dec) {
+        try {
+            return dec.getSourceSize();
+        } catch (java.io.IOException e) {
+            return new Dimension(DEFAULT_MAP_SIZE, DEFAULT_MAP_SIZE);
+        }
+    }
+
+    private double sinceStart(long nanos) {
+        return nanos == 0 ? -1 : (nanos - this.startNanos) / 1e6;
+    }
+
+    private void printSummary() {
+        var sb = new StringBuilder("Startup:");
+        getPhaseMillis().forEach((name, ms) ->
+            sb.append(String.format(" %s %.1f ms,", name, ms)));
+        sb.append(String.format(" first frame at %.1f ms, interactive at %.1f ms",
+                getTimeToFirstFrameMillis(), getTimeToInteractiveMillis()));
+        System.out.println(sb);
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    /** Marks a phase that didn't run because one it depends on failed */
+    private static class PhaseSkipped extends RuntimeException {
+        PhaseSkipped() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final int WORKERS =
+        Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /** Width and height entrance coordinates are given on */
+    private static final int DEFAULT_MAP_SIZE = 4096;
+
+    private static volatile StartupPipeline current;
+
+    private final long startNanos;
+
+    /** Time taken by each finished phase, guarded by itself */
+    private final Map<String, Double> phaseMillis;
+
+    /** When the window was first shown, {@code 0} until then */
+    private volatile long firstFrameNanos;
+
+    /** When entrances became clickable, {@code 0} until then */
+    private volatile long interactiveNanos;
+
+    private CompletableFuture<Void> done;
+}
@@ -0,0 +1,135 @@
+package com.mycompany.entrances;
+
+/**
+ * The nodes searched by {@code ReachabilityEngine} and {@code RouteFinder}.<p>
+ *
+ * Each entrance has two nodes, its outside, the spot in front of its door,
+ * and its interior, the cave behind the door. The members of a group share
+ * one interior, since they are doors of the same cave. An entrance {@code a}
+ * connected to {@code b} joins the outside of {@code a} to the interior of
+ * {@code b}: going in at {@code a} comes out inside {@code b}, and leaving
+ * that cave through {@code b} comes back out at {@code a}. An entrance left
+ * vanilla is connected to itself, which joins its own outside and interior.
+ * <p>
+ *
+ * The location data has no overworld regions finer than the light and dark
+ * worlds, so each world's overworld is one more node, joined to the outside
+ * of every entrance in that world.<p>
+ *
+ * Outside nodes are numbered as the entrances are, interior nodes follow,
+ * numbered by the entrance that is the group's first member, and the light
+ * and dark overworlds come last.
+ *
+ * @author aauyong
+ * @see ReachabilityEngine
+ * @see RouteFinder
+ */
+final class CaveGraph {
+
+    CaveGraph(TrackerState<?, ?> tracker) {
+        int n = tracker.size();
+        this.size = n;
+        this.interiors = new int[n];
+        this.doors = new int[n][];
+        this.worlds = new int[n];
+        this.outsides = new int[WORLDS][];
+        int[] counts = new int[WORLDS];
+        for (int i = 0; i < n; i++) {
+            this.worlds[i] = n * 2 + tracker.getWorld(i) - TrackerState.LIGHT;
+            counts[tracker.getWorld(i) - TrackerState.LIGHT]++;
+        }
+        for (int w = 0; w < WORLDS; w++) {
+            this.outsides[w] = new int[counts[w]];
+            counts[w] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            int w = tracker.getWorld(i) - TrackerState.LIGHT;
+            this.outsides[w][counts[w]++] = i;
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (tracker.getGroup(i) != TrackerState.NONE)
+                continue;
+            this.interiors[i] = n + i;
+            this.doors[i] = new int[] {i};
+        }
+        for (int g = 0; g < tracker.groupCount(); g++) {
+            int[] members = new int[tracker.getGroupSize(g)];
+            for (int k = 0; k < members.length; k++) {
+                members[k] = tracker.getGroupMember(g, k);
+                this.interiors[members[k]] = n + members[0];
+            }
+            this.doors[members[0]] = members;
+        }
+    }
+
+    /** Number of nodes, outsides, interiors and overworlds */
+    int nodes() {
+        return this.size * 2 + WORLDS;
+    }
+
+    /** Node for the spot in front of entrance {@code id} */
+    int outside(int id) {
+        return id;
+    }
+
+    /** Node for the cave behind entrance {@code id} */
+    int interior(int id) {
+        return this.interiors[id];
+    }
+
+    /** Node for the overworld entrance {@code id} is in */
+    int overworld(int id) {
+        return this.worlds[id];
+    }
+
+    boolean isInterior(int node) {
+        return node >= this.size && node < this.size * 2;
+    }
+
+    boolean isOverworld(int node) {
+        return node >= this.size * 2;
+    }
+
+    /**
+     * Entrances leading into interior {@code node}, the members of its group
+     * or the one entrance it is behind.
+     * @return The entrances, must not be changed
+     */
+    int[] doors(int node) {
+        return this.doors[node - this.size];
+    }
+
+    /**
+     * Entrances in overworld {@code node}.
+     * @return The entrances, must not be changed
+     */
+    int[] outsides(int node) {
+        return this.outsides[node - this.size * 2];
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    /** One overworld node for each of the light and dark worlds */
+    private static final int WORLDS = 2;
+
+    /** Number of entrances */
+    private final int size;
+
+    /** Interior node of each entrance */
+    private final int[] interiors;
+
+    /**
+     * Entrances into each interior node, indexed by the node less
+     * {@code size}, {@code null} for numbers no interior uses
+     */
+    private final int[][] doors;
+
+    /** Overworld node of each entrance */
+    private final int[] worlds;
+
+    /** Entrances in each overworld, light then dark */
+    private final int[][] outsides;
+}
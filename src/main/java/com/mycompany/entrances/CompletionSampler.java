@@ -0,0 +1,292 @@
+package com.mycompany.entrances;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+
+import com.mycompany.entrancerando.SettingsHandler.Grouping;
+
+/**
+ * Estimates where each unconnected entrance is likely to lead by sampling
+ * random completions of the shuffle.<p>
+ *
+ * A completion pairs every open entrance of {@code OpenConnections} with one
+ * in its domain. It is built by repeatedly taking the entrance with the
+ * fewest partners left and pairing it with one of them at random, pairing
+ * whole groups member by member when the two would be connected as groups.
+ * If some entrance runs out of partners the completion is thrown away and
+ * another tried. Counting how often each pair turns up over thousands of
+ * completions gives the chance of each destination. Completions are built
+ * this way rather than uniformly, so the chances are estimates.<p>
+ *
+ * Sampling is split across a {@code ForkJoinPool} with a thread per core,
+ * each part with its own split of the random generator and its own counts,
+ * which are added together as the parts join. Like {@code DeductionEngine},
+ * each {@code request} abandons the one before it, and a result is only
+ * handed back, on the EDT, if no newer request has been made since.
+ *
+ * @author aauyong
+ */
+public final class CompletionSampler {
+
+    /**
+     * Chances of each destination, as of {@code epoch} and {@code grouping}.
+     *
+     * @param epoch {@code TrackerState} connection epoch sampled from
+     * @param grouping Grouping settings sampled under
+     * @param size Number of entrances
+     * @param samples Completions that were counted
+     * @param attempts Completions tried, including those thrown away
+     * @param samplesPerSecond Completions counted per second
+     * @param counts How many completions paired {@code a} with {@code b}, at
+     * {@code a * size + b}
+     */
+    public record Estimate(long epoch, Grouping grouping, int size, int samples,
+            int attempts, double samplesPerSecond, int[] counts) {
+
+        /** Chance that {@code a} leads to {@code b}, {@code 0} if unknown */
+        public double probability(int a, int b) {
+            return this.samples == 0 ? 0 : this.counts[a * this.size + b] / (double) this.samples;
+        }
+
+        /** Highest chance of any destination of {@code a} */
+        public double maxProbability(int a) {
+            int max = 0;
+            for (int b = 0; b < this.size; b++) {
+                max = Math.max(max, this.counts[a * this.size + b]);
+            }
+            return this.samples == 0 ? 0 : max / (double) this.samples;
+        }
+    }
+
+    /** Builds a sampler for the entrances of {@code tracker} */
+    public CompletionSampler(TrackerState<?, ?> tracker) {
+        this.tracker = tracker;
+        this.pool = new ForkJoinPool(THREADS);
+    }
+
+    /**
+     * Starts sampling from the current connections, abandoning any sampling
+     * still running. Must be called on the EDT.
+     *
+     * @param samples Completions to count
+     * @param onDone Given the estimate on the EDT, unless another request is
+     * made first
+     */
+    public void request(int samples, Consumer<Estimate> onDone) {
+        var open = OpenConnections.capture(this.tracker);
+
+        long gen = ++this.generation;
+        if (this.running != null)
+            this.running.cancel(false);
+        this.running = this.pool.submit(() -> {
+            long start = System.nanoTime();
+            if (!open.resolve())
+                return;
+            Tally t = new SampleTask(open, samples, new SplittableRandom(), gen).invoke();
+            if (gen != this.generation)
+                return;
+
+            double secs = (System.nanoTime() - start) / 1e9;
+            var e = new Estimate(open.epoch, open.grouping, this.tracker.size(),
+                    t.samples, t.attempts, t.samples / secs, t.counts);
+            SwingUtilities.invokeLater(() -> {
+                if (gen == this.generation)
+                    onDone.accept(e);
+            });
+        });
+    }
+
+    /** Abandons any running sampling and stops the pool */
+    public void shutdown() {
+        this.generation++;
+        this.pool.shutdownNow();
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /** Counts of completions sampled by a part of a request */
+    private static final class Tally {
+        Tally(int n) {
+            this.counts = new int[n * n];
+        }
+
+        void add(Tally o) {
+            for (int i = 0; i < this.counts.length; i++) {
+                this.counts[i] += o.counts[i];
+            }
+            this.samples += o.samples;
+            this.attempts += o.attempts;
+        }
+
+        final int[] counts;
+        int samples;
+        int attempts;
+    }
+
+    /** Samples {@code samples} completions, splitting in half until small */
+    private final class SampleTask extends RecursiveTask<Tally> {
+        SampleTask(OpenConnections open, int samples, SplittableRandom rnd, long gen) {
+            this.open = open;
+            this.samples = samples;
+            this.rnd = rnd;
+            this.gen = gen;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (this.samples <= LEAF_SAMPLES)
+                return sample();
+
+            int half = this.samples / 2;
+            var left = new SampleTask(this.open, half, this.rnd.split(), this.gen);
+            left.fork();
+            Tally t = new SampleTask(this.open, this.samples - half, this.rnd, this.gen).compute();
+            t.add(left.join());
+            return t;
+        }
+
+        private Tally sample() {
+            int n = this.open.domains.length;
+            Tally t = new Tally(n);
+            long[] avail = new long[this.open.words];
+            int[] paired = new int[n];
+
+            for (int s = 0; s < this.samples && gen == generation; s++) {
+                for (int tries = 0; tries < MAX_TRIES; tries++) {
+                    t.attempts++;
+                    if (!complete(avail, paired))
+                        continue;
+                    for (int a = 0; a < n; a++) {
+                        if (this.open.domains[a] != null)
+                            t.counts[a * n + paired[a]]++;
+                    }
+                    t.samples++;
+                    break;
+                }
+            }
+            return t;
+        }
+
+        /**
+         * Tries to build one completion into {@code paired}.
+         * @return {@code false} if some entrance ran out of partners
+         */
+        private boolean complete(long[] avail, int[] paired) {
+            long[][] domains = this.open.domains;
+            System.arraycopy(this.open.open, 0, avail, 0, avail.length);
+            Arrays.fill(paired, TrackerState.NONE);
+
+            while (true) {
+                int a = TrackerState.NONE;
+                int fewest = Integer.MAX_VALUE;
+                for (int i = 0; i < domains.length; i++) {
+                    if (domains[i] == null || !OpenConnections.isSet(avail, i))
+                        continue;
+                    int c = countAnd(domains[i], avail) + (this.open.vanilla[i] ? 1 : 0);
+                    if (c < fewest) {
+                        fewest = c;
+                        a = i;
+                    }
+                }
+                if (a == TrackerState.NONE)
+                    return true;
+                if (fewest == 0)
+                    return false;
+
+                // The last choice is staying vanilla, if it may
+                int pick = this.rnd.nextInt(fewest);
+                int b = this.open.vanilla[a] && pick == fewest - 1
+                        ? a : nthAnd(domains[a], avail, pick);
+                if (!this.open.connectsByGroup(a, b)) {
+                    pair(avail, paired, a, b);
+                    continue;
+                }
+
+                var tracker = this.open.tracker;
+                int[] pairs = tracker.pairMembers(tracker.getGroup(a), tracker.getGroup(b));
+                if (pairs == null)
+                    return false;
+                for (int k = 0; k < pairs.length; k += 2) {
+                    int x = pairs[k];
+                    int y = pairs[k + 1];
+                    if (paired[x] == y)
+                        continue;
+                    if (!OpenConnections.isSet(avail, x) || !OpenConnections.isSet(avail, y))
+                        return false;
+                    pair(avail, paired, x, y);
+                }
+            }
+        }
+
+        private final OpenConnections open;
+
+        private final int samples;
+
+        private final SplittableRandom rnd;
+
+        /** Generation of the request this is part of */
+        private final long gen;
+    }
+
+    private static void pair(long[] avail, int[] paired, int a, int b) {
+        paired[a] = b;
+        paired[b] = a;
+        OpenConnections.set(avail, a, false);
+        OpenConnections.set(avail, b, false);
+    }
+
+    private static int countAnd(long[] m, long[] avail) {
+        int c = 0;
+        for (int w = 0; w < m.length; w++) {
+            c += Long.bitCount(m[w] & avail[w]);
+        }
+        return c;
+    }
+
+    /** The {@code k}th bit, from {@code 0}, set in both masks */
+    private static int nthAnd(long[] m, long[] avail, int k) {
+        for (int w = 0; w < m.length; w++) {
+            long bits = m[w] & avail[w];
+            int c = Long.bitCount(bits);
+            if (k >= c) {
+                k -= c;
+                continue;
+            }
+            for (; k > 0; k--) {
+                bits &= bits - 1;
+            }
+            return (w << 6) + Long.numberOfTrailingZeros(bits);
+        }
+        return TrackerState.NONE;
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    /** Completions a task samples itself instead of splitting */
+    private static final int LEAF_SAMPLES = 128;
+
+    /** Completions tried per sample before giving up on it */
+    private static final int MAX_TRIES = 20;
+
+    private final TrackerState<?, ?> tracker;
+
+    private final ForkJoinPool pool;
+
+    /** Sampling currently running, {@code null} if none has been started */
+    private Future<?> running;
+
+    /** Counts requests, only changed on the EDT */
+    private volatile long generation;
+}
@@ -0,0 +1,260 @@
+package com.mycompany.entrances;
+
+import java.util.Arrays;
+
+import com.mycompany.entrancerando.SettingsHandler.Grouping;
+
+/**
+ * Which entrances each entrance may legally connect to under one
+ * {@code Grouping}, kept as a bit mask per entrance so that a legality check
+ * is a single bit test.<p>
+ *
+ * Most of the rules only depend on the type, world and grouping of the two
+ * entrances, and are worked out once by {@code rebuild}. The one that depends
+ * on connections, that a grouped non-dungeon entrance under
+ * {@code RESTRICTED} must lead to the same world as the rest of its group, is
+ * kept up to date as connections change by listening to the
+ * {@code TrackerState}. Each group keeps a count of its members connected to
+ * each world, and only the masks of the group that changed are redone.<p>
+ *
+ * Masks are {@code long} words back to back, {@code words()} to an entrance,
+ * and bit {@code b} of entrance {@code a}'s mask is set if {@code a} may
+ * connect to {@code b}. Like the checks they replace, they aren't symmetric,
+ * and an entrance may always connect to itself, staying vanilla.
+ *
+ * @author aauyong
+ * @see ConnectionHandler#areConnectable(EntranceIcon, EntranceIcon)
+ */
+public final class ConnectabilityMasks implements TrackerState.Listener {
+
+    /**
+     * Builds the masks of every entrance in {@code tracker} for
+     * {@code grouping} and keeps them up to date as connections change.
+     */
+    public ConnectabilityMasks(TrackerState<?, ?> tracker, Grouping grouping) {
+        this.tracker = tracker;
+        int n = tracker.size();
+        this.words = (n + 63) >>> 6;
+        this.staticMasks = new long[n * this.words];
+        this.masks = new long[n * this.words];
+        this.worldMasks = new long[3 * this.words];
+        this.leadsTo = new byte[n];
+        this.groupWorldCounts = new int[tracker.groupCount() * 3];
+
+        for (int i = 0; i < n; i++) {
+            setBit(this.worldMasks, tracker.getWorld(i) * this.words, i);
+            setBit(this.worldMasks, 0, i);
+        }
+        for (int i = 0; i < n; i++) {
+            this.leadsTo[i] = leadsTo(i);
+            int g = tracker.getGroup(i);
+            if (g != TrackerState.NONE)
+                this.groupWorldCounts[g * 3 + this.leadsTo[i]]++;
+        }
+
+        rebuild(grouping);
+        tracker.addListener(this);
+    }
+
+    /**
+     * Rebuilds every mask for {@code grouping}. Called whenever the grouping
+     * setting changes.
+     */
+    public void rebuild(Grouping grouping) {
+        this.grouping = grouping;
+        Arrays.fill(this.staticMasks, 0);
+
+        int n = this.tracker.size();
+        for (int a = 0; a < n; a++) {
+            int base = a * this.words;
+            setBit(this.staticMasks, base, a);
+            if (grouping == null)
+                continue;
+            for (int b = 0; b < n; b++) {
+                if (isStaticallyLegal(a, b))
+                    setBit(this.staticMasks, base, b);
+            }
+        }
+
+        System.arraycopy(this.staticMasks, 0, this.masks, 0, this.masks.length);
+        for (int g = 0; g < this.tracker.groupCount(); g++) {
+            updateGroup(g);
+        }
+    }
+
+    /** Stops following changes to the {@code TrackerState} */
+    public void dispose() {
+        this.tracker.removeListener(this);
+    }
+
+    /** Whether {@code a} may connect to {@code b} */
+    public boolean isLegal(int a, int b) {
+        return (this.masks[a * this.words + (b >>> 6)] & (1L << b)) != 0;
+    }
+
+    /**
+     * ANDs the mask of {@code a} into {@code into}, which must be
+     * {@code words()} long, leaving only the entrances {@code a} may connect
+     * to.
+     * @return {@code into}
+     */
+    public long[] andLegalTargets(int a, long[] into) {
+        int base = a * this.words;
+        for (int w = 0; w < this.words; w++) {
+            into[w] &= this.masks[base + w];
+        }
+        return into;
+    }
+
+    /** A copy of the mask of {@code a} */
+    public long[] getLegalTargets(int a) {
+        int base = a * this.words;
+        return Arrays.copyOfRange(this.masks, base, base + this.words);
+    }
+
+    /**
+     * A copy of every mask, {@code words()} to an entrance, for use away from
+     * the thread that changes the {@code TrackerState}
+     */
+    public long[] copyMasks() {
+        return this.masks.clone();
+    }
+
+    /** Number of {@code long}s in a mask */
+    public int words() {
+        return this.words;
+    }
+
+    public TrackerState<?, ?> getTracker() {
+        return this.tracker;
+    }
+
+    public Grouping getGrouping() {
+        return this.grouping;
+    }
+
+    /**
+     * Follows connections being made and cleared, moving {@code id} between
+     * the world counts of its group and redoing the group's masks if the
+     * world it leads to changes.
+     */
+    @Override
+    public void entranceChanged(int id, ConnectionState previous) {
+        byte now = leadsTo(id);
+        if (now == this.leadsTo[id])
+            return;
+
+        int g = this.tracker.getGroup(id);
+        if (g == TrackerState.NONE) {
+            this.leadsTo[id] = now;
+            return;
+        }
+        int before = connectingWorld(g);
+        this.groupWorldCounts[g * 3 + this.leadsTo[id]]--;
+        this.groupWorldCounts[g * 3 + now]++;
+        this.leadsTo[id] = now;
+        if (connectingWorld(g) != before)
+            updateGroup(g);
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /**
+     * The rules of {@code ConnectionHandler.areConnectable} that don't depend
+     * on connections
+     */
+    private boolean isStaticallyLegal(int a, int b) {
+        byte typeA = this.tracker.getTypeOrdinal(a);
+        byte typeB = this.tracker.getTypeOrdinal(b);
+        boolean groupedA = this.tracker.getGroup(a) != TrackerState.NONE;
+        boolean groupedB = this.tracker.getGroup(b) != TrackerState.NONE;
+
+        return switch (this.grouping) {
+            case SIMPLE -> typeA == typeB && groupedA == groupedB;
+            case RESTRICTED -> typeA == typeB
+                    && (typeA != DUNGEON || groupedA == groupedB);
+            case FULL, CROSSED -> (typeA != DROP && typeB != DROP) || typeA == typeB;
+            default -> false;
+        };
+    }
+
+    /**
+     * Redoes the masks of the members of group {@code g} from their static
+     * masks and the world the group leads to
+     */
+    private void updateGroup(int g) {
+        boolean restrictWorld = this.grouping == Grouping.RESTRICTED;
+        int world = connectingWorld(g);
+        for (int k = 0; k < this.tracker.getGroupSize(g); k++) {
+            int a = this.tracker.getGroupMember(g, k);
+            int base = a * this.words;
+            if (!restrictWorld || this.tracker.getTypeOrdinal(a) == DUNGEON) {
+                System.arraycopy(this.staticMasks, base, this.masks, base, this.words);
+                continue;
+            }
+            for (int w = 0; w < this.words; w++) {
+                long allowed = world < 0 ? 0 : this.worldMasks[world * this.words + w];
+                this.masks[base + w] = this.staticMasks[base + w] & allowed;
+            }
+            setBit(this.masks, base, a);
+        }
+    }
+
+    /**
+     * Same as {@code TrackerState.getConnectingWorld}, from the counts
+     * @return {@code -1} if the group leads to both worlds, {@code 0} if to
+     * neither, else {@code LIGHT} or {@code DARK}
+     */
+    private int connectingWorld(int g) {
+        boolean light = this.groupWorldCounts[g * 3 + TrackerState.LIGHT] > 0;
+        boolean dark = this.groupWorldCounts[g * 3 + TrackerState.DARK] > 0;
+        if (light && dark)
+            return -1;
+        return light ? TrackerState.LIGHT : dark ? TrackerState.DARK : 0;
+    }
+
+    /** World {@code id} is connected to, {@code 0} if it isn't */
+    private byte leadsTo(int id) {
+        int c = this.tracker.getConnection(id);
+        return c == TrackerState.NONE ? 0 : this.tracker.getWorld(c);
+    }
+
+    private static void setBit(long[] m, int base, int bit) {
+        m[base + (bit >>> 6)] |= 1L << bit;
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    private static final byte DROP = (byte) EntrType.DROP.ordinal();
+
+    private static final byte DUNGEON = (byte) EntrType.DUNGEON.ordinal();
+
+    private final TrackerState<?, ?> tracker;
+
+    /** {@code long}s in each mask */
+    private final int words;
+
+    /** Masks with only the rules that don't depend on connections */
+    private final long[] staticMasks;
+
+    /** Masks with every rule, the ones checked */
+    private final long[] masks;
+
+    /**
+     * Entrances in each world, indexed by {@code LIGHT} or {@code DARK}, with
+     * every entrance at index {@code 0}
+     */
+    private final long[] worldMasks;
+
+    /** World each entrance is connected to, {@code 0} if not connected */
+    private final byte[] leadsTo;
+
+    /** Members of each group leading to no world, light and dark, in threes */
+    private final int[] groupWorldCounts;
+
+    private Grouping grouping;
+}
@@ -65,74 +65,80 @@ public class ConnectionHandler {
         if (a == b)
             return true;
         // TODO implement insanity settings
-        // SIMPLE
-
-        switch (currGroupSettings) {
-            case SIMPLE -> {
-                // must be same type
-                if (!a.getEntrType().equals(b.getEntrType()))
-                    return false;
-
-                // must be group to group
-                if (a.hasGrouping() != b.hasGrouping())
-                    return false;
+        return masksFor(a.getTracker()).isLegal(a.getId(), b.getId());
+    }
 
+    /**
+     * Builds the {@code ConnectabilityMasks} that {@code areConnectable}
+     * checks against for the entrances of {@code tracker}, replacing those of
+     * any tracker before it.
+     */
+    public static void attach(TrackerState<?, ?> tracker) {
+        if (masks != null)
+            masks.dispose();
+        masks = new ConnectabilityMasks(tracker, currGroupSettings);
+        targetCache = new long[tracker.size()][];
+        targetEpochs = new long[tracker.size()];
+        targetGroupings = new Grouping[tracker.size()];
+    }
 
-                // If LW DM, must connect ot LW DM
+    /**
+     * Masks of the entrances {@code tracker} under the current grouping
+     * settings, for checking many connections at once
+     */
+    public static ConnectabilityMasks getMasks(TrackerState<?, ?> tracker) {
+        return masksFor(tracker);
+    }
 
-                // If Skull Woods, must connect to Skull Woods
+    /**
+     * Every entrance that {@code a} could be connected to right now: those
+     * {@code areConnectable} allows that aren't connected yet, and whose
+     * groups fit if the two would be connected as groups. {@code a} itself
+     * is always included.<p>
+     *
+     * Results are cached per entrance and only worked out again once the
+     * grouping settings or any connection changes.
+     *
+     * @return Bit mask over entrance ids, as laid out by
+     * {@code ConnectabilityMasks}. Must not be changed.
+     */
+    public static long[] legalTargets(EntranceIcon a) {
+        var tracker = a.getTracker();
+        ConnectabilityMasks m = masksFor(tracker);
+        int id = a.getId();
+        long epoch = tracker.getConnectionEpoch();
+        if (targetCache[id] != null && targetEpochs[id] == epoch
+                && targetGroupings[id] == currGroupSettings)
+            return targetCache[id];
+
+        long[] targets = m.getLegalTargets(id);
+        boolean aFree = tracker.getConnection(id) == TrackerState.NONE;
+        for (int w = 0; w < targets.length; w++) {
+            long bits = targets[w];
+            while (bits != 0) {
+                int b = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (b != id && !canConnectNow(a, tracker.getView(b), aFree))
+                    targets[w] &= ~(1L << b);
             }
-            case RESTRICTED -> {
-
-                // must be same type
-                if (!a.getEntrType().equals(b.getEntrType()))
-                    return false;
-
-                /* Dungeons must match single-single multi-multi */
-                if (a.getEntrType().equals(EntranceIcon.DUNGEON)) {
-                    // must be group to group
-                    if (a.hasGrouping() != b.hasGrouping())
-                        return false;
-                }
-                else {
-                    if (a.hasGrouping() && !leadsToSameWorldAsGroup(a.getGroup(), b))
-                        return false;
-
-                }
-
-                // if multi, stay in same world
+        }
 
-                // If LW DM, must connect ot LW DM
+        targetCache[id] = targets;
+        targetEpochs[id] = epoch;
+        targetGroupings[id] = currGroupSettings;
+        return targets;
+    }
 
-                // If Skull Woods, must connect to Skull Woods
-            }
-            case FULL -> {
-                // If a or b is a drop, they both avhe to be drops
-                if (a.getEntrType().equals(EntranceIcon.DROP)
-                        || b.getEntrType().equals(EntranceIcon.DROP)) {
-
-                    if (!a.getEntrType().equals(b.getEntrType()))
-                            return false;
-                }
-                // if they're both drops or neither, then can connect
-            }
-            case CROSSED -> {
-                // If a or b is a drop, they both avhe to be drops
-                if (a.getEntrType().equals(EntranceIcon.DROP)
-                        || b.getEntrType().equals(EntranceIcon.DROP)) {
-
-                    if (!a.getEntrType().equals(b.getEntrType()))
-                            return false;
-                }
-            }
-            default -> { return false; }
-        }
-        return true;
+    /** Grouping settings connections are currently checked against */
+    public static Grouping getGroupSettings() {
+        return currGroupSettings;
     }
 
     //TODO may not be necessary
     public static void updateGroupSettings(Grouping newGroupSettings) {
         currGroupSettings = newGroupSettings;
+        if (masks != null)
+            masks.rebuild(newGroupSettings);
 
         // if (newGroupSettings.ordinal() == Grouping.INSANITY.ordinal()) {
         //     setEverythingTo(false);
@@ -210,21 +216,28 @@ public class ConnectionHandler {
      * @return
      */
     private static boolean shouldConnectByGroup(EntranceIcon a, EntranceIcon b) {
-        if (a.hasGrouping() && b.hasGrouping()) {
+        return connectsByGroup(currGroupSettings, a.getTracker(), a.getId(), b.getId());
+    }
 
-            if (currGroupSettings == Grouping.SIMPLE)
-                return true;
-            else if (currGroupSettings == Grouping.INSANITY)
-                return false;
+    /**
+     * Same as {@code shouldConnectByGroup}, for entrance ids of
+     * {@code tracker} under {@code grouping}. Only reads what doesn't change
+     * once {@code tracker} is built, so it can be used off the EDT.
+     */
+    static boolean connectsByGroup(Grouping grouping, TrackerState<?, ?> tracker, int a, int b) {
+        int gA = tracker.getGroup(a);
+        int gB = tracker.getGroup(b);
+        if (gA == TrackerState.NONE || gB == TrackerState.NONE)
+            return false;
 
-            if (currGroupSettings.lessThan(Grouping.INSANITY)) {
-                if (a.getGroup().isDropPairing() && b.getGroup().isDropPairing())
-                    return true;
-            }
+        if (grouping == Grouping.SIMPLE)
+            return true;
+        else if (grouping == Grouping.INSANITY)
+            return false;
 
-            if (currGroupSettings == Grouping.RESTRICTED) {
-                if (areBothOf(EntranceIcon.DUNGEON, a, b));
-            }
+        if (grouping.lessThan(Grouping.INSANITY)) {
+            if (tracker.isDropPairing(gA) && tracker.isDropPairing(gB))
+                return true;
         }
         return false;
     }
@@ -235,26 +248,37 @@ public class ConnectionHandler {
         return aG.tryConnToGroup(bG);
     }
 
-    private static boolean areBothOf(String of, EntranceIcon a, EntranceIcon b) {
-        boolean oneIsDrop =  a.getEntrType().equals(of)
-                || b.getEntrType().equals(of);
-
-        return oneIsDrop && a.getEntrType().equals(b.getEntrType());
-    }
-
     /**
-     *
-     * @param grp
-     * @param dest
-     * @return
+     * Whether connecting {@code a} to {@code b}, which {@code areConnectable}
+     * allows, would go through given the connections already made
      */
-    private static boolean leadsToSameWorldAsGroup(EntranceGroup grp,
-            EntranceIcon dest) {
-        int groupWorld = grp.getConnectingWorld();
-        return groupWorld == 0 || dest.getWorld() == groupWorld;
+    private static boolean canConnectNow(EntranceIcon a, EntranceIcon b, boolean aFree) {
+        if (b == null)
+            return false;
+        if (shouldConnectByGroup(a, b))
+            return a.getGroup().areConnectable(b.getGroup());
+        return aFree && b.getConnection() == null;
+    }
+
+    private static ConnectabilityMasks masksFor(TrackerState<?, ?> tracker) {
+        if (masks == null || masks.getTracker() != tracker)
+            attach(tracker);
+        return masks;
     }
 
     private static Grouping currGroupSettings;
 
+    /** Legal connections of the tracked entrances under {@code currGroupSettings} */
+    private static ConnectabilityMasks masks;
+
+    /** Last result of {@code legalTargets} for each entrance, {@code null} if none */
+    private static long[][] targetCache;
+
+    /** Connection epoch each {@code targetCache} entry was worked out at */
+    private static long[] targetEpochs;
+
+    /** Grouping each {@code targetCache} entry was worked out for */
+    private static Grouping[] targetGroupings;
+
     private static ConnectionHandler SINGLETON;
 }
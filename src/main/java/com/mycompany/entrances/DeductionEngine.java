@@ -0,0 +1,197 @@
+package com.mycompany.entrances;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Deduces which of the entrances still unconnected are forced to connect to
+ * one another, and which have nothing left they could connect to.<p>
+ *
+ * Every unconnected entrance has to end up paired with one, possibly itself,
+ * so the entrances form a small constraint problem over the domains of
+ * {@code OpenConnections}. An entrance is forced once it has one partner left
+ * and may not stay vanilla, or has none left but may. Forced pairs are
+ * dropped from every other domain, which can force more entrances. An
+ * entrance with no partner left that may not stay vanilla can't be connected
+ * any more.<p>
+ *
+ * Domains are copied on the EDT, which is quick, and the propagation runs on
+ * a background thread. Each {@code request} cancels the one before it, and a
+ * result is only handed back, on the EDT, if no newer request has been made
+ * since.
+ *
+ * @author aauyong
+ */
+public final class DeductionEngine {
+
+    /**
+     * What was deduced from the connections as of {@code epoch}.
+     *
+     * @param epoch {@code TrackerState} connection epoch deduced from
+     * @param forced Pairs of entrance ids that must connect, flattened. An
+     * entrance forced to itself is listed twice.
+     * @param impossible Entrances with nothing left to connect to
+     */
+    public record Result(long epoch, int[] forced, int[] impossible) {}
+
+    /** Builds an engine for the entrances of {@code tracker} */
+    public DeductionEngine(TrackerState<?, ?> tracker) {
+        this.tracker = tracker;
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            var t = new Thread(r, "deduction");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts deducing from the current connections, cancelling any
+     * deduction still running. Must be called on the EDT.
+     *
+     * @param onDone Given the result on the EDT, unless another request is
+     * made first
+     */
+    public void request(Consumer<Result> onDone) {
+        var open = OpenConnections.capture(this.tracker);
+
+        long gen = ++this.generation;
+        if (this.running != null)
+            this.running.cancel(true);
+        this.running = this.worker.submit(() -> {
+            Result r = deduce(open);
+            if (r != null)
+                SwingUtilities.invokeLater(() -> {
+                    if (gen == this.generation)
+                        onDone.accept(r);
+                });
+        });
+    }
+
+    /** Cancels any running deduction and stops the background thread */
+    public void shutdown() {
+        this.generation++;
+        this.worker.shutdownNow();
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /**
+     * Propagates the domains of every unconnected entrance.
+     * @return What was deduced, or {@code null} if the thread was interrupted
+     */
+    private static Result deduce(OpenConnections open) {
+        if (!open.resolve())
+            return null;
+        long[][] domains = open.domains;
+        int n = domains.length;
+
+        int[] pairedWith = new int[n];
+        Arrays.fill(pairedWith, TrackerState.NONE);
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int a = 0; a < n; a++) {
+            if (domains[a] != null && isDecided(open, a))
+                queue[tail++] = a;
+        }
+
+        boolean[] impossible = new boolean[n];
+        boolean[] queued = new boolean[n];
+        for (int k = 0; k < tail; k++) {
+            queued[queue[k]] = true;
+        }
+        while (head < tail) {
+            if (Thread.currentThread().isInterrupted())
+                return null;
+            int a = queue[head++];
+            if (pairedWith[a] != TrackerState.NONE || impossible[a])
+                continue;
+
+            if (!isDecided(open, a))
+                continue;
+            int b = first(domains[a]);
+            if (b == TrackerState.NONE) {
+                if (!open.vanilla[a]) {
+                    impossible[a] = true;
+                    continue;
+                }
+                b = a;
+            }
+            pairedWith[a] = b;
+            pairedWith[b] = a;
+            for (int o = 0; o < n; o++) {
+                if (domains[o] == null || o == a || o == b)
+                    continue;
+                boolean had = OpenConnections.isSet(domains[o], a)
+                        || OpenConnections.isSet(domains[o], b);
+                OpenConnections.set(domains[o], a, false);
+                OpenConnections.set(domains[o], b, false);
+                if (had && !queued[o] && isDecided(open, o)) {
+                    queued[o] = true;
+                    queue[tail++] = o;
+                }
+            }
+        }
+
+        int forcedCount = 0;
+        int impossibleCount = 0;
+        for (int a = 0; a < n; a++) {
+            if (pairedWith[a] >= a)
+                forcedCount++;
+            if (impossible[a])
+                impossibleCount++;
+        }
+        int[] forced = new int[forcedCount * 2];
+        int[] none = new int[impossibleCount];
+        int f = 0;
+        int i = 0;
+        for (int a = 0; a < n; a++) {
+            if (pairedWith[a] >= a) {
+                forced[f++] = a;
+                forced[f++] = pairedWith[a];
+            }
+            if (impossible[a])
+                none[i++] = a;
+        }
+        return new Result(open.epoch, forced, none);
+    }
+
+    /**
+     * Whether {@code a} is forced to a partner or has none left: it has one
+     * other entrance left and may not stay vanilla, or has none.
+     */
+    private static boolean isDecided(OpenConnections open, int a) {
+        int c = OpenConnections.count(open.domains[a]);
+        return c == 0 || (c == 1 && !open.vanilla[a]);
+    }
+
+    private static int first(long[] m) {
+        for (int w = 0; w < m.length; w++) {
+            if (m[w] != 0)
+                return (w << 6) + Long.numberOfTrailingZeros(m[w]);
+        }
+        return TrackerState.NONE;
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    private final TrackerState<?, ?> tracker;
+
+    /** Runs one deduction at a time */
+    private final ExecutorService worker;
+
+    /** Deduction currently running, {@code null} if none has been started */
+    private Future<?> running;
+
+    /** Counts requests, only changed on the EDT */
+    private volatile long generation;
+}
@@ -0,0 +1,31 @@
+package com.mycompany.entrances;
+
+/**
+ * Generic category of an entrance, which decides what it may connect to.
+ * Caves and houses are both {@code NORMAL}.
+ *
+ * @author aauyong
+ */
+enum EntrType {
+    NORMAL  ("normal"),
+    DROP    ("drop"),
+    DUNGEON ("dungeon");
+
+    private String category;
+    EntrType(String s) {
+        this.category = s;
+    }
+
+    public String asString() { return this.category; }
+
+    public static EntrType getFrom(String s) {
+        switch(s) {
+            case "normal":  return NORMAL;
+            case "cave":    return NORMAL;
+            case "house":   return NORMAL;
+            case "drop":    return DROP;
+            case "dungeon": return DUNGEON;
+        }
+        return null;
+    }
+};
@@ -4,19 +4,30 @@ import java.awt.Point;
 
 import javax.swing.JButton;
 
+import com.mycompany.maptracker.FrameScheduler;
 import com.mycompany.maptracker.MapPnl;
 
 import java.awt.Dimension;
-import java.awt.Color;
 
+/**
+ * A button drawn on a map for one entrance.<p>
+ *
+ * The icon is a view: the state, connection, world and group of the entrance
+ * are kept in a {@code TrackerState} under the entrance's id, and every method
+ * that reads or changes them goes through it. The icon repaints itself when
+ * the state tells it the entrance changed.
+ *
+ * @author aauyong
+ * @see TrackerState
+ */
 public class EntranceIcon extends JButton {
 
     /**
      * Constructor
      *
-     * Builds an Entrance Icon at a Point, {@code l}, for some entrance
-     * {@code name} of some {@code type}. Initializes the {@code state} to be
-     * {@code UNKNOWN}.
+     * Builds an Entrance Icon at a Point, {@code l}, for entrance {@code id}
+     * of {@code tracker}, of some {@code type}, and attaches it as the view of
+     * that entrance.
      * <p>
      * The point is adjusted such that the button will land on center of the
      * provided point. This is done by taking a {@code coordScale} that will
@@ -27,42 +38,36 @@ public class EntranceIcon extends JButton {
      *
      * And Opaqueness is reaffirmed
      *
-     * @param l Point to place the Entrance at
-     * @param type
-     * @param name
+     * @param tracker State of every entrance
+     * @param id Id of the entrance in {@code tracker}
+     * @param x X coordinate to place the Entrance at
+     * @param y Y coordinate to place the Entrance at
+     * @param type Type of entrance, such as {@code cave}, which picks the shape
      * @param coordScale A factor of which to scale the dimensions for center
      * placement
      */
-    public EntranceIcon(int x, int y, String type, String name,
-            double coordScale, boolean inLightWorld) {
+    public EntranceIcon(TrackerState<EntranceIcon, EntranceGroup> tracker, int id, int x, int y, String type,
+            double coordScale) {
         super();
         Point l = new Point(x,y);
 
-        this.state = ConnectionState.UNKNOWN;
+        this.tracker = tracker;
+        this.id = id;
         this.entrPt = l;
 
         int offset = (int) ((double) DEFAULT_SIZE/2 * coordScale);
         this.entrPt.translate(-offset, -offset);
         this.setToolTipText("Unknown");
 
-        this.entrType = EntrType.getFrom(type);
-        
-        // if (type.equals("cave") || type.equals("house"))
-        //     this.entrType = EntranceIcon.NORMAL;
-        // else
-        //     this.entrType = type;
-
-        this.entrShapeType = type;
-        this.entrShape = null;
-        setShape();
-
-        this.entrName = name;
-        this.group = null;
-        this.connection = null;
-
-        this.world = inLightWorld ? LIGHT : DARK;
+        this.shapeKind = EntranceSprites.kindOf(type);
 
         this.isVisibleWhenUseless = true;
+        tracker.setView(id, this);
+
+        this.pulse = nanos -> {
+            FrameScheduler.markDirty(this);
+            return this.pulsing;
+        };
 
         setFocusable(true);
         setOpaque(false);
@@ -98,14 +103,7 @@ public class EntranceIcon extends JButton {
     public boolean setConnection(EntranceIcon other) {
         if (other == null) { return clearConnection(); }
 
-        if (this.connection == null) {
-            this.connection = other;
-            this.setToolTipText(other.getEntrName());
-            setConnectionState(ConnectionState.CONNECTED);
-            return true;
-        }
-
-        return false;
+        return this.tracker.connect(this.id, other.id);
     }
 
     /**
@@ -124,14 +122,7 @@ public class EntranceIcon extends JButton {
      * {@code false} : if either connection fails
      */
     public boolean clearConnection() {
-        if (this.connection == null || this.state == ConnectionState.USELESS) {
-            return false;
-        }
-
-        this.connection = null;
-        this.setConnectionState(ConnectionState.UNKNOWN);
-        this.setToolTipText("Unknown");
-        return true;
+        return this.tracker.clearConnection(this.id);
     }
 
     /**
@@ -154,17 +145,7 @@ public class EntranceIcon extends JButton {
      * being connected.
      */
     public boolean incState() {
-        if (this.connection == null) {
-            var newState = ConnectionState.min(
-                    ConnectionState.PENDING,
-                    this.state.inc()
-            );
-            boolean res = newState == this.state;
-            setConnectionState(newState);
-            return res;
-        }
-        this.state = this.state.inc();
-        return true;
+        return this.tracker.incState(this.id);
     }
 
     /**
@@ -187,16 +168,13 @@ public class EntranceIcon extends JButton {
      * @see ConnectionState
      */
     public boolean decState() {
-        if (this.connection == null && !this.isUseless() ) {
-            setConnectionState(this.state.dec());
-            return true;
-        }
-        return false;
+        return this.tracker.decState(this.id);
     } // decState
 
     /** Getter for the connecting {@code EntranceIcon} */
     public EntranceIcon getConnection() {
-        return this.connection;
+        int c = this.tracker.getConnection(this.id);
+        return c == TrackerState.NONE ? null : this.tracker.getView(c);
     }
 
     /** Get {@code Point} this refers to */
@@ -206,17 +184,27 @@ public class EntranceIcon extends JButton {
 
     /** Get Name of this {@code EntranceIcon} */
     public String getEntrName() {
-        return this.entrName;
+        return this.tracker.getName(this.id);
+    }
+
+    /** Get id of the entrance {@code this} is a view of */
+    public int getId() {
+        return this.id;
+    }
+
+    /** Get the state {@code this} is a view over */
+    public TrackerState<EntranceIcon, EntranceGroup> getTracker() {
+        return this.tracker;
     }
 
     /** Get Generic Type of this {@code EntranceIcon} */
     public final String getEntrType() {
-        return this.entrType.asString();
+        return this.tracker.getType(this.id);
     }
 
     /** If {@code this} is in the {@code USELESS} State */
     public boolean isUseless() {
-        return this.state == ConnectionState.USELESS;
+        return this.tracker.isUseless(this.id);
     }
 
     /** Set whether the icon should be visible if {@code USELESS} */
@@ -226,73 +214,326 @@ public class EntranceIcon extends JButton {
     }
 
     /**
-     * Setter for {@code groupName}. Only allowed if {@code groupName} hasn't
-     * been set.
+     * Set whether {@code this} is painted faded, to show that the armed
+     * entrance can't be connected to it. Fires a {@code DIMMED_PROPERTY}
+     * change.
+     */
+    public void setDimmed(boolean b) {
+        if (b == this.dimmed)
+            return;
+        this.dimmed = b;
+        FrameScheduler.markDirty(this);
+        firePropertyChange(DIMMED_PROPERTY, !b, b);
+    }
+
+    public boolean isDimmed() {
+        return this.dimmed;
+    }
+
+    /**
+     * Set whether {@code this} is shaded as out of reach from the start.
+     * Fires a {@code REACHABLE_PROPERTY} change.
+     */
+    public void setUnreachable(boolean b) {
+        if (b == this.unreachable)
+            return;
+        this.unreachable = b;
+        FrameScheduler.markDirty(this);
+        firePropertyChange(REACHABLE_PROPERTY, b, !b);
+    }
+
+    public boolean isUnreachable() {
+        return this.unreachable;
+    }
+
+    /**
+     * Set where {@code this} comes on the route being shown, which outlines
+     * it and numbers it from {@code 1}, or {@code NOT_ON_ROUTE}. Fires a
+     * {@code ROUTE_PROPERTY} change.
+     */
+    public void setRouteStep(int step) {
+        if (step == this.routeStep)
+            return;
+        int prev = this.routeStep;
+        this.routeStep = step;
+        FrameScheduler.markDirty(this);
+        firePropertyChange(ROUTE_PROPERTY, prev, step);
+    }
+
+    public int getRouteStep() {
+        return this.routeStep;
+    }
+
+    /**
+     * Set what has been deduced about {@code this}: {@code HINT_NONE},
+     * {@code HINT_FORCED} to {@code partner}, or {@code HINT_IMPOSSIBLE}. The
+     * hint is marked in a corner of the icon and added to its tool tip.
      *
-     * @param g
+     * @param partner Entrance {@code this} is forced to connect to, ignored
+     * unless {@code hint} is {@code HINT_FORCED}
      */
-    public boolean setGroup(EntranceGroup g) {
-        if (this.group == null) {
-            this.group = g;
-            return true;
-        }
-        return false;
+    public void setHint(int hint, EntranceIcon partner) {
+        String text = switch (hint) {
+            case HINT_FORCED -> "Must connect to " + partner.getEntrName();
+            case HINT_IMPOSSIBLE -> "Nothing left to connect to";
+            default -> null;
+        };
+        if (hint == this.hint && java.util.Objects.equals(text, this.hintText))
+            return;
+        int prev = this.hint;
+        this.hint = hint;
+        this.hintText = text;
+        updateToolTip();
+        FrameScheduler.markDirty(this);
+        firePropertyChange(HINT_PROPERTY, prev, hint);
+    }
+
+    public int getHint() {
+        return this.hint;
+    }
+
+    /**
+     * Set how strongly {@code this} is tinted on the heat map, from {@code 0}
+     * to {@code 1}, or {@code NO_HEAT}. Fires a {@code HEAT_PROPERTY} change.
+     */
+    public void setHeat(float heat) {
+        if (heat == this.heat)
+            return;
+        float prev = this.heat;
+        this.heat = heat;
+        FrameScheduler.markDirty(this);
+        firePropertyChange(HEAT_PROPERTY, prev, heat);
+    }
+
+    public float getHeat() {
+        return this.heat;
     }
 
-    /** Getter for {@code group}.
+    /**
+     * Set whether {@code this} is the entrance armed for the next click,
+     * which pulses a highlight over it every frame until it is unset. Fires a
+     * {@code PULSING_PROPERTY} change.
+     */
+    public void setPulsing(boolean b) {
+        if (b == this.pulsing)
+            return;
+        this.pulsing = b;
+        FrameScheduler.markDirty(this);
+        if (b)
+            FrameScheduler.animate(this.pulse);
+        firePropertyChange(PULSING_PROPERTY, !b, b);
+    }
+
+    public boolean isPulsing() {
+        return this.pulsing;
+    }
+
+    /** Getter for the {@code EntranceGroup} {@code this} is in.
      * @return  */
     public EntranceGroup getGroup() {
-        return this.group;
+        int g = this.tracker.getGroup(this.id);
+        return g == TrackerState.NONE ? null : this.tracker.getGroupView(g);
     }
 
     /** Check if {@code this} is in a grouping
      * @return  */
     public boolean hasGrouping() {
-        return this.group != null;
+        return this.tracker.getGroup(this.id) != TrackerState.NONE;
     }
 
     /**
-     * @return {@code true} if {@code this} is in the l
+     * @return {@code LIGHT} or {@code DARK}, the world {@code this} is in
      */
     public int getWorld() {
-        return this.world;
+        return this.tracker.getWorld(this.id);
     }
 
     /**
      * Override {@link #paintComponent(java.awt.Graphics)}
      * 
-     * Sets the shape to be drawn and fills said shape with the chosen background 
-     * color. BG is selected based on the connection state and whether the 
-     * button model is armed
+     * Draws the pre-rendered sprite for the shape, the connection state and
+     * whether the button is pressed, along with everything else
+     * {@code paintAt} draws.
+     *
+     * @see EntranceSprites
      */
     @Override
     protected void paintComponent(java.awt.Graphics g) {
-        java.awt.Graphics2D g2 = (java.awt.Graphics2D) g;
-        setShape();
-
-        if (getModel().isArmed())
-            g2.setColor(ArmedBGColors[this.state.ordinal()]);
-        else
-            g2.setColor(BGColors[this.state.ordinal()]);
-
-        g2.fill(this.entrShape);
+        paintAt((java.awt.Graphics2D) g, 0, 0, getWidth(), getConnectionState(),
+                getModel().isArmed());
     }
 
     /**
      * Override {@link #paintBorder(java.awt.Graphics)} <p>
      * 
-     * Paints a 3pt black border around {@code this}'s shape as well as the clipping
-     * shape/size. 
+     * Does nothing, the border is part of the sprite drawn by
+     * {@code paintComponent}.
      */
     @Override
-    protected void paintBorder(java.awt.Graphics g) {
-        java.awt.Graphics2D g2  = (java.awt.Graphics2D) g;
-        final int strokeSize = 3;
-        g2.setStroke(new java.awt.BasicStroke(strokeSize));
+    protected void paintBorder(java.awt.Graphics g) {}
+
+    /**
+     * Paints {@code this} the same way {@code paintComponent} would, but at
+     * {@code (x, y)} of {@code g} rather than in its own bounds. Used when the
+     * icon is drawn by a shared layer instead of as its own component.<p>
+     *
+     * A dimmed icon is drawn at {@code DIM_ALPHA} opacity, and an unreachable
+     * one is shaded with {@code SHADE_COLOR}. An icon with heat is tinted from
+     * yellow to red. An icon on a route is outlined
+     * and numbered with its step, and one with a hint has a dot in its top
+     * right corner. None of the tints are drawn while the icon is pressed or
+     * pulsing, and a pulsing icon is overlaid with a highlight that pulses
+     * with {@link FrameScheduler#pulse()}; {@code setPulsing} keeps frames
+     * coming while it does.
+     *
+     * @param g Graphics to paint into
+     * @param x Left edge of the icon
+     * @param y Top edge of the icon
+     * @param size Width and height of the icon
+     * @param s State to paint the icon in
+     * @param armed Whether to use the armed background color
+     */
+    public void paintAt(java.awt.Graphics2D g, int x, int y, int size,
+            ConnectionState s, boolean armed) {
+        var sprite = EntranceSprites.get(this.shapeKind, s, armed, size);
+        boolean lit = armed || this.pulsing;
+        if (this.dimmed && !lit) {
+            var composite = g.getComposite();
+            g.setComposite(DIM_COMPOSITE);
+            g.drawImage(sprite, x, y, null);
+            g.setComposite(composite);
+        } else {
+            g.drawImage(sprite, x, y, null);
+        }
+        if (this.unreachable && !lit)
+            fillShape(g, x, y, size, SHADE_COLOR);
+        if (this.heat >= 0 && !lit)
+            fillShape(g, x, y, size, heatColor(this.heat));
+        if (this.routeStep != NOT_ON_ROUTE)
+            paintRouteStep(g, x, y, size);
+        if (this.hint != HINT_NONE) {
+            var color = g.getColor();
+            int d = Math.max(3, size / 4);
+            g.setColor(this.hint == HINT_FORCED ? FORCED_COLOR : IMPOSSIBLE_COLOR);
+            g.fillOval(x + size - d, y, d, d);
+            g.setColor(color);
+        }
+        if (!this.pulsing)
+            return;
+
+        var composite = g.getComposite();
+        var color = g.getColor();
+        g.setComposite(pulseComposite(FrameScheduler.pulse()));
+        g.setColor(java.awt.Color.WHITE);
+        g.translate(x, y);
+        g.fill(EntranceSprites.shape(this.shapeKind, size));
+        g.translate(-x, -y);
+        g.setComposite(composite);
+        g.setColor(color);
+    }
 
-        g2.setColor(Color.BLACK);
-        g2.setClip(this.entrShape);
-        g2.draw(this.entrShape);
+    /** Tint for {@code heat}, more opaque and redder as it rises */
+    private static java.awt.Color heatColor(float heat) {
+        int h = Math.round(Math.min(1, heat) * HEAT_STEPS);
+        if (HEAT_COLORS[h] == null)
+            HEAT_COLORS[h] = new java.awt.Color(255, 255 - 255 * h / HEAT_STEPS,
+                    0, 60 + 150 * h / HEAT_STEPS);
+        return HEAT_COLORS[h];
+    }
+
+    /** Highlight composite for {@code pulse}, more opaque as it rises */
+    private static java.awt.AlphaComposite pulseComposite(float pulse) {
+        int p = Math.round(Math.min(1, pulse) * PULSE_STEPS);
+        if (PULSE_COMPOSITES[p] == null)
+            PULSE_COMPOSITES[p] = java.awt.AlphaComposite.getInstance(
+                    java.awt.AlphaComposite.SRC_OVER, PULSE_ALPHA * p / PULSE_STEPS);
+        return PULSE_COMPOSITES[p];
+    }
+
+    /** Shows the connection of {@code this} in its tool tip, and any hint */
+    private void updateToolTip() {
+        var c = getConnection();
+        String text = c != null ? c.getEntrName() : "Unknown";
+        setToolTipText(this.hintText == null ? text : text + " - " + this.hintText);
+    }
+
+    /** Outlines the shape of {@code this} and draws its route step inside */
+    private void paintRouteStep(java.awt.Graphics2D g, int x, int y, int size) {
+        var color = g.getColor();
+        var stroke = g.getStroke();
+        var font = g.getFont();
+        g.translate(x, y);
+        g.setColor(ROUTE_COLOR);
+        g.setStroke(ROUTE_STROKE);
+        g.draw(EntranceSprites.shape(this.shapeKind, size));
+
+        if (size >= MIN_SIZE * 2) {
+            String label = Integer.toString(this.routeStep);
+            if (this.routeFont == null || this.routeFontSize != size) {
+                this.routeFont = font.deriveFont(java.awt.Font.BOLD, size / 2f);
+                this.routeFontSize = size;
+            }
+            g.setFont(this.routeFont);
+            var fm = g.getFontMetrics();
+            g.drawString(label, (size - fm.stringWidth(label)) / 2,
+                    (size - fm.getHeight()) / 2 + fm.getAscent());
+        }
+        g.translate(-x, -y);
+        g.setFont(font);
+        g.setStroke(stroke);
+        g.setColor(color);
+    }
+
+    /** Fills the shape of {@code this} drawn at {@code size} at {@code (x, y)} */
+    private void fillShape(java.awt.Graphics2D g, int x, int y, int size,
+            java.awt.Color c) {
+        var color = g.getColor();
+        g.setColor(c);
+        g.translate(x, y);
+        g.fill(EntranceSprites.shape(this.shapeKind, size));
+        g.translate(-x, -y);
+        g.setColor(color);
+    }
+
+    /**
+     * Whether {@code (x, y)}, relative to the top left of the icon, lands in
+     * the shape of {@code this} when drawn at {@code size}.
+     *
+     * @see #paintAt(java.awt.Graphics2D, int, int, int, ConnectionState, boolean)
+     */
+    public boolean containsAt(int x, int y, int size) {
+        if (x < 0 || y < 0 || x >= size || y >= size)
+            return false;
+        return EntranceSprites.shape(this.shapeKind, size).contains(x, y);
+    }
+
+    /**
+     * Scales the dimensions of an icon by the width of the {@code MapPnl} it
+     * is placed on, keeping it within {@code [MIN_SIZE, MAX_SIZE]}.<p>
+     *
+     * Sizes stop changing once {@code MAX_SIZE} is reached, so they are
+     * looked up from {@code SIZE_BY_WIDTH} for every width below that.
+     *
+     * @param mapWidth Width of the map panel
+     * @return Width and height of an icon
+     */
+    public static int sizeFor(int mapWidth) {
+        if (mapWidth < 0)
+            return MIN_SIZE;
+        if (mapWidth >= SIZE_BY_WIDTH.length)
+            return MAX_SIZE;
+        return SIZE_BY_WIDTH[mapWidth];
+    }
+
+    /** Builds the {@code SIZE_BY_WIDTH} lookup table */
+    private static int[] buildSizeTable() {
+        int maxWidth = (int) Math.ceil((double) MAX_SIZE * MapPnl.DEFAULT_SIZE / DEFAULT_SIZE);
+        int[] sizes = new int[maxWidth + 1];
+        for (int mapWidth = 0; mapWidth <= maxWidth; mapWidth++) {
+            int w = (int)((double) DEFAULT_SIZE / MapPnl.DEFAULT_SIZE * mapWidth);
+            sizes[mapWidth] = Math.max(MIN_SIZE, Math.min(MAX_SIZE, w));
+        }
+        return sizes;
     }
 
     /**
@@ -305,43 +546,56 @@ public class EntranceIcon extends JButton {
      */
     @Override
     public Dimension getPreferredSize() {
-        int w = (int)((double) DEFAULT_SIZE / MapPnl.DEFAULT_SIZE * getParent().getWidth());
-        if (w > MAX_SIZE) {
-            return new Dimension(MAX_SIZE, MAX_SIZE);
-        }
-        else if (w < MIN_SIZE) {
-            return new Dimension(MIN_SIZE, MIN_SIZE);
-        }
+        int w = sizeFor(getParent() != null
+                ? getParent().getWidth()
+                : MapPnl.DEFAULT_SIZE);
         return new Dimension(w,w);
     }
 
     /**
      * Override {@link #contains(int, int)} <p>
      * 
-     * Calls the super implementation of {@code entrShape}'s contains
+     * Checks the point against the shape of {@code this} at its current size
      */
     @Override
     public boolean contains(int x, int y) {
-        return this.entrShape.contains(x, y);
+        return containsAt(x, y, getWidth());
     }
 
     /** Get the {@code ConnectionState} of {@code this} */
     public ConnectionState getConnectionState() {
-        return this.state;
+        return this.tracker.getState(this.id);
     }
 
     /** Sets {@code this.state} to the {@code UNKNOWN} state*/
     public boolean setToUnknown() {
-        if (this.state == ConnectionState.UNKNOWN )
-            return false;
-        this.state = ConnectionState.UNKNOWN;
-        return true;
+        return this.tracker.setToUnknown(this.id);
     }
-    
-    private void setConnectionState(ConnectionState s) {
-        this.state = s;
+
+    /**
+     * Makes every {@code EntranceIcon} attached to {@code tracker} follow
+     * changes to its entrance. Called once per {@code TrackerState}.
+     *
+     * @param tracker State whose views should be updated
+     */
+    public static void bindViews(TrackerState<EntranceIcon, EntranceGroup> tracker) {
+        tracker.addListener((id, previous) -> {
+            var e = tracker.getView(id);
+            if (e != null)
+                e.entranceChanged(previous);
+        });
+    }
+
+    /**
+     * Updates the tooltip and visibility after the entrance changed and
+     * repaints. Fires a {@code STATE_PROPERTY} change so that views not
+     * painting through {@code this} can follow along.
+     */
+    private void entranceChanged(ConnectionState previous) {
+        updateToolTip();
         setVisible(checkIfVisible());
-        repaint();
+        FrameScheduler.markDirty(this);
+        firePropertyChange(STATE_PROPERTY, previous, getConnectionState());
     }
 
     //-----------------------------------------------------------------------------------
@@ -351,32 +605,7 @@ public class EntranceIcon extends JButton {
     ===================================================================================*/
     // TODO write doc
     private boolean checkIfVisible() {
-        return this.isVisibleWhenUseless || (this.state != ConnectionState.USELESS);
-    }
-
-    /**
-     * Set the Shape and location of {@code this} based on the Entrane Type.<p>
-     * Draws a circle for {@code drop}'s, diamond for {@code cave}'s, a triangle
-     * for {@code dungeon}s, and a rectangle by default.
-     */
-    private void setShape() {
-        switch(this.entrShapeType) {
-            // TODO write case for dungeons, triangle
-            case "drop" -> this.entrShape = new java.awt.geom.Ellipse2D.Double(
-                    0, 0, getWidth(), getHeight()
-                );
-            case "cave" -> {
-                    var w = getWidth();
-                    this.entrShape = new java.awt.Polygon(
-                            new int[]{w/2, w, w/2, 0}, // x
-                            new int[]{0, w/2, w, w/2}, // y
-                            4
-                    );
-                }
-            default -> this.entrShape = new java.awt.Rectangle(
-                    0, 0, getWidth(), getHeight()
-                );
-        }
+        return this.isVisibleWhenUseless || !isUseless();
     }
 
     /*===================================================================================
@@ -392,6 +621,79 @@ public class EntranceIcon extends JButton {
     /** Minimum Dimension size of the button */
     public final static int MIN_SIZE = DEFAULT_SIZE/3;
 
+    /** Icon size for each map panel width up to where it reaches MAX_SIZE */
+    private final static int[] SIZE_BY_WIDTH = buildSizeTable();
+
+    /** Strongest opacity of the highlight pulsing over an armed icon */
+    private final static float PULSE_ALPHA = 0.45f;
+
+    /** Number of distinct opacities the highlight pulses through */
+    private final static int PULSE_STEPS = 32;
+
+    /** Highlight composites, made the first time each is used */
+    private final static java.awt.AlphaComposite[] PULSE_COMPOSITES =
+        new java.awt.AlphaComposite[PULSE_STEPS + 1];
+
+    /** Opacity of a dimmed icon */
+    private final static float DIM_ALPHA = 0.3f;
+
+    private final static java.awt.AlphaComposite DIM_COMPOSITE =
+        java.awt.AlphaComposite.getInstance(java.awt.AlphaComposite.SRC_OVER, DIM_ALPHA);
+
+    /** Drawn over icons that can't be reached from the start */
+    private final static java.awt.Color SHADE_COLOR = new java.awt.Color(0, 0, 0, 130);
+
+    /** Outline and step number of icons on a route */
+    private final static java.awt.Color ROUTE_COLOR = new java.awt.Color(255, 200, 0);
+
+    private final static java.awt.BasicStroke ROUTE_STROKE = new java.awt.BasicStroke(2);
+
+    /** Route step of an icon that isn't on the route being shown */
+    public final static int NOT_ON_ROUTE = 0;
+
+    /** No hint */
+    public final static int HINT_NONE = 0;
+
+    /** Hint that {@code this} must connect to one particular entrance */
+    public final static int HINT_FORCED = 1;
+
+    /** Hint that {@code this} has nothing left it could connect to */
+    public final static int HINT_IMPOSSIBLE = 2;
+
+    private final static java.awt.Color FORCED_COLOR = new java.awt.Color(0, 220, 90);
+
+    private final static java.awt.Color IMPOSSIBLE_COLOR = new java.awt.Color(230, 40, 40);
+
+    /** Heat of an icon that isn't on the heat map */
+    public final static float NO_HEAT = -1;
+
+    /** Number of distinct heat tints */
+    private final static int HEAT_STEPS = 16;
+
+    /** Heat tints, made the first time each is used */
+    private final static java.awt.Color[] HEAT_COLORS = new java.awt.Color[HEAT_STEPS + 1];
+
+    /** Name of the property fired when the {@code ConnectionState} changes */
+    public final static String STATE_PROPERTY = "connectionState";
+
+    /** Name of the property fired when {@code this} is dimmed or undimmed */
+    public final static String DIMMED_PROPERTY = "dimmed";
+
+    /** Name of the property fired when {@code this} becomes reachable or not */
+    public final static String REACHABLE_PROPERTY = "reachable";
+
+    /** Name of the property fired when the route step of {@code this} changes */
+    public final static String ROUTE_PROPERTY = "routeStep";
+
+    /** Name of the property fired when the hint of {@code this} changes */
+    public final static String HINT_PROPERTY = "hint";
+
+    /** Name of the property fired when the heat of {@code this} changes */
+    public final static String HEAT_PROPERTY = "heat";
+
+    /** Name of the property fired when {@code this} starts or stops pulsing */
+    public final static String PULSING_PROPERTY = "pulsing";
+
     /** Normal cateogrization to describe Type */
     protected final static String NORMAL = "normal";
 
@@ -402,13 +704,16 @@ public class EntranceIcon extends JButton {
     protected final static String DUNGEON = "dungeon";
 
     /** Constant Static int for Light World representation */
-    protected final static int LIGHT = 1;
+    protected final static int LIGHT = TrackerState.LIGHT;
 
     /** Constant Static int for Dark World representation */
-    protected final static int DARK = 2;
+    protected final static int DARK = TrackerState.DARK;
+
+    /** State of every entrance, {@code this} views entrance {@code id} */
+    private final TrackerState<EntranceIcon, EntranceGroup> tracker;
 
-    /** Current Connection State of the button */
-    private ConnectionState state;
+    /** Id of the entrance in {@code tracker} */
+    private final int id;
 
     /**
      * Coordinate Point that the button represents based on the underlying
@@ -416,66 +721,37 @@ public class EntranceIcon extends JButton {
      */
     private final Point entrPt;
 
-    /**  */
-    // private final String entrType;
-    private final EntrType entrType;
-
-    enum EntrType {
-        NORMAL  ("normal"),
-        DROP    ("drop"),
-        DUNGEON ("dungeon");
-        
-        private String category;
-        EntrType(String s) {
-            this.category = s;
-        }
+    /** Shape the icon is drawn as, one of the {@code EntranceSprites} kinds */
+    private final int shapeKind;
 
-        public String asString() { return this.category; }
+    private boolean isVisibleWhenUseless;
 
-        public static EntrType getFrom(String s) {
-            switch(s) {
-                case "normal":  return NORMAL;
-                case "cave":    return NORMAL;
-                case "drop":    return DROP;
-                case "dungeon": return DUNGEON;
-            }
-            return null;
-        }
-    };
+    /** Whether {@code this} is painted faded */
+    private boolean dimmed;
 
-    /** Shape of the Icon */
-    private java.awt.Shape entrShape;
+    /** Whether {@code this} is shaded as out of reach */
+    private boolean unreachable;
 
-    /** Type of entrance, ex. cave or drop */
-    private final String entrShapeType;
+    /** Where {@code this} comes on the route being shown */
+    private int routeStep;
 
-    /** Name of Entrance as declared by the ALTTPR randomizer */
-    private final String entrName;
+    /** What has been deduced about {@code this}, one of the {@code HINT}s */
+    private int hint;
 
-    private final int world;
+    /** Tool tip text of the {@code hint}, {@code null} if none */
+    private String hintText;
 
-    private EntranceGroup group;
+    /** Font the route step is drawn in, for icons {@code routeFontSize} big */
+    private java.awt.Font routeFont;
 
-    private boolean isVisibleWhenUseless;
+    private int routeFontSize;
 
-    /** {@code EntranceIcon} that {@code this} entrance is connected to*/
-    private EntranceIcon connection;
+    /** Tint on the heat map, {@code NO_HEAT} if none */
+    private float heat = NO_HEAT;
 
-    /**
-     * Background colors to paint. Used in conjunction with the
-     * {@code state} to decide which background color should be painted
-     */
-    private final Color[] BGColors = {
-        Color.RED,
-        new Color(0,0,200),
-        Color.ORANGE,
-        Color.GREEN
-    };
-
-    private final Color[] ArmedBGColors = {
-        new Color(255,122,122),
-        new Color(33,33,165),
-        new Color(255,165,122),
-        new Color(122,255,122)
-    };
+    /** Whether {@code this} is armed for the next click, and pulses */
+    private boolean pulsing;
+
+    /** Repaints {@code this} every frame while it is pulsing */
+    private final FrameScheduler.Animation pulse;
 }
@@ -0,0 +1,174 @@
+package com.mycompany.entrances;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+
+/**
+ * A shared atlas of pre-rendered entrance icons.<p>
+ *
+ * There is one antialiased sprite for each combination of shape, connection
+ * state, armed or not, and whole-pixel size, rendered the first time it is
+ * asked for. Painting an {@code EntranceIcon} is then a single
+ * {@code drawImage}. The icon shapes used for hit-testing are cached the same
+ * way.<p>
+ *
+ * Only meant to be used from the EDT.
+ *
+ * @author aauyong
+ */
+final class EntranceSprites {
+
+    private EntranceSprites() {}
+
+    /** Shape kind for drops, drawn as a circle */
+    static final int DROP = 0;
+
+    /** Shape kind for caves, drawn as a diamond */
+    static final int CAVE = 1;
+
+    /** Shape kind for everything else, drawn as a square */
+    static final int DEFAULT = 2;
+
+    /**
+     * Maps an entrance type from the locations file to its shape kind
+     * @param shapeType Type such as {@code drop} or {@code cave}
+     */
+    static int kindOf(String shapeType) {
+        return switch (shapeType) {
+            case "drop" -> DROP;
+            case "cave" -> CAVE;
+            default -> DEFAULT;
+        };
+    }
+
+    /**
+     * Gets the sprite for an icon.
+     *
+     * @param kind Shape kind
+     * @param s Connection state, picks the background color
+     * @param armed Whether to use the armed background color
+     * @param size Width and height of the sprite
+     * @return Sprite with its border already drawn
+     */
+    static BufferedImage get(int kind, ConnectionState s, boolean armed, int size) {
+        size = Math.max(1, size);
+        if (size > EntranceIcon.MAX_SIZE)
+            return render(kind, s, armed, size);
+
+        int idx = ((kind * STATES + s.ordinal()) * 2 + (armed ? 1 : 0))
+                * (EntranceIcon.MAX_SIZE + 1) + size;
+        BufferedImage img = SPRITES[idx];
+        if (img == null) {
+            img = render(kind, s, armed, size);
+            SPRITES[idx] = img;
+        }
+        return img;
+    }
+
+    /**
+     * Gets the outline of an icon, used for hit-testing.
+     *
+     * @param kind Shape kind
+     * @param size Width and height of the icon
+     */
+    static Shape shape(int kind, int size) {
+        size = Math.max(1, size);
+        if (size > EntranceIcon.MAX_SIZE)
+            return buildShape(kind, 0, 0, size, size);
+
+        int idx = kind * (EntranceIcon.MAX_SIZE + 1) + size;
+        Shape sh = SHAPES[idx];
+        if (sh == null) {
+            sh = buildShape(kind, 0, 0, size, size);
+            SHAPES[idx] = sh;
+        }
+        return sh;
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /**
+     * Renders a sprite: the shape is filled black, then the inside of it is
+     * filled with the background color, leaving a border of
+     * {@code BORDER_SIZE / 2} just inside the outline.
+     */
+    private static BufferedImage render(int kind, ConnectionState s,
+            boolean armed, int size) {
+        var img = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = img.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setComposite(AlphaComposite.Src);
+
+        g2.setColor(Color.BLACK);
+        g2.fill(buildShape(kind, 0, 0, size, size));
+
+        double inset = Math.min(BORDER_SIZE / 2.0, size / 4.0);
+        g2.setColor(armed ? ARMED_BG_COLORS[s.ordinal()] : BG_COLORS[s.ordinal()]);
+        g2.fill(buildShape(kind, inset, inset, size - 2 * inset, size - 2 * inset));
+        g2.dispose();
+        return img;
+    }
+
+    private static Shape buildShape(int kind, double x, double y, double w, double h) {
+        switch (kind) {
+            case DROP -> {
+                return new java.awt.geom.Ellipse2D.Double(x, y, w, h);
+            }
+            case CAVE -> {
+                var p = new java.awt.geom.Path2D.Double();
+                p.moveTo(x + w / 2, y);
+                p.lineTo(x + w, y + h / 2);
+                p.lineTo(x + w / 2, y + h);
+                p.lineTo(x, y + h / 2);
+                p.closePath();
+                return p;
+            }
+            default -> {
+                return new java.awt.geom.Rectangle2D.Double(x, y, w, h);
+            }
+        }
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    private static final int KINDS = 3;
+
+    private static final int STATES = ConnectionState.values().length;
+
+    /** Width of the border around the shape */
+    private static final int BORDER_SIZE = 3;
+
+    /** Sprites indexed by kind, state, armed and size */
+    private static final BufferedImage[] SPRITES =
+        new BufferedImage[KINDS * STATES * 2 * (EntranceIcon.MAX_SIZE + 1)];
+
+    /** Hit-test shapes indexed by kind and size */
+    private static final Shape[] SHAPES = new Shape[KINDS * (EntranceIcon.MAX_SIZE + 1)];
+
+    /**
+     * Background colors to paint, indexed by {@code ConnectionState} ordinal
+     */
+    private static final Color[] BG_COLORS = {
+        Color.RED,
+        new Color(0,0,200),
+        Color.ORANGE,
+        Color.GREEN
+    };
+
+    /** Background colors when the icon is armed */
+    private static final Color[] ARMED_BG_COLORS = {
+        new Color(255,122,122),
+        new Color(33,33,165),
+        new Color(255,165,122),
+        new Color(122,255,122)
+    };
+}
@@ -0,0 +1,157 @@
+package com.mycompany.entrances;
+
+import com.mycompany.entrancerando.SettingsHandler.Grouping;
+
+/**
+ * A copy of what decides which of the unconnected entrances could still pair
+ * with one another, taken on the EDT so that it can be worked on in the
+ * background.<p>
+ *
+ * Every unconnected entrance that isn't {@code USELESS} is open, and has to
+ * end up paired with an open entrance, possibly itself. Its domain is a bit
+ * mask of the other open entrances it could pair with: those the
+ * {@code ConnectabilityMasks} allow in either direction, since either may be
+ * the one clicked first, minus those whose groups wouldn't fit if the two
+ * would be connected as groups. Whether it may pair with itself, staying
+ * vanilla, is kept apart in {@code vanilla}, so that a domain down to one
+ * entrance means a partner other than itself.
+ *
+ * @author aauyong
+ * @see DeductionEngine
+ * @see CompletionSampler
+ */
+final class OpenConnections {
+
+    /**
+     * Copies what is needed from {@code tracker}. Must be called on the EDT.
+     */
+    static OpenConnections capture(TrackerState<?, ?> tracker) {
+        int n = tracker.size();
+        var o = new OpenConnections(tracker, ConnectionHandler.getGroupSettings(),
+                tracker.getConnectionEpoch());
+        long[] masks = ConnectionHandler.getMasks(tracker).copyMasks();
+        for (int i = 0; i < n; i++) {
+            if (tracker.getConnection(i) == TrackerState.NONE && !tracker.isUseless(i))
+                setBit(o.open, i);
+        }
+        for (int a = 0; a < n; a++) {
+            if (!isSet(o.open, a))
+                continue;
+            o.domains[a] = new long[o.words];
+            for (int w = 0; w < o.words; w++) {
+                o.domains[a][w] = masks[a * o.words + w] & o.open[w];
+            }
+            o.vanilla[a] = isSet(o.domains[a], a) && staysInGroup(tracker, a);
+            set(o.domains[a], a, false);
+        }
+        return o;
+    }
+
+    /**
+     * Makes the domains symmetric and removes the pairs whose groups don't
+     * fit. Takes a while, so is done on the thread using them.
+     *
+     * @return {@code false} if the thread was interrupted first
+     */
+    boolean resolve() {
+        int n = this.domains.length;
+        for (int a = 0; a < n; a++) {
+            if (this.domains[a] == null)
+                continue;
+            for (int b = a + 1; b < n; b++) {
+                if (this.domains[b] == null)
+                    continue;
+                boolean allowed = isSet(this.domains[a], b) || isSet(this.domains[b], a);
+                if (allowed && connectsByGroup(a, b))
+                    allowed = this.tracker.groupsConnectable(
+                            this.tracker.getGroup(a), this.tracker.getGroup(b));
+                set(this.domains[a], b, allowed);
+                set(this.domains[b], a, allowed);
+            }
+            if (Thread.currentThread().isInterrupted())
+                return false;
+        }
+        return true;
+    }
+
+    /** Whether {@code a} and {@code b} would be connected as groups */
+    boolean connectsByGroup(int a, int b) {
+        return ConnectionHandler.connectsByGroup(this.grouping, this.tracker, a, b);
+    }
+
+    static int count(long[] m) {
+        int c = 0;
+        for (long w : m) {
+            c += Long.bitCount(w);
+        }
+        return c;
+    }
+
+    static boolean isSet(long[] m, int bit) {
+        return (m[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    static void setBit(long[] m, int bit) {
+        m[bit >>> 6] |= 1L << bit;
+    }
+
+    static void set(long[] m, int bit, boolean on) {
+        if (on)
+            m[bit >>> 6] |= 1L << bit;
+        else
+            m[bit >>> 6] &= ~(1L << bit);
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /**
+     * Whether the group of {@code a} isn't already connected to another
+     * group, which the rest of its members would have to follow
+     */
+    private static boolean staysInGroup(TrackerState<?, ?> tracker, int a) {
+        int g = tracker.getGroup(a);
+        if (g == TrackerState.NONE)
+            return true;
+        int h = tracker.getConnectingGroup(g);
+        return h == TrackerState.NONE || h == g;
+    }
+
+    private OpenConnections(TrackerState<?, ?> tracker, Grouping grouping, long epoch) {
+        this.tracker = tracker;
+        this.grouping = grouping;
+        this.epoch = epoch;
+        this.words = (tracker.size() + 63) >>> 6;
+        this.open = new long[this.words];
+        this.domains = new long[tracker.size()][];
+        this.vanilla = new boolean[tracker.size()];
+    }
+
+    /*===========================================================================
+    Variables
+    ===========================================================================*/
+
+    /** Only what doesn't change once built is read from this */
+    final TrackerState<?, ?> tracker;
+
+    final Grouping grouping;
+
+    /** Connection epoch of {@code tracker} when captured */
+    final long epoch;
+
+    /** {@code long}s in a mask of entrances */
+    final int words;
+
+    /** Entrances that are open */
+    final long[] open;
+
+    /**
+     * Domain of each open entrance, never including itself, {@code null} for
+     * the rest
+     */
+    final long[][] domains;
+
+    /** Whether each open entrance may stay vanilla, connected to itself */
+    final boolean[] vanilla;
+}
@@ -0,0 +1,231 @@
+package com.mycompany.entrances;
+
+import java.util.Arrays;
+
+/**
+ * Finds the shortest route between two entrances through the connections
+ * made so far.<p>
+ *
+ * The graph is the same {@code CaveGraph} that {@code ReachabilityEngine}
+ * uses. A route starts in front of one door and steps either through a door,
+ * from its outside into the cave it is connected to or back out, across a
+ * cave between the doors of a group, or between the outside of a door and
+ * the overworld it is in. Each step costs the same. The route is given as
+ * the doors it goes through, so walking over the overworld from {@code a} to
+ * {@code b} gives {@code a, b}, stepping into the cave behind {@code c} from
+ * {@code b} adds {@code c}, and walking across to leave by {@code d} adds
+ * {@code d} and the door {@code d} comes out at.<p>
+ *
+ * A breadth first search from each entrance a route is asked from is kept,
+ * along with the nodes it reached, so repeated queries from the same place
+ * only walk the parent links back. A change to the connection of {@code id}
+ * only changes the edge from its outside, so only the searches that reached
+ * the outside of {@code id}, or the interior it is now connected to, are
+ * dropped.<p>
+ *
+ * Follows the {@code TrackerState} it is built on as a {@code Listener}.
+ *
+ * @author aauyong
+ * @see ReachabilityEngine
+ */
+public final class RouteFinder implements TrackerState.Listener {
+
+    /** Builds a finder over {@code tracker} and follows its changes. */
+    public RouteFinder(TrackerState<?, ?> tracker) {
+        this.tracker = tracker;
+        this.graph = new CaveGraph(tracker);
+        int n = tracker.size();
+        this.words = (this.graph.nodes() + 63) >>> 6;
+        this.parents = new int[n][];
+        this.reached = new long[n][];
+        this.linked = new int[n];
+        this.queue = new int[this.graph.nodes()];
+        for (int i = 0; i < n; i++) {
+            this.linked[i] = tracker.getConnection(i);
+        }
+        tracker.addListener(this);
+    }
+
+    /** Stops following changes to the {@code TrackerState} */
+    public void dispose() {
+        this.tracker.removeListener(this);
+    }
+
+    /**
+     * The shortest route from the door of {@code from} to the door of
+     * {@code to}, reaching it from outside if it can be and from the cave
+     * behind it if not.
+     * @return Ids of the doors gone through, starting with {@code from} and
+     * ending with {@code to}, or {@code null} if {@code to} can't be reached
+     */
+    public int[] route(int from, int to) {
+        if (from == to)
+            return new int[] {from};
+
+        int[] parent = searchFrom(from);
+        int goal = this.graph.outside(to);
+        if (parent[goal] == UNSEEN)
+            goal = this.graph.interior(to);
+        if (parent[goal] == UNSEEN)
+            return null;
+
+        int len = 0;
+        for (int v = goal; v != this.graph.outside(from); v = parent[v]) {
+            len++;
+        }
+        int[] path = new int[len + 1];
+        for (int v = goal, k = len; k >= 0; v = parent[v], k--) {
+            path[k] = v;
+        }
+
+        // Each step adds at most two doors, and the end one more
+        int[] route = new int[len * 2 + 2];
+        int p = 0;
+        route[p++] = from;
+        for (int k = 1; k <= len; k++) {
+            if (this.graph.isOverworld(path[k]))
+                continue;
+            if (this.graph.isInterior(path[k])) {
+                p = addDoor(route, p, this.tracker.getConnection(path[k - 1]));
+            } else {
+                if (this.graph.isInterior(path[k - 1]))
+                    p = addDoor(route, p, this.tracker.getConnection(path[k]));
+                p = addDoor(route, p, path[k]);
+            }
+        }
+        p = addDoor(route, p, to);
+        return Arrays.copyOf(route, p);
+    }
+
+    /**
+     * Drops the searches that reached either end of the edge that the
+     * change to {@code id}'s connection adds or removes.
+     */
+    @Override
+    public void entranceChanged(int id, ConnectionState previous) {
+        int c = this.tracker.getConnection(id);
+        if (c == this.linked[id])
+            return;
+        this.linked[id] = c;
+
+        // A removed edge was only crossed by a search that reached both ends
+        int outside = this.graph.outside(id);
+        int interior = c == TrackerState.NONE ? outside : this.graph.interior(c);
+        for (int s = 0; s < this.reached.length; s++) {
+            long[] r = this.reached[s];
+            if (r == null)
+                continue;
+            if (isSet(r, outside) || isSet(r, interior)) {
+                this.reached[s] = null;
+                this.parents[s] = null;
+            }
+        }
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /**
+     * The search from the outside of {@code from}, run if there isn't one
+     * kept.
+     * @return Node each node was first reached from, {@code UNSEEN} if it
+     * wasn't
+     */
+    private int[] searchFrom(int from) {
+        if (this.parents[from] != null)
+            return this.parents[from];
+
+        int n = this.tracker.size();
+        int[] parent = new int[this.graph.nodes()];
+        long[] seen = new long[this.words];
+        Arrays.fill(parent, UNSEEN);
+        int origin = this.graph.outside(from);
+        parent[origin] = origin;
+        setBit(seen, origin);
+
+        int head = 0;
+        int tail = 0;
+        this.queue[tail++] = origin;
+        while (head < tail) {
+            int v = this.queue[head++];
+            if (this.graph.isOverworld(v)) {
+                for (int i : this.graph.outsides(v)) {
+                    tail = visit(parent, seen, v, this.graph.outside(i), tail);
+                }
+                continue;
+            }
+            if (!this.graph.isInterior(v)) {
+                int c = this.tracker.getConnection(v);
+                if (c != TrackerState.NONE)
+                    tail = visit(parent, seen, v, this.graph.interior(c), tail);
+                tail = visit(parent, seen, v, this.graph.overworld(v), tail);
+                continue;
+            }
+
+            // Out through any door of the cave, to wherever leads into it
+            for (int door : this.graph.doors(v)) {
+                for (int i = 0; i < n; i++) {
+                    if (this.tracker.getConnection(i) == door)
+                        tail = visit(parent, seen, v, this.graph.outside(i), tail);
+                }
+            }
+        }
+
+        this.parents[from] = parent;
+        this.reached[from] = seen;
+        return parent;
+    }
+
+    /** Adds {@code door} to the end of {@code route} unless it is already last */
+    private static int addDoor(int[] route, int p, int door) {
+        if (route[p - 1] == door)
+            return p;
+        route[p] = door;
+        return p + 1;
+    }
+
+    /** Queues {@code to} as reached from {@code from} if it hasn't been yet */
+    private int visit(int[] parent, long[] seen, int from, int to, int tail) {
+        if (parent[to] != UNSEEN)
+            return tail;
+        parent[to] = from;
+        setBit(seen, to);
+        this.queue[tail] = to;
+        return tail + 1;
+    }
+
+    private static boolean isSet(long[] m, int bit) {
+        return (m[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private static void setBit(long[] m, int bit) {
+        m[bit >>> 6] |= 1L << bit;
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    /** Parent of a node the search hasn't reached */
+    private static final int UNSEEN = -1;
+
+    private final TrackerState<?, ?> tracker;
+
+    private final CaveGraph graph;
+
+    /** {@code long}s in a mask of nodes */
+    private final int words;
+
+    /** Kept search from each entrance, {@code null} if there is none */
+    private final int[][] parents;
+
+    /** Nodes reached by each kept search, {@code null} if there is none */
+    private final long[][] reached;
+
+    /** Connection of each entrance as of the last change seen */
+    private final int[] linked;
+
+    /** Scratch queue for searches */
+    private final int[] queue;
+}
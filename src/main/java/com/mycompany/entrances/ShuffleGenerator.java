@@ -0,0 +1,401 @@
+package com.mycompany.entrances;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import com.mycompany.entrancerando.SettingsHandler.Grouping;
+import com.mycompany.locationdata.LocationCatalog;
+
+/**
+ * Generates complete entrance mappings that follow the rules of one
+ * {@code Grouping}, for testing, practice and benchmarking.<p>
+ *
+ * A mapping gives the entrance each entrance is connected to, pairing every
+ * entrance with one other or itself. It is built the way the tracker would
+ * be filled in: the free entrance with the fewest partners left is taken
+ * next, and paired with a random entrance still free that it could connect
+ * to in either direction under {@code ConnectabilityMasks}, including the
+ * {@code RESTRICTED} rule that a group leads to one world. When the two
+ * would be connected as groups, their members are paired as
+ * {@code TrackerState.pairMembers} gives. If an entrance runs out of
+ * partners, the mapping is started again, up to {@code MAX_ATTEMPTS} times
+ * before the grouping is given up on. {@code INSANITY} is still a stub
+ * in {@code ConnectionHandler}, which only lets entrances connect to
+ * themselves, so its mappings are all vanilla.<p>
+ *
+ * Each mapping is decided by its seed alone, and {@code stream} seeds the
+ * {@code i}th mapping from the stream's seed and {@code i}, so a parallel
+ * stream gives the same mappings as a sequential one.<p>
+ *
+ * {@code apply} fills a {@code TrackerState} in with a mapping, to feed
+ * complete shuffles to the engines that follow the tracker.
+ *
+ * @author aauyong
+ */
+public final class ShuffleGenerator {
+
+    /**
+     * Builds a generator for the locations and groups of {@code cat} under
+     * {@code grouping}.
+     */
+    public ShuffleGenerator(LocationCatalog cat, Grouping grouping) {
+        this.tracker = TrackerState.fromCatalog(cat);
+        this.grouping = grouping;
+        int n = this.tracker.size();
+        this.words = (n + 63) >>> 6;
+
+        var masks = new ConnectabilityMasks(this.tracker, grouping);
+        masks.dispose();
+        long[] oneWay = masks.copyMasks();
+
+        this.legal = new long[n * this.words];
+        this.byGroup = new long[n * this.words];
+        for (int a = 0; a < n; a++) {
+            for (int b = 0; b < n; b++) {
+                if (isSet(oneWay, a * this.words, b) || isSet(oneWay, b * this.words, a))
+                    setBit(this.legal, a * this.words, b);
+                if (ConnectionHandler.connectsByGroup(grouping, this.tracker, a, b))
+                    setBit(this.byGroup, a * this.words, b);
+            }
+        }
+
+        this.restricted = new boolean[n];
+        this.worldMasks = new long[3 * this.words];
+        for (int a = 0; a < n; a++) {
+            this.restricted[a] = grouping == Grouping.RESTRICTED
+                    && this.tracker.getGroup(a) != TrackerState.NONE
+                    && this.tracker.getTypeOrdinal(a) != EntrType.DUNGEON.ordinal();
+            setBit(this.worldMasks, this.tracker.getWorld(a) * this.words, a);
+            setBit(this.worldMasks, 0, a);
+        }
+
+        int g = this.tracker.groupCount();
+        this.groupPairs = new int[g * g][];
+        for (int i = 0; i < g; i++) {
+            for (int j = 0; j < g; j++) {
+                this.groupPairs[i * g + j] = this.tracker.pairMembers(i, j);
+            }
+        }
+    }
+
+    /** Number of entrances in a mapping */
+    public int size() {
+        return this.tracker.size();
+    }
+
+    public Grouping getGrouping() {
+        return this.grouping;
+    }
+
+    /** Name of entrance {@code id} of a mapping */
+    public String getName(int id) {
+        return this.tracker.getName(id);
+    }
+
+    /** The mapping decided by {@code seed} */
+    public int[] generate(long seed) {
+        int[] mapping = new int[size()];
+        generate(new SplittableRandom(seed), mapping);
+        return mapping;
+    }
+
+    /**
+     * Fills {@code mapping} with a mapping drawn from {@code rnd}.
+     * @return Mappings started, {@code 1} if the first one was finished
+     * @throws IllegalStateException If no mapping was finished in
+     * {@code MAX_ATTEMPTS} tries, as when the groups can't be paired under
+     * the grouping at all
+     */
+    public int generate(SplittableRandom rnd, int[] mapping) {
+        Scratch s = SCRATCH.get();
+        s.ensure(this);
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            if (fill(rnd, mapping, s))
+                return attempt;
+        }
+        throw new IllegalStateException("No " + this.grouping.asString()
+                + " mapping found in " + MAX_ATTEMPTS + " attempts");
+    }
+
+    /**
+     * {@code count} mappings from {@code seed}, in order. The stream may be
+     * made parallel, which doesn't change the mappings.
+     */
+    public Stream<int[]> stream(long seed, long count) {
+        return LongStream.range(0, count).mapToObj(i -> generate(mix(seed, i)));
+    }
+
+    /**
+     * Whether {@code mapping} pairs every entrance with one other or itself,
+     * each pair could be connected in some order, and two entrances that
+     * would be connected as groups have every member of their groups paired
+     * as {@code TrackerState.pairMembers} gives. Doesn't check the
+     * {@code RESTRICTED} world rule, which depends on the order.
+     */
+    public boolean isValid(int[] mapping) {
+        int n = size();
+        if (mapping.length != n)
+            return false;
+        for (int a = 0; a < n; a++) {
+            int b = mapping[a];
+            if (b < 0 || b >= n || mapping[b] != a || !isSet(this.legal, a * this.words, b))
+                return false;
+        }
+        for (int a = 0; a < n; a++) {
+            int b = mapping[a];
+            if (!isSet(this.byGroup, a * this.words, b))
+                continue;
+            int[] pairs = this.groupPairs[this.tracker.getGroup(a) * this.tracker.groupCount()
+                    + this.tracker.getGroup(b)];
+            if (pairs == null)
+                return false;
+            for (int k = 0; k < pairs.length; k += 2) {
+                if (mapping[pairs[k]] != pairs[k + 1])
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Connects every entrance of {@code tracker} as {@code mapping} gives,
+     * clearing whatever was connected before. {@code tracker} must be built
+     * from the same catalog as this generator.
+     */
+    public static void apply(int[] mapping, TrackerState<?, ?> tracker) {
+        for (int a = 0; a < mapping.length; a++) {
+            if (tracker.getConnection(a) != mapping[a])
+                tracker.clearConnection(a);
+        }
+        for (int a = 0; a < mapping.length; a++) {
+            tracker.connect(a, mapping[a]);
+        }
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /**
+     * Tries to fill in one mapping.
+     * @return {@code false} if some entrance ran out of partners
+     */
+    private boolean fill(SplittableRandom rnd, int[] mapping, Scratch s) {
+        int n = size();
+        Arrays.fill(mapping, TrackerState.NONE);
+        Arrays.fill(s.avail, -1L);
+        s.avail[this.words - 1] = n % 64 == 0 ? -1L : (1L << n) - 1;
+        Arrays.fill(s.groupWorld, 0);
+        for (int w = 0; w < this.words; w++) {
+            s.accepts[TrackerState.LIGHT * this.words + w] = s.avail[w];
+            s.accepts[TrackerState.DARK * this.words + w] = s.avail[w];
+        }
+
+        while (true) {
+            // The free entrance with the fewest partners left goes next
+            int a = TrackerState.NONE;
+            int fewest = Integer.MAX_VALUE;
+            for (int i = 0; i < n && fewest > 0; i++) {
+                if (mapping[i] != TrackerState.NONE)
+                    continue;
+                int c = candidates(i, s);
+                if (c < fewest) {
+                    fewest = c;
+                    a = i;
+                }
+            }
+            if (a == TrackerState.NONE)
+                return true;
+
+            int base = a * this.words;
+            int ga = this.tracker.getGroup(a);
+            int c = candidates(a, s);
+            boolean paired = false;
+            while (c > 0 && !paired) {
+                int b = nth(s.cand, rnd.nextInt(c));
+                s.cand[b >>> 6] &= ~(1L << b);
+                c--;
+                if (!isSet(this.byGroup, base, b)) {
+                    pair(mapping, s, a, b);
+                    paired = true;
+                } else {
+                    paired = pairGroups(mapping, s, ga, this.tracker.getGroup(b));
+                }
+            }
+            if (!paired)
+                return false;
+        }
+    }
+
+    /**
+     * Puts the free entrances {@code a} could connect to, or that could
+     * connect to {@code a}, into {@code s.cand}.
+     * @return How many there are
+     */
+    private int candidates(int a, Scratch s) {
+        int base = a * this.words;
+        int worldA = this.restricted[a] ? s.groupWorld[this.tracker.getGroup(a)] : 0;
+        int c = 0;
+        for (int w = 0; w < this.words; w++) {
+            long aToB = worldA < 0 ? 0 : this.worldMasks[worldA * this.words + w];
+            long bToA = s.accepts[this.tracker.getWorld(a) * this.words + w];
+            s.cand[w] = this.legal[base + w] & s.avail[w] & (aToB | bToA);
+            c += Long.bitCount(s.cand[w]);
+        }
+        return c;
+    }
+
+    /**
+     * Pairs the members of groups {@code g} and {@code h} if all of them are
+     * free
+     */
+    private boolean pairGroups(int[] mapping, Scratch s, int g, int h) {
+        int[] pairs = this.groupPairs[g * this.tracker.groupCount() + h];
+        if (pairs == null)
+            return false;
+        for (int k = 0; k < pairs.length; k++) {
+            if (!isSet(s.avail, 0, pairs[k]))
+                return false;
+        }
+        for (int k = 0; k < pairs.length; k += 2) {
+            pair(mapping, s, pairs[k], pairs[k + 1]);
+        }
+        return true;
+    }
+
+    private void pair(int[] mapping, Scratch s, int a, int b) {
+        mapping[a] = b;
+        mapping[b] = a;
+        s.avail[a >>> 6] &= ~(1L << a);
+        s.avail[b >>> 6] &= ~(1L << b);
+        if (this.restricted[a])
+            leadTo(s, a, this.tracker.getWorld(b));
+        if (this.restricted[b])
+            leadTo(s, b, this.tracker.getWorld(a));
+    }
+
+    /**
+     * Records that the group of {@code a} leads to {@code world}, and keeps
+     * which of its members accept partners from each world up to date
+     */
+    private void leadTo(Scratch s, int a, int world) {
+        int g = this.tracker.getGroup(a);
+        int before = s.groupWorld[g];
+        int now = before == 0 || before == world ? world : -1;
+        if (now == before)
+            return;
+        s.groupWorld[g] = now;
+        for (int k = 0; k < this.tracker.getGroupSize(g); k++) {
+            int m = this.tracker.getGroupMember(g, k);
+            if (!this.restricted[m])
+                continue;
+            for (int w = TrackerState.LIGHT; w <= TrackerState.DARK; w++) {
+                if (now != w)
+                    s.accepts[w * this.words + (m >>> 6)] &= ~(1L << m);
+            }
+        }
+    }
+
+    /** The {@code k}th set bit of {@code m}, from {@code 0} */
+    private static int nth(long[] m, int k) {
+        for (int w = 0; w < m.length; w++) {
+            int c = Long.bitCount(m[w]);
+            if (k >= c) {
+                k -= c;
+                continue;
+            }
+            long bits = m[w];
+            for (; k > 0; k--) {
+                bits &= bits - 1;
+            }
+            return (w << 6) + Long.numberOfTrailingZeros(bits);
+        }
+        return TrackerState.NONE;
+    }
+
+    /** Seed of the {@code i}th mapping of a stream seeded with {@code seed} */
+    private static long mix(long seed, long i) {
+        long z = seed + (i + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static boolean isSet(long[] m, int base, int bit) {
+        return (m[base + (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    private static void setBit(long[] m, int base, int bit) {
+        m[base + (bit >>> 6)] |= 1L << bit;
+    }
+
+    /** Working arrays of one thread, reused between mappings */
+    private static final class Scratch {
+        void ensure(ShuffleGenerator gen) {
+            if (this.owner == gen)
+                return;
+            this.owner = gen;
+            this.avail = new long[gen.words];
+            this.cand = new long[gen.words];
+            this.accepts = new long[gen.worldMasks.length];
+            this.groupWorld = new int[gen.tracker.groupCount()];
+        }
+
+        ShuffleGenerator owner;
+
+        /** Entrances not paired yet */
+        long[] avail;
+
+        /** Partners left for the entrance being paired */
+        long[] cand;
+
+        /**
+         * Entrances that may connect to a partner in each world, indexed by
+         * {@code LIGHT} or {@code DARK} like {@code worldMasks}
+         */
+        long[] accepts;
+
+        /** World each group leads to, as {@code getConnectingWorld} gives */
+        int[] groupWorld;
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    /** Mappings started before {@code generate} gives up */
+    private static final int MAX_ATTEMPTS = 10_000;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /** Locations and groups, never connected */
+    private final TrackerState<?, ?> tracker;
+
+    private final Grouping grouping;
+
+    /** {@code long}s in a mask of entrances */
+    private final int words;
+
+    /**
+     * Entrances each could be paired with, in either direction, ignoring the
+     * {@code RESTRICTED} world rule
+     */
+    private final long[] legal;
+
+    /** Entrances each would be connected to as groups */
+    private final long[] byGroup;
+
+    /** Whether each entrance is held to the {@code RESTRICTED} world rule */
+    private final boolean[] restricted;
+
+    /**
+     * Entrances in each world, indexed by {@code LIGHT} or {@code DARK}, with
+     * every entrance at index {@code 0}
+     */
+    private final long[] worldMasks;
+
+    /** {@code pairMembers} of every two groups, at {@code g * groups + h} */
+    private final int[][] groupPairs;
+}
@@ -0,0 +1,585 @@
+package com.mycompany.entrances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.mycompany.locationdata.LocationCatalog;
+
+/**
+ * The state of every entrance and entrance group being tracked, kept apart
+ * from Swing so it can be used and queried without a display.<p>
+ *
+ * Entrances are numbered by their index in the {@code LocationCatalog}, and
+ * all of their state is kept in flat arrays indexed by that number: the
+ * entrance each one is connected to, its {@code ConnectionState} ordinal, its
+ * world and its {@code EntrType} ordinal. Groups are numbered the same way,
+ * with their members kept back to back in one array.<p>
+ *
+ * {@code EntranceIcon} and {@code EntranceGroup} are views over this, and
+ * the state is typed by the views it holds, {@code V} for entrances and
+ * {@code G} for groups, so that code which only reads the state can take a
+ * {@code TrackerState<?, ?>}. Each entrance and group can have a view
+ * attached, which the state keeps but never looks at, and every change to an
+ * entrance is passed to the {@code Listener}s so views can update.
+ * {@code getConnectionEpoch} counts connection changes, for caches that
+ * depend on them.<p>
+ *
+ * Only meant to be changed from one thread at a time.
+ *
+ * @author aauyong
+ */
+public final class TrackerState<V, G> {
+
+    /**
+     * Told about every change to an entrance's state or connection, and to
+     * the group a group is connected to.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param id Entrance that changed
+         * @param previous Its {@code ConnectionState} before the change
+         */
+        void entranceChanged(int id, ConnectionState previous);
+
+        /**
+         * Called after the group connected to group {@code g} changed, once
+         * its members' changes have been passed on.
+         * @param g Group that changed
+         */
+        default void groupChanged(int g) {}
+    }
+
+    /**
+     * A copy of everything about the entrances that can change, taken with
+     * {@code snapshot}.
+     */
+    public record Snapshot(int[] connections, byte[] states, int[] groupConnections,
+            long epoch) {}
+
+    /**
+     * Builds the state for every location and group in {@code cat}, with
+     * every entrance {@code UNKNOWN} and unconnected.
+     */
+    public static <V, G> TrackerState<V, G> fromCatalog(LocationCatalog cat) {
+        int n = cat.size();
+        var s = new TrackerState<V, G>(n, cat.groupCount());
+        for (int i = 0; i < n; i++) {
+            s.names[i] = cat.name(i);
+            s.worlds[i] = cat.isLightWorld(i) ? LIGHT : DARK;
+            EntrType t = EntrType.getFrom(cat.type(i));
+            s.types[i] = t == null ? NO_TYPE : (byte) t.ordinal();
+        }
+
+        int total = 0;
+        for (int g = 0; g < cat.groupCount(); g++) {
+            total += cat.groupMembers(g).length;
+        }
+        s.groupMembers = new int[total];
+        s.memberKeys = new byte[total];
+
+        int k = 0;
+        for (int g = 0; g < cat.groupCount(); g++) {
+            s.groupNames[g] = cat.groupName(g);
+            s.groupStart[g] = k;
+            int[] members = cat.groupMembers(g);
+            for (int m = 0; m < members.length; m++) {
+                int id = members[m];
+                s.groupMembers[k] = id;
+                s.memberKeys[k] = keyOf(cat.groupDirection(g, m), s.types[id]);
+                s.keyCounts[g * KEYS + s.memberKeys[k]]++;
+                if (s.groupOf[id] == NONE)
+                    s.groupOf[id] = g;
+                k++;
+            }
+            s.dropPairing[g] = members.length > 0
+                    && s.memberKeys[k - 1] == typeKey(EntrType.DROP.ordinal());
+        }
+        s.groupStart[cat.groupCount()] = k;
+        return s;
+    }
+
+    /*===========================================================================
+    Entrances
+    ===========================================================================*/
+
+    /** Number of entrances */
+    public int size() {
+        return this.names.length;
+    }
+
+    public String getName(int id) {
+        return this.names[id];
+    }
+
+    /** Id of the entrance called {@code name}, {@code NONE} if there is none */
+    public int indexOf(String name) {
+        for (int i = 0; i < this.names.length; i++) {
+            if (this.names[i].equals(name))
+                return i;
+        }
+        return NONE;
+    }
+
+    public ConnectionState getState(int id) {
+        return STATES[this.states[id]];
+    }
+
+    public boolean isUseless(int id) {
+        return this.states[id] == ConnectionState.USELESS.ordinal();
+    }
+
+    /** Id of the entrance {@code id} is connected to, {@code NONE} if none */
+    public int getConnection(int id) {
+        return this.connections[id];
+    }
+
+    /** {@code LIGHT} or {@code DARK} */
+    public byte getWorld(int id) {
+        return this.worlds[id];
+    }
+
+    /** Generic type of entrance {@code id}, such as {@code normal} */
+    public String getType(int id) {
+        return this.types[id] == NO_TYPE ? null : TYPES[this.types[id]].asString();
+    }
+
+    /** {@code EntrType} ordinal of entrance {@code id}, {@code -1} if unknown */
+    public byte getTypeOrdinal(int id) {
+        return this.types[id];
+    }
+
+    /**
+     * Connects {@code a} to {@code b} if {@code a} isn't connected yet, and
+     * marks it {@code CONNECTED}. Only {@code a} is changed.
+     *
+     * @return {@code true} if the connection was made
+     */
+    public boolean connect(int a, int b) {
+        if (this.connections[a] != NONE)
+            return false;
+        this.connections[a] = b;
+        this.epoch++;
+        setState(a, ConnectionState.CONNECTED);
+        return true;
+    }
+
+    /**
+     * Removes the connection of {@code a} and marks it {@code UNKNOWN}.
+     *
+     * @return {@code false} if {@code a} has no connection or is
+     * {@code USELESS}
+     */
+    public boolean clearConnection(int a) {
+        if (this.connections[a] == NONE || isUseless(a))
+            return false;
+        this.connections[a] = NONE;
+        this.epoch++;
+        setState(a, ConnectionState.UNKNOWN);
+        return true;
+    }
+
+    /**
+     * Increments the state of {@code id}, never past {@code PENDING} unless
+     * it is connected.
+     *
+     * @return {@code true} if {@code id} is connected or its state didn't
+     * change
+     * @see EntranceIcon#incState()
+     */
+    public boolean incState(int id) {
+        if (this.connections[id] == NONE) {
+            var newState = ConnectionState.min(
+                    ConnectionState.PENDING,
+                    getState(id).inc()
+            );
+            boolean res = newState == getState(id);
+            setState(id, newState);
+            return res;
+        }
+        setState(id, getState(id).inc());
+        return true;
+    }
+
+    /**
+     * Decrements the state of {@code id} if it isn't connected or already
+     * {@code USELESS}.
+     *
+     * @return {@code true} if the state was decremented
+     */
+    public boolean decState(int id) {
+        if (this.connections[id] == NONE && !isUseless(id)) {
+            setState(id, getState(id).dec());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets {@code id} to {@code UNKNOWN}
+     * @return {@code false} if it already was
+     */
+    public boolean setToUnknown(int id) {
+        if (getState(id) == ConnectionState.UNKNOWN)
+            return false;
+        setState(id, ConnectionState.UNKNOWN);
+        return true;
+    }
+
+    /** Number of connection changes made so far */
+    public long getConnectionEpoch() {
+        return this.epoch;
+    }
+
+    /*===========================================================================
+    Groups
+    ===========================================================================*/
+
+    /** Number of groups */
+    public int groupCount() {
+        return this.groupNames.length;
+    }
+
+    public String getGroupName(int g) {
+        return this.groupNames[g];
+    }
+
+    /** Group entrance {@code id} is in, {@code NONE} if it isn't grouped */
+    public int getGroup(int id) {
+        return this.groupOf[id];
+    }
+
+    /** Number of members of group {@code g} */
+    public int getGroupSize(int g) {
+        return this.groupStart[g + 1] - this.groupStart[g];
+    }
+
+    /** Id of the {@code k}th member of group {@code g} */
+    public int getGroupMember(int g, int k) {
+        return this.groupMembers[this.groupStart[g] + k];
+    }
+
+    /**
+     * Whether the last member added to group {@code g} is keyed as a drop,
+     * which marks the group as a drop and its exit
+     */
+    public boolean isDropPairing(int g) {
+        return this.dropPairing[g];
+    }
+
+    /** Group that {@code g} was last connected to, {@code NONE} if none */
+    public int getConnectingGroup(int g) {
+        return this.groupConnections[g];
+    }
+
+    /**
+     * Whether every key of group {@code g}, a direction or a type, is also a
+     * key of group {@code h} with as many members.
+     */
+    public boolean groupsConnectable(int g, int h) {
+        for (int k = 0; k < KEYS; k++) {
+            int count = this.keyCounts[g * KEYS + k];
+            if (count > 0 && this.keyCounts[h * KEYS + k] != count)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Pairs each member of group {@code g} with the member of {@code h} with
+     * the same key, in the order they were listed, without connecting
+     * anything. Only reads what doesn't change once built, so it can be used
+     * off the thread making changes.
+     *
+     * @return Pairs of ids, flattened, or {@code null} if the groups aren't
+     * connectable
+     */
+    public int[] pairMembers(int g, int h) {
+        if (!groupsConnectable(g, h))
+            return null;
+
+        int[] out = new int[getGroupSize(g) * 2];
+        int p = 0;
+        boolean[] done = new boolean[KEYS];
+        for (int i = this.groupStart[g]; i < this.groupStart[g + 1]; i++) {
+            byte key = this.memberKeys[i];
+            if (done[key])
+                continue;
+            done[key] = true;
+
+            int j = this.groupStart[h];
+            for (int a = i; a < this.groupStart[g + 1]; a++) {
+                if (this.memberKeys[a] != key)
+                    continue;
+                while (j < this.groupStart[h + 1] && this.memberKeys[j] != key)
+                    j++;
+                if (j == this.groupStart[h + 1])
+                    break;
+                out[p++] = this.groupMembers[a];
+                out[p++] = this.groupMembers[j++];
+            }
+        }
+        return p == out.length ? out : Arrays.copyOf(out, p);
+    }
+
+    /**
+     * Connects each member of group {@code g} to the member of {@code h}
+     * given by {@code pairMembers}. Only the members of {@code g} are
+     * changed.
+     *
+     * @return Pairs of ids that were connected, flattened, or {@code null}
+     * if the groups aren't connectable
+     */
+    public int[] connectGroups(int g, int h) {
+        int[] pairs = pairMembers(g, h);
+        if (pairs == null)
+            return null;
+
+        int p = 0;
+        for (int k = 0; k < pairs.length; k += 2) {
+            if (connect(pairs[k], pairs[k + 1])) {
+                pairs[p++] = pairs[k];
+                pairs[p++] = pairs[k + 1];
+            }
+        }
+        if (this.groupConnections[g] != h) {
+            this.groupConnections[g] = h;
+            fireGroupChanged(g);
+        }
+        return Arrays.copyOf(pairs, p);
+    }
+
+    /**
+     * The world that the connected members of group {@code g} lead to.
+     * @return {@code -1} if they lead to different worlds, {@code 0} if none
+     * are connected, else {@code LIGHT} or {@code DARK}
+     */
+    public int getConnectingWorld(int g) {
+        int prev = 0;
+        for (int i = this.groupStart[g]; i < this.groupStart[g + 1]; i++) {
+            int c = this.connections[this.groupMembers[i]];
+            if (c == NONE)
+                continue;
+            int w = this.worlds[c];
+            if (prev < LIGHT)
+                prev = w;
+            else if (prev != w)
+                return -1;
+        }
+        return prev;
+    }
+
+    /*===========================================================================
+    Views, listeners and snapshots
+    ===========================================================================*/
+
+    /** Attaches a view to entrance {@code id}, replacing any before it */
+    public void setView(int id, V view) {
+        this.views[id] = view;
+    }
+
+    /** View attached to entrance {@code id}, {@code null} if none */
+    @SuppressWarnings("unchecked")
+    public V getView(int id) {
+        return (V) this.views[id];
+    }
+
+    /** Attaches a view to group {@code g}, replacing any before it */
+    public void setGroupView(int g, G view) {
+        this.groupViews[g] = view;
+    }
+
+    /** View attached to group {@code g}, {@code null} if none */
+    @SuppressWarnings("unchecked")
+    public G getGroupView(int g) {
+        return (G) this.groupViews[g];
+    }
+
+    public void addListener(Listener l) {
+        this.listeners.add(l);
+    }
+
+    public void removeListener(Listener l) {
+        this.listeners.remove(l);
+    }
+
+    /** Copies everything that can change */
+    public Snapshot snapshot() {
+        return new Snapshot(this.connections.clone(), this.states.clone(),
+                this.groupConnections.clone(), this.epoch);
+    }
+
+    /**
+     * Puts everything back the way it was when {@code s} was taken, telling
+     * the listeners about each entrance and group that changes.
+     */
+    public void restore(Snapshot s) {
+        int[] groupsBefore = this.groupConnections.clone();
+        System.arraycopy(s.groupConnections(), 0, this.groupConnections, 0,
+                this.groupConnections.length);
+        boolean connChanged = false;
+        for (int i = 0; i < size(); i++) {
+            boolean changed = this.connections[i] != s.connections()[i]
+                    || this.states[i] != s.states()[i];
+            if (!changed)
+                continue;
+            connChanged |= this.connections[i] != s.connections()[i];
+            ConnectionState prev = getState(i);
+            this.connections[i] = s.connections()[i];
+            this.states[i] = s.states()[i];
+            fireChanged(i, prev);
+        }
+        if (connChanged)
+            this.epoch++;
+        for (int g = 0; g < groupCount(); g++) {
+            if (groupsBefore[g] != this.groupConnections[g])
+                fireGroupChanged(g);
+        }
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    private TrackerState(int n, int groups) {
+        this.names = new String[n];
+        this.connections = new int[n];
+        this.states = new byte[n];
+        this.worlds = new byte[n];
+        this.types = new byte[n];
+        this.groupOf = new int[n];
+        this.views = new Object[n];
+        Arrays.fill(this.connections, NONE);
+        Arrays.fill(this.states, (byte) ConnectionState.UNKNOWN.ordinal());
+        Arrays.fill(this.groupOf, NONE);
+
+        this.groupNames = new String[groups];
+        this.groupStart = new int[groups + 1];
+        this.keyCounts = new int[groups * KEYS];
+        this.dropPairing = new boolean[groups];
+        this.groupConnections = new int[groups];
+        this.groupViews = new Object[groups];
+        Arrays.fill(this.groupConnections, NONE);
+
+        this.listeners = new ArrayList<>();
+    }
+
+    private void setState(int id, ConnectionState s) {
+        ConnectionState prev = getState(id);
+        this.states[id] = (byte) s.ordinal();
+        fireChanged(id, prev);
+    }
+
+    private void fireChanged(int id, ConnectionState prev) {
+        for (int i = 0; i < this.listeners.size(); i++) {
+            this.listeners.get(i).entranceChanged(id, prev);
+        }
+    }
+
+    private void fireGroupChanged(int g) {
+        for (int i = 0; i < this.listeners.size(); i++) {
+            this.listeners.get(i).groupChanged(g);
+        }
+    }
+
+    /**
+     * Key a group member is paired by: its direction if it has one, else its
+     * type, else {@code UNTYPED_KEY}
+     */
+    private static byte keyOf(String direction, byte type) {
+        if (direction == null)
+            return type == NO_TYPE ? UNTYPED_KEY : typeKey(type);
+        return switch (direction) {
+            case EntranceGroup.NORTH -> 0;
+            case EntranceGroup.EAST -> 1;
+            case EntranceGroup.SOUTH -> 2;
+            default -> 3;
+        };
+    }
+
+    private static byte typeKey(int type) {
+        return (byte) (DIRECTIONS + type);
+    }
+
+    /*===========================================================================
+    Variables
+    ===========================================================================*/
+
+    /** Stands in for no entrance or no group */
+    public static final int NONE = -1;
+
+    /** World of entrances in the light world */
+    public static final byte LIGHT = 1;
+
+    /** World of entrances in the dark world */
+    public static final byte DARK = 2;
+
+    private static final byte NO_TYPE = -1;
+
+    private static final ConnectionState[] STATES = ConnectionState.values();
+
+    private static final EntrType[] TYPES = EntrType.values();
+
+    private static final int DIRECTIONS = 4;
+
+    /**
+     * Key of group members with neither a direction nor a known type, which
+     * only pair with each other
+     */
+    private static final byte UNTYPED_KEY = (byte) (DIRECTIONS + TYPES.length);
+
+    /**
+     * Number of keys group members can be paired by: directions, then types,
+     * then {@code UNTYPED_KEY}
+     */
+    private static final int KEYS = UNTYPED_KEY + 1;
+
+    private final String[] names;
+
+    /** Entrance each entrance is connected to, {@code NONE} if none */
+    private final int[] connections;
+
+    /** {@code ConnectionState} ordinal of each entrance */
+    private final byte[] states;
+
+    /** {@code LIGHT} or {@code DARK} for each entrance */
+    private final byte[] worlds;
+
+    /** {@code EntrType} ordinal of each entrance */
+    private final byte[] types;
+
+    /** Group of each entrance, {@code NONE} if ungrouped */
+    private final int[] groupOf;
+
+    private final Object[] views;
+
+    private final String[] groupNames;
+
+    /**
+     * Index into {@code groupMembers} where each group starts, with one more
+     * entry marking the end of the last
+     */
+    private final int[] groupStart;
+
+    /** Members of every group, back to back */
+    private int[] groupMembers;
+
+    /** Key of each entry of {@code groupMembers} */
+    private byte[] memberKeys;
+
+    /** Number of members of each group with each key */
+    private final int[] keyCounts;
+
+    private final boolean[] dropPairing;
+
+    /** Group each group was last connected to, {@code NONE} if none */
+    private final int[] groupConnections;
+
+    private final Object[] groupViews;
+
+    private final List<Listener> listeners;
+
+    /** Number of connection changes */
+    private long epoch;
+}
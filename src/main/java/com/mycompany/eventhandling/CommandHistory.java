@@ -0,0 +1,371 @@
+package com.mycompany.eventhandling;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import com.mycompany.entrances.ConnectionState;
+import com.mycompany.entrances.EntranceIcon;
+import com.mycompany.entrances.TrackerState;
+
+/**
+ * The history of commands that can be undone and redone.<p>
+ *
+ * A command is everything one user action does, such as a click that
+ * connects two whole groups or the deletion of a row of the event table. It
+ * is recorded between {@code begin} and {@code end}: the {@code TrackerState}
+ * is copied at {@code begin}, and at {@code end} only the entrances and
+ * groups that changed are kept, with what they were before and after, along
+ * with the events the action added to and removed from the {@code EventLog}.
+ * An action that neither changed a connection nor added or removed an event,
+ * like arming an entrance, isn't recorded.<p>
+ *
+ * Undoing a command puts back the entrances and groups it changed with one
+ * {@code TrackerState.restore}, takes its added events out of the log and
+ * puts its removed ones back, all at once however many there are. Redoing
+ * does the opposite. Events put back are appended again, so are given new
+ * ids.<p>
+ *
+ * Each command is counted at roughly the bytes it takes. Once the commands
+ * kept add up to more than the budget, the oldest are forgotten, so long
+ * sessions can't grow the history without bound.<p>
+ *
+ * Only meant to be used from the EDT.
+ *
+ * @author aauyong
+ */
+public final class CommandHistory {
+
+    /**
+     * Builds an empty history of commands on {@code tracker} and {@code log}.
+     * @param budget Bytes the kept commands may add up to
+     */
+    public CommandHistory(TrackerState<EntranceIcon, ?> tracker, EventLog log, long budget) {
+        this.tracker = tracker;
+        this.log = log;
+        this.budget = budget;
+        this.undos = new ArrayDeque<>();
+        this.redos = new ArrayDeque<>();
+        this.added = new ArrayList<>();
+        this.removed = new ArrayList<>();
+    }
+
+    /**
+     * Starts recording a command. Calls nest, and only the outermost
+     * {@code begin} and {@code end} count.
+     */
+    public void begin() {
+        if (this.depth++ > 0)
+            return;
+        this.before = this.tracker.snapshot();
+        this.added.clear();
+        this.removed.clear();
+    }
+
+    /** Notes that {@code e} was appended to the log by the command */
+    public void added(EntranceEvent e) {
+        if (this.depth > 0)
+            this.added.add(e);
+    }
+
+    /** Notes that {@code e} was removed from the log by the command */
+    public void removed(EntranceEvent e) {
+        if (this.depth > 0)
+            this.removed.add(e);
+    }
+
+    /**
+     * Stops recording a command, and keeps it if it added or removed any
+     * events or changed any connection. Anything that could be redone is
+     * then forgotten.
+     */
+    public void end() {
+        if (--this.depth > 0)
+            return;
+
+        var c = new Command(this.before, this.tracker.snapshot(),
+                packEvents(this.added), packEvents(this.removed));
+        this.before = null;
+        this.added.clear();
+        this.removed.clear();
+        if (!c.isRecorded())
+            return;
+
+        while (!this.redos.isEmpty()) {
+            this.bytes -= this.redos.pop().bytes();
+        }
+        this.undos.push(c);
+        this.bytes += c.bytes();
+        trim();
+    }
+
+    /**
+     * Undoes the last command done.
+     * @return {@code false} if there was nothing to undo
+     */
+    public boolean undo() {
+        if (this.undos.isEmpty() || this.depth > 0)
+            return false;
+        var c = this.undos.pop();
+        replay(c.addedEvents, c.removedEvents, c.changed, c.groups, c.stateBefore,
+                c.connBefore, c.groupBefore);
+        this.redos.push(c);
+        return true;
+    }
+
+    /**
+     * Redoes the last command undone.
+     * @return {@code false} if there was nothing to redo
+     */
+    public boolean redo() {
+        if (this.redos.isEmpty() || this.depth > 0)
+            return false;
+        var c = this.redos.pop();
+        replay(c.removedEvents, c.addedEvents, c.changed, c.groups, c.stateAfter,
+                c.connAfter, c.groupAfter);
+        this.undos.push(c);
+        return true;
+    }
+
+    /**
+     * Whether the log is being changed by an undo or redo, rather than by
+     * a user action.
+     */
+    public boolean isReplaying() {
+        return this.replaying;
+    }
+
+    public boolean canUndo() {
+        return !this.undos.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !this.redos.isEmpty();
+    }
+
+    /** Roughly the bytes taken by the commands kept */
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /**
+     * What a command changed. Arrays of entrances and groups are parallel,
+     * and events are packed as their type code and two entrance ids, with
+     * their id in the log alongside, updated each time they are appended
+     * again.
+     */
+    private static final class Command {
+        Command(TrackerState.Snapshot before, TrackerState.Snapshot after,
+                int[][] addedEvents, int[][] removedEvents) {
+            int n = before.connections().length;
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                if (differs(before, after, i))
+                    count++;
+            }
+            this.changed = new int[count];
+            this.connBefore = new int[count];
+            this.connAfter = new int[count];
+            this.stateBefore = new byte[count];
+            this.stateAfter = new byte[count];
+            int k = 0;
+            for (int i = 0; i < n; i++) {
+                if (!differs(before, after, i))
+                    continue;
+                this.changed[k] = i;
+                this.connBefore[k] = before.connections()[i];
+                this.connAfter[k] = after.connections()[i];
+                this.stateBefore[k] = settled(before.states()[i]);
+                this.stateAfter[k] = settled(after.states()[i]);
+                k++;
+            }
+
+            int[] gb = before.groupConnections();
+            int[] ga = after.groupConnections();
+            count = 0;
+            for (int g = 0; g < gb.length; g++) {
+                if (gb[g] != ga[g])
+                    count++;
+            }
+            this.groups = new int[count];
+            this.groupBefore = new int[count];
+            this.groupAfter = new int[count];
+            k = 0;
+            for (int g = 0; g < gb.length; g++) {
+                if (gb[g] == ga[g])
+                    continue;
+                this.groups[k] = g;
+                this.groupBefore[k] = gb[g];
+                this.groupAfter[k] = ga[g];
+                k++;
+            }
+
+            this.addedEvents = addedEvents;
+            this.removedEvents = removedEvents;
+        }
+
+        /** Whether this changed a connection or any events */
+        boolean isRecorded() {
+            if (this.groups.length > 0 || this.addedEvents[1].length > 0
+                    || this.removedEvents[1].length > 0)
+                return true;
+            for (int k = 0; k < this.changed.length; k++) {
+                if (this.connBefore[k] != this.connAfter[k])
+                    return true;
+            }
+            return false;
+        }
+
+        long bytes() {
+            return COMMAND_BYTES
+                    + this.changed.length * ENTRANCE_BYTES
+                    + this.groups.length * GROUP_BYTES
+                    + (this.addedEvents[1].length + this.removedEvents[1].length) * EVENT_BYTES;
+        }
+
+        final int[] changed;
+        final int[] connBefore;
+        final int[] connAfter;
+        final byte[] stateBefore;
+        final byte[] stateAfter;
+
+        final int[] groups;
+        final int[] groupBefore;
+        final int[] groupAfter;
+
+        /** Packed events, then their ids */
+        final int[][] addedEvents;
+        final int[][] removedEvents;
+    }
+
+    /**
+     * Takes {@code out} out of the log, appends {@code in} back onto it, and
+     * puts the given values back on the changed entrances and groups.
+     */
+    private void replay(int[][] out, int[][] in, int[] changed, int[] groups,
+            byte[] states, int[] conns, int[] groupConns) {
+        this.replaying = true;
+        try {
+            int[] outIds = out[1];
+            for (int k = outIds.length - 1; k >= 0; k--) {
+                this.log.removeById(outIds[k]);
+            }
+
+            int[] packed = in[0];
+            int[] inIds = in[1];
+            var events = new ArrayList<EntranceEvent>(inIds.length);
+            for (int k = 0; k < inIds.length; k++) {
+                events.add(new EntranceEvent(EntranceEvent.typeOf((byte) packed[k * 3]),
+                        icon(packed[k * 3 + 1]), icon(packed[k * 3 + 2])));
+            }
+            this.log.appendAll(events);
+            for (int k = 0; k < inIds.length; k++) {
+                inIds[k] = events.get(k).getId();
+            }
+
+            var s = this.tracker.snapshot();
+            for (int k = 0; k < changed.length; k++) {
+                s.connections()[changed[k]] = conns[k];
+                s.states()[changed[k]] = states[k];
+            }
+            for (int k = 0; k < groups.length; k++) {
+                s.groupConnections()[groups[k]] = groupConns[k];
+            }
+            this.tracker.restore(s);
+        } finally {
+            this.replaying = false;
+        }
+    }
+
+    /** Forgets the oldest commands until the rest fit in the budget */
+    private void trim() {
+        while (this.bytes > this.budget && !this.undos.isEmpty()) {
+            this.bytes -= this.undos.removeLast().bytes();
+        }
+        while (this.bytes > this.budget && !this.redos.isEmpty()) {
+            this.bytes -= this.redos.removeLast().bytes();
+        }
+    }
+
+    private static int[][] packEvents(List<EntranceEvent> es) {
+        int[] packed = new int[es.size() * 3];
+        int[] ids = new int[es.size()];
+        for (int k = 0; k < es.size(); k++) {
+            EntranceEvent e = es.get(k);
+            packed[k * 3] = EntranceEvent.typeCode(e.getEventType());
+            packed[k * 3 + 1] = e.getPlaceA() == null ? TrackerState.NONE : e.getPlaceA().getId();
+            packed[k * 3 + 2] = e.getPlaceB() == null ? TrackerState.NONE : e.getPlaceB().getId();
+            ids[k] = e.getId();
+        }
+        return new int[][] {packed, ids};
+    }
+
+    private static boolean differs(TrackerState.Snapshot a, TrackerState.Snapshot b, int i) {
+        return a.connections()[i] != b.connections()[i]
+                || settled(a.states()[i]) != settled(b.states()[i]);
+    }
+
+    /**
+     * {@code PENDING} only marks the entrance armed for a click, so is
+     * recorded as the {@code UNKNOWN} it goes back to.
+     */
+    private static byte settled(byte state) {
+        return state == ConnectionState.PENDING.ordinal()
+                ? (byte) ConnectionState.UNKNOWN.ordinal() : state;
+    }
+
+    private EntranceIcon icon(int id) {
+        return id == TrackerState.NONE ? null : this.tracker.getView(id);
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    /** Rough bytes of a command with nothing in it, its object and arrays */
+    private static final long COMMAND_BYTES = 16 + 12 * 16;
+
+    /** Bytes an entrance adds to a command, its id, connections and states */
+    private static final long ENTRANCE_BYTES = 4 + 4 + 4 + 1 + 1;
+
+    /** Bytes a group adds to a command */
+    private static final long GROUP_BYTES = 4 * 3;
+
+    /** Bytes an event adds to a command, packed and with its id */
+    private static final long EVENT_BYTES = 4 * 4;
+
+    private final TrackerState<EntranceIcon, ?> tracker;
+
+    private final EventLog log;
+
+    /** Bytes the kept commands may add up to */
+    private final long budget;
+
+    /** Commands that can be undone, most recent first */
+    private final Deque<Command> undos;
+
+    /** Commands that can be redone, most recently undone first */
+    private final Deque<Command> redos;
+
+    /** Rough bytes taken by every command kept */
+    private long bytes;
+
+    /** Nesting of {@code begin} calls not yet ended */
+    private int depth;
+
+    /** Copy of the tracker when the command being recorded began */
+    private TrackerState.Snapshot before;
+
+    /** Events appended by the command being recorded */
+    private final List<EntranceEvent> added;
+
+    /** Events removed by the command being recorded */
+    private final List<EntranceEvent> removed;
+
+    private boolean replaying;
+}
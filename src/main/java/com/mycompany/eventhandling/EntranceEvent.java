@@ -12,7 +12,12 @@ import com.mycompany.entrances.EntranceIcon;
  * Each option is largely self-explanatory; {@code CONNECTION} describes an
  * event that connects two entrances, {@code DELETION} describes the removal
  * of a connectionb between two entrances, and {@code USELESS} describes the
- * marking of a location as such.
+ * marking of a location as such.<p>
+ *
+ * Once appended to an {@code EventLog}, an event is given an id that stays
+ * the same for as long as the event is kept, whatever else is added or
+ * removed. Ids are handed out in increasing order, so a later event always
+ * has a larger id.
  *
  * @author aauyong
  */
@@ -23,6 +28,7 @@ public class EntranceEvent {
         this.eventType = eventType_;
         this.entrA = placeA_;
         this.entrB = placeB_;
+        this.id = NO_ID;
     }
     /*===========================================================================
     Overloaded Constructors
@@ -81,6 +87,40 @@ public class EntranceEvent {
         return this.entrB;
     }
 
+    /**
+     * Id given to this by the {@code EventLog} it was appended to,
+     * {@code NO_ID} if it hasn't been appended.
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /** Set by the {@code EventLog} appending or rebuilding this */
+    void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Packs an event type into a byte, its index in {@code TYPES}.
+     * @return The code of {@code type}, {@code -1} if it isn't one of the
+     * types
+     */
+    public static byte typeCode(String type) {
+        for (byte c = 0; c < TYPES.length; c++) {
+            if (TYPES[c].equals(type))
+                return c;
+        }
+        return -1;
+    }
+
+    /**
+     * Event type packed as {@code code} by {@code typeCode}, {@code null} if
+     * it isn't a type.
+     */
+    public static String typeOf(byte code) {
+        return code >= 0 && code < TYPES.length ? TYPES[code] : null;
+    }
+
     /*---------------------------------------------------------------------------
     Public Members
     ---------------------------------------------------------------------------*/
@@ -88,10 +128,17 @@ public class EntranceEvent {
     public final static String DELETION = "delete";
     public final static String USELESS = "useless";
 
+    /** Id of an event that hasn't been appended to an {@code EventLog} */
+    public final static int NO_ID = -1;
+
     /*---------------------------------------------------------------------------
     Private Members
     ---------------------------------------------------------------------------*/
+    /** Every event type, at the index of its code */
+    private final static String[] TYPES = {CONNECTION, DELETION, USELESS};
+
     private String eventType;
     private EntranceIcon entrA;
     private EntranceIcon entrB;
+    private int id;
 }
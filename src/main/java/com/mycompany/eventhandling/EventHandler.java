@@ -4,16 +4,22 @@ import com.mycompany.displaypnl.DisplayPnl;
 import com.mycompany.entrances.*;
 import com.mycompany.maptracker.MapTracker;
 
-import java.util.Stack;
-
+import javax.swing.AbstractAction;
+import javax.swing.JComponent;
+import javax.swing.JOptionPane;
+import javax.swing.KeyStroke;
 import javax.swing.SwingUtilities;
-import javax.swing.event.TableModelEvent;
-import javax.swing.event.TableModelListener;
 
-import java.util.List;
+import java.awt.GraphicsEnvironment;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
 import java.util.ArrayDeque;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Deque;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * A handler for storing, tracking, and passing events between map and display
@@ -23,10 +29,14 @@ import java.util.Deque;
  * Events are passed into the event handler are also passed onto the display
  * panel. Any actions such as deletions or undo's that occur in the Display
  * panel are passed into the event handler, which will update the corresponding
- * EntranceIcons in the Map Tracker.
+ * EntranceIcons in the Map Tracker.<p>
  *
- * //TODO Maybe main event storage should be a stack? That way this is stored
- * in the exact same way as the EventTbl
+ * Events are kept in a single {@code EventLog}, which the display panel's
+ * table reads from directly rather than keeping a copy of its own. Each user
+ * action is recorded in a {@code CommandHistory}, so that it can be undone
+ * with Ctrl+Z and redone with Ctrl+Y or Ctrl+Shift+Z, all of its events at
+ * once. Everything is also written to a {@code SessionJournal}, which is
+ * offered for replay when the tracker next starts.
  * @author aauyong
  */
 public class EventHandler {
@@ -35,17 +45,45 @@ public class EventHandler {
         this.dispPnl = dp;
         this.mapTrckr = mp;
 
-        this.events = new ArrayList<>();
-        this.removedEvents = new Stack<>();
+        this.events = new EventLog(mp.getTrackerState());
+        this.history = new CommandHistory(mp.getTrackerState(), this.events, UNDO_BUDGET);
+        this.journal = new SessionJournal(SessionJournal.defaultFile(),
+                mp.getTrackerState(), this.events);
+        this.dispPnl.setEventLog(this.events);
 
         addEventListeners();
     }
 
+    /**
+     * Offers to restore the last session from the journal if there is one,
+     * then starts journaling this session after whatever was restored.
+     * Called once the window is shown, before anything has been logged.
+     */
+    public void restoreSession() {
+        boolean keep = false;
+        try {
+            if (this.events.isEmpty() && this.journal.hasSession()
+                    && !GraphicsEnvironment.isHeadless()
+                    && JOptionPane.showConfirmDialog(this.mapTrckr,
+                            "Restore the last session?", "Restore Session",
+                            JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
+                this.journal.replay();
+                keep = true;
+                this.mapTrckr.shadeUnreachable();
+                this.mapTrckr.startAnalysis();
+            }
+            this.journal.start(keep);
+        } catch (IOException e) {
+            Logger.getLogger(EventHandler.class.getName())
+                    .log(Level.WARNING, "Session journal unavailable", e);
+        }
+    }
+
     /**
      * Attempt to add an event.<p>
      *
-     * Inserts {@code e} into the list of events and updates {@code dispPnl}
-     * with the new event.
+     * Appends {@code e} to the log of events, which {@code dispPnl} shows,
+     * and updates the map with what can now be reached and deduced.
      * @param e
      * @return <ul>
      *  <li> {@code true} :: if adding is successful
@@ -56,20 +94,87 @@ public class EventHandler {
         if (e == null)
             return false;
 
-        this.events.add(0, e);
-        updateDispPnl(e.asArray());
+        this.history.begin();
+        try {
+            this.events.append(e);
+            this.history.added(e);
+        } finally {
+            this.history.end();
+        }
+        this.mapTrckr.shadeUnreachable();
+        this.mapTrckr.startAnalysis();
 
         return true;
     }
 
     /**
-     * Removes and undoes the {@code i}-th event.
+     * Attempt to add every event of {@code es} as one batch.<p>
+     *
+     * Like {@code tryAddEvent}, but the events are appended to the log
+     * together, so the table inserts their rows at once, and the map is only
+     * updated after the last of them.
+     * @param es
+     * @return {@code false} if there are no events to add
+     */
+    public boolean tryAddEvents(Collection<EntranceEvent> es) {
+        if (es == null || es.isEmpty())
+            return false;
+
+        this.history.begin();
+        try {
+            this.events.appendAll(es);
+            for (var e : es) {
+                this.history.added(e);
+            }
+        } finally {
+            this.history.end();
+        }
+        this.mapTrckr.shadeUnreachable();
+        this.mapTrckr.startAnalysis();
+
+        return true;
+    }
+
+    /**
+     * Removes and undoes the {@code i}-th event, counting from the oldest.
      * @param i The i-th event
      */
     public void removeEvent(int i) {
-        EntranceEvent e = events.get(i);
-        undoEvent(e);
-        events.remove(i);
+        this.events.remove(i);
+    }
+
+    /**
+     * Removes and undoes the event with id {@code id}, if it's still kept.
+     * @param id Id the event was given when added
+     */
+    public void removeEventById(int id) {
+        this.events.removeById(id);
+    }
+
+    /**
+     * Undoes the last action, with every event it added or removed.
+     * @return {@code false} if there was nothing to undo
+     */
+    public boolean undo() {
+        clearActiveEntr();
+        if (!this.history.undo())
+            return false;
+        this.mapTrckr.shadeUnreachable();
+        this.mapTrckr.startAnalysis();
+        return true;
+    }
+
+    /**
+     * Redoes the last action undone.
+     * @return {@code false} if there was nothing to redo
+     */
+    public boolean redo() {
+        clearActiveEntr();
+        if (!this.history.redo())
+            return false;
+        this.mapTrckr.shadeUnreachable();
+        this.mapTrckr.startAnalysis();
+        return true;
     }
 
     /**
@@ -78,10 +183,7 @@ public class EventHandler {
      * @return
      */
     public EntranceEvent getMostRecentEvent() {
-        if (!this.events.isEmpty())
-            return this.events.get(0);
-        else
-            return null;
+        return this.events.getLast();
     }
 
     /**
@@ -92,6 +194,9 @@ public class EventHandler {
      * accordingly, and returns an {@code EntranceEvent} describing the action
      * <p>
      *
+     * A left click with shift held picks the ends of a route to show instead.
+     * <p>
+     *
      * @param e Clicked Icon
      * @param evt Mouse Event
      *
@@ -103,7 +208,11 @@ public class EventHandler {
     public Deque<EntranceEvent> entranceIconClicked(EntranceIcon e,
             java.awt.event.MouseEvent evt) {
 
-        if (SwingUtilities.isLeftMouseButton(evt)) {
+        if (SwingUtilities.isLeftMouseButton(evt) && evt.isShiftDown()) {
+            this.entrIconRouteClickBehavior(e);
+            return null;
+        }
+        else if (SwingUtilities.isLeftMouseButton(evt)) {
             return this.entrIconLeftClickBehavior(e);
         }
         else if (SwingUtilities.isRightMouseButton(evt)) {
@@ -136,6 +245,8 @@ public class EventHandler {
             return null;
 
         var evnts = ConnectionHandler.tryConnect(a,b);
+        if (evnts == null)
+            return null;
 
         return new ArrayDeque<>(){{
             for (EntranceIcon[] e : evnts) {
@@ -204,18 +315,6 @@ public class EventHandler {
             case EntranceEvent.USELESS ->
                 e.getPlaceA().incState();
         }
-        /**
-         * TODO need to add the event created from the undoing action to the
-         * removedEvents stack
-         */
-    }
-
-    /**
-     * Update the Display Panel with the first three elements of the event
-     * @param evnt
-     */
-    private void updateDispPnl(String[] evnt) {
-        this.dispPnl.addEvent(evnt[0], evnt[1], evnt[2]);
     }
 
     /**
@@ -223,26 +322,40 @@ public class EventHandler {
      * // TODO Write Doc
      */
     private void addEventListeners() {
-        // When table is changed, update the event handler to remove the
-        // corresponding event
-        dispPnl.getTblModel().addTableModelListener( new TableModelListener() {
+        // When an event is removed from the log, such as by deleting its row
+        // in the table, undo it on the map
+        this.events.addListener(new EventLog.Listener() {
+
+            @Override
+            public void eventsAppended(int from, int to) {}
 
             @Override
-            public void tableChanged(TableModelEvent tblEvt) {
-                if (tblEvt.getType() == TableModelEvent.DELETE) {
-                    removeEvent(dispPnl.getRow(tblEvt.getFirstRow()));
+            public void eventRemoved(int i, EntranceEvent e) {
+                // Undo and redo put the map back themselves
+                if (history.isReplaying())
+                    return;
+                history.begin();
+                try {
+                    history.removed(e);
+                    undoEvent(e);
+                } finally {
+                    history.end();
                 }
+                mapTrckr.shadeUnreachable();
+                mapTrckr.startAnalysis();
             }
 
         });
 
-        // Clear active Entrance if the tracker is clicked
+        // Clear active Entrance and route if the tracker is clicked
         mapTrckr.addMouseListener(new java.awt.event.MouseAdapter() {
 
             @Override
             public void mouseClicked(java.awt.event.MouseEvent mouseEvt) {
                 if (SwingUtilities.isLeftMouseButton(mouseEvt)) {
                     clearActiveEntr();
+                    routeStart = null;
+                    mapTrckr.clearRoute();
                 }
             }
 
@@ -254,37 +367,70 @@ public class EventHandler {
 
                 @Override
                 public void mouseClicked(java.awt.event.MouseEvent mouseEvt) {
-                    var evnts = entranceIconClicked(e, mouseEvt);
-                    // TODO remove events from table on a right click/DELETION
-                    if (evnts != null)
-                        for (var evnt : evnts) tryAddEvent(evnt);
+                    // The whole click is one command, with the changes it
+                    // makes before its events are added
+                    history.begin();
+                    try {
+                        var evnts = entranceIconClicked(e, mouseEvt);
+                        // TODO remove events from table on a right click/DELETION
+                        tryAddEvents(evnts);
+                    } finally {
+                        history.end();
+                    }
                 }
 
             });
         }
+
+        // Undo and redo from anywhere in the window
+        var inputs = mapTrckr.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+        inputs.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), "undo");
+        inputs.put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), "redo");
+        inputs.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z,
+                InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK), "redo");
+        mapTrckr.getActionMap().put("undo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+                undo();
+            }
+        });
+        mapTrckr.getActionMap().put("redo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+                redo();
+            }
+        });
     }
 
    /**
      * Wrapper for setting {@code activeEntr}. <p>
      *
      * Sets {@code activeEntr} to {@code e} if {@code e} isn't in the
-     * {@code USELESS} state. Increments the state of the entrance regardless.
+     * {@code USELESS} state, pulses it and dims every entrance it can't
+     * connect to. Increments the state of the entrance regardless.
      *
      * @param e
      */
     private void setActiveEntr(EntranceIcon e) {
-        if (!e.isUseless())
+        if (!e.isUseless()) {
             this.activeEntr = e;
+            e.setPulsing(true);
+            this.mapTrckr.showLegalTargets(e);
+        }
         e.incState();
     }
 
     /**
      * Sets {@code activeEntr} to null, and updates any
      * {@code PENDING EntranceIcon}s back to their {@code UNKNOWN} state.
+     * Stops its pulse and undims every entrance.
      */
     private void clearActiveEntr() {
         if (this.activeEntr == null) return;
 
+        this.mapTrckr.clearLegalTargets();
+        this.activeEntr.setPulsing(false);
+
         if (this.activeEntr.getConnectionState() == ConnectionState.PENDING) {
             this.activeEntr.setToUnknown();
         }
@@ -311,6 +457,25 @@ public class EventHandler {
         return evnts;
     }
 
+    /**
+     * Sets {@code routeStart} to {@code e} if it's empty. Otherwise, the
+     * shortest route from {@code routeStart} to {@code e} is shown on the map
+     * and {@code routeStart} is cleared.
+     *
+     * @param e
+     */
+    private void entrIconRouteClickBehavior(EntranceIcon e) {
+        if (this.routeStart == null) {
+            this.routeStart = e;
+            this.mapTrckr.clearRoute();
+            e.setRouteStep(1);
+            return;
+        }
+
+        this.mapTrckr.showRoute(this.routeStart, e);
+        this.routeStart = null;
+    }
+
     /**
      * Deletes the connection at {@code e} if there is one,
      * otherwise decrements the state of {@code e}. In either situation, the
@@ -377,12 +542,22 @@ public class EventHandler {
     /** Actively Selected Entrance */
     private EntranceIcon activeEntr;
 
-    /** List of Events that is used to keep track of displayable events*/
-    private List<EntranceEvent> events;
+    /** Entrance a route is being picked from, {@code null} if none */
+    private EntranceIcon routeStart;
+
+    /** Log of every event, which the display panel shows */
+    private EventLog events;
+
+    /** Every action that can be undone or redone */
+    private CommandHistory history;
+
+    /** Journal of this session, for restoring it after a crash */
+    private SessionJournal journal;
 
     /**
-     * A container used to log event operations in a FIFO ordeinrg. This is so
-     * that events can be undone.
+     * Bytes the undo history may take before the oldest actions are
+     * forgotten, set with the {@code entrancerando.undoBytes} system property
      */
-    private Stack<EntranceEvent> removedEvents;
+    private static final long UNDO_BUDGET =
+        Math.max(0, Long.getLong("entrancerando.undoBytes", 1 << 20));
 }
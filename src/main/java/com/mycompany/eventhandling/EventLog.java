@@ -0,0 +1,538 @@
+package com.mycompany.eventhandling;
+
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.SwingUtilities;
+
+import com.mycompany.entrances.EntranceIcon;
+import com.mycompany.entrances.TrackerState;
+
+/**
+ * The one store of every {@code EntranceEvent} that has happened, oldest
+ * first, along with the time each one happened.<p>
+ *
+ * Events aren't kept as objects. Each is packed into a slot of columns of
+ * primitive arrays: its type as a byte from {@code EntranceEvent.typeCode},
+ * the {@code TrackerState} ids of its two entrances, the
+ * {@code System.nanoTime} it was appended at, which only ever goes forward,
+ * and its id. That is 21 bytes an event, plus 4 for the index from ids to
+ * slots. {@code get} builds an {@code EntranceEvent} back from the columns
+ * when one is needed, and views like the {@code EvntTbl} read the columns
+ * directly, turning them into strings only for the rows they draw.<p>
+ *
+ * Events are only ever appended to the end, into columns that double when
+ * full, so adding one is amortized {@code O(1)}. Each is given the next id,
+ * and the index from ids to slots finds any event by id in {@code O(1)}.<p>
+ *
+ * Removing an event doesn't shift the ones after it. Its slot is marked as a
+ * tombstone and skipped, and the tombstones, kept sorted, are all that is
+ * walked to turn an index among the events kept into a slot. Once there are
+ * {@code COMPACT_AT} of them, a background thread copies the columns without
+ * them. The copy is swapped in on the EDT, along with any events appended
+ * while it was made, unless another event was removed in the meantime, in
+ * which case it is thrown away and made again.<p>
+ *
+ * Indices count only the events kept, oldest first, so views that want the
+ * newest event first read them backwards. Every change is passed to the
+ * {@code Listener}s, once per batch of appended events. Compacting changes
+ * no index or id, so isn't passed on.<p>
+ *
+ * Only meant to be used from the EDT.
+ *
+ * @author aauyong
+ */
+public final class EventLog {
+
+    /**
+     * Told about events being appended to or removed from the log.
+     */
+    public interface Listener {
+        /**
+         * Events {@code from} up to, but not including, {@code to} were
+         * appended.
+         */
+        void eventsAppended(int from, int to);
+
+        /**
+         * Event {@code e} was removed from index {@code i}, and the indices
+         * of the events after it went down by one.
+         */
+        void eventRemoved(int i, EntranceEvent e);
+    }
+
+    /**
+     * Builds an empty log of events between entrances of {@code tracker}.
+     * @param tracker Gives the entrances for the ids stored
+     */
+    public EventLog(TrackerState<EntranceIcon, ?> tracker) {
+        this.tracker = tracker;
+        this.cols = new Columns(INITIAL_CAPACITY);
+        this.slotOfId = new int[INITIAL_CAPACITY];
+        this.dead = new int[COMPACT_AT];
+        this.listeners = new ArrayList<>();
+
+        this.startNanos = System.nanoTime();
+        this.startTime = LocalTime.now();
+    }
+
+    /**
+     * Appends {@code e}, timestamped with the current time, and gives it the
+     * next id.
+     * @return Id of {@code e}
+     */
+    public int append(EntranceEvent e) {
+        int from = size();
+        put(e, System.nanoTime());
+        fireAppended(from, size());
+        return e.getId();
+    }
+
+    /**
+     * Appends every event of {@code es} in order, all with the same
+     * timestamp, telling the listeners once.
+     * @return Id of the first appended event, {@code NO_ID} if there were
+     * none
+     */
+    public int appendAll(Collection<EntranceEvent> es) {
+        return appendAll(es, System.nanoTime());
+    }
+
+    /**
+     * Appends every event of {@code es} in order, timestamped {@code at}
+     * rather than now, such as when restoring a past session.
+     * @return Id of the first appended event, {@code NO_ID} if there were
+     * none
+     */
+    public int appendAll(Collection<EntranceEvent> es, LocalTime at) {
+        return appendAll(es,
+                this.startNanos + at.toNanoOfDay() - this.startTime.toNanoOfDay());
+    }
+
+    /**
+     * Removes the event at index {@code i}. The events after it move down
+     * an index, but keep their slots and ids.
+     * @return The removed event
+     */
+    public EntranceEvent remove(int i) {
+        check(i);
+        return removeSlot(i, slotAt(i));
+    }
+
+    /**
+     * Removes the event with id {@code id}.
+     * @return The removed event, {@code null} if it isn't kept
+     */
+    public EntranceEvent removeById(int id) {
+        int slot = slotOf(id);
+        if (slot == NO_SLOT)
+            return null;
+        return removeSlot(indexOfSlot(slot), slot);
+    }
+
+    /**
+     * Event at index {@code i}, counting from the oldest kept, built from
+     * the columns.
+     */
+    public EntranceEvent get(int i) {
+        check(i);
+        return build(slotAt(i));
+    }
+
+    /** Event with id {@code id}, {@code null} if it isn't kept */
+    public EntranceEvent getById(int id) {
+        int slot = slotOf(id);
+        return slot == NO_SLOT ? null : build(slot);
+    }
+
+    /** Id of the event at index {@code i} */
+    public int getId(int i) {
+        check(i);
+        return this.cols.ids[slotAt(i)];
+    }
+
+    /** Index of the event with id {@code id}, {@code -1} if it isn't kept */
+    public int indexOf(int id) {
+        int slot = slotOf(id);
+        return slot == NO_SLOT ? -1 : indexOfSlot(slot);
+    }
+
+    /** Type of the event at index {@code i} */
+    public String getType(int i) {
+        check(i);
+        return EntranceEvent.typeOf(this.cols.types[slotAt(i)]);
+    }
+
+    /**
+     * Id of the first entrance of the event at index {@code i},
+     * {@code TrackerState.NONE} if it has none.
+     */
+    public int getEntranceA(int i) {
+        check(i);
+        return this.cols.entrA[slotAt(i)];
+    }
+
+    /**
+     * Id of the second entrance of the event at index {@code i},
+     * {@code TrackerState.NONE} if it has none.
+     */
+    public int getEntranceB(int i) {
+        check(i);
+        return this.cols.entrB[slotAt(i)];
+    }
+
+    /** Time of day the event at index {@code i} was appended, to the second */
+    public LocalTime getTime(int i) {
+        check(i);
+        return this.startTime.plusNanos(this.cols.nanos[slotAt(i)] - this.startNanos)
+                .truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    /**
+     * Copies the type code, entrances and second of the day of the events
+     * from index {@code from} up to, but not including, {@code to}, in that
+     * order, into {@code out}, for the {@code SessionJournal}.
+     */
+    void packEvents(int from, int to, int[] out) {
+        int slot = slotAt(from);
+        for (int i = from, k = 0; i < to; i++, slot++, k += 4) {
+            while (this.cols.types[slot] == TOMBSTONE) {
+                slot++;
+            }
+            out[k] = this.cols.types[slot];
+            out[k + 1] = this.cols.entrA[slot];
+            out[k + 2] = this.cols.entrB[slot];
+            out[k + 3] = secondOfDay(this.cols.nanos[slot]);
+        }
+    }
+
+    /** Name of entrance {@code id}, empty for {@code TrackerState.NONE} */
+    public String nameOf(int id) {
+        return id == TrackerState.NONE ? "" : this.tracker.getName(id);
+    }
+
+    /** Most recent event, {@code null} if there are none */
+    public EntranceEvent getLast() {
+        return isEmpty() ? null : get(size() - 1);
+    }
+
+    /** Number of events kept */
+    public int size() {
+        return this.slots - this.deadCount;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void addListener(Listener l) {
+        this.listeners.add(l);
+    }
+
+    public void removeListener(Listener l) {
+        this.listeners.remove(l);
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /** Columns of events, one slot per event whether kept or not */
+    private static final class Columns {
+        Columns(int capacity) {
+            this.types = new byte[capacity];
+            this.entrA = new int[capacity];
+            this.entrB = new int[capacity];
+            this.nanos = new long[capacity];
+            this.ids = new int[capacity];
+        }
+
+        Columns grow(int capacity) {
+            var c = new Columns(0);
+            c.types = Arrays.copyOf(this.types, capacity);
+            c.entrA = Arrays.copyOf(this.entrA, capacity);
+            c.entrB = Arrays.copyOf(this.entrB, capacity);
+            c.nanos = Arrays.copyOf(this.nanos, capacity);
+            c.ids = Arrays.copyOf(this.ids, capacity);
+            return c;
+        }
+
+        /** Copies slot {@code from} of {@code src} to slot {@code to} */
+        void copy(Columns src, int from, int to) {
+            this.types[to] = src.types[from];
+            this.entrA[to] = src.entrA[from];
+            this.entrB[to] = src.entrB[from];
+            this.nanos[to] = src.nanos[from];
+            this.ids[to] = src.ids[from];
+        }
+
+        int capacity() {
+            return this.types.length;
+        }
+
+        /** Type code, {@code TOMBSTONE} for a removed event */
+        byte[] types;
+        int[] entrA;
+        int[] entrB;
+        long[] nanos;
+        int[] ids;
+    }
+
+    /**
+     * Columns copied without their tombstones by {@code compact}.
+     *
+     * @param cols The copy
+     * @param slotOfId Index from ids to slots in the copy, for ids handed
+     * out before it was made
+     * @param slots Slots of the columns that were copied
+     * @param ids Ids that had been handed out when it was made
+     * @param removals {@code removals} when it was made
+     */
+    private record Compacted(Columns cols, int[] slotOfId, int slots, int ids,
+            long removals) {}
+
+    private int secondOfDay(long nanos) {
+        long n = (this.startTime.toNanoOfDay() + nanos - this.startNanos) % NANOS_PER_DAY;
+        return (int) ((n < 0 ? n + NANOS_PER_DAY : n) / 1_000_000_000L);
+    }
+
+    private int appendAll(Collection<EntranceEvent> es, long t) {
+        if (es.isEmpty())
+            return EntranceEvent.NO_ID;
+        int from = size();
+        int first = this.nextId;
+        for (EntranceEvent e : es) {
+            put(e, t);
+        }
+        fireAppended(from, size());
+        return first;
+    }
+
+    private void put(EntranceEvent e, long t) {
+        if (this.slots == this.cols.capacity())
+            this.cols = this.cols.grow(this.slots * 2);
+        if (this.nextId == this.slotOfId.length)
+            this.slotOfId = Arrays.copyOf(this.slotOfId, this.nextId * 2);
+
+        int id = this.nextId++;
+        int s = this.slots++;
+        this.cols.types[s] = EntranceEvent.typeCode(e.getEventType());
+        this.cols.entrA[s] = idOf(e.getPlaceA());
+        this.cols.entrB[s] = idOf(e.getPlaceB());
+        this.cols.nanos[s] = t;
+        this.cols.ids[s] = id;
+        this.slotOfId[id] = s;
+        e.setId(id);
+    }
+
+    private EntranceEvent removeSlot(int i, int slot) {
+        EntranceEvent e = build(slot);
+        this.cols.types[slot] = TOMBSTONE;
+        this.slotOfId[this.cols.ids[slot]] = NO_SLOT;
+        addDead(slot);
+        this.removals++;
+
+        for (int k = 0; k < this.listeners.size(); k++) {
+            this.listeners.get(k).eventRemoved(i, e);
+        }
+        if (this.deadCount >= COMPACT_AT)
+            requestCompaction();
+        return e;
+    }
+
+    private EntranceEvent build(int slot) {
+        var e = new EntranceEvent(EntranceEvent.typeOf(this.cols.types[slot]),
+                icon(this.cols.entrA[slot]), icon(this.cols.entrB[slot]));
+        e.setId(this.cols.ids[slot]);
+        return e;
+    }
+
+    /** Inserts {@code slot} into the sorted tombstones */
+    private void addDead(int slot) {
+        if (this.deadCount == this.dead.length)
+            this.dead = Arrays.copyOf(this.dead, this.deadCount * 2);
+        int k = -Arrays.binarySearch(this.dead, 0, this.deadCount, slot) - 1;
+        System.arraycopy(this.dead, k, this.dead, k + 1, this.deadCount - k);
+        this.dead[k] = slot;
+        this.deadCount++;
+    }
+
+    /** Slot of the event at index {@code i}, stepping over tombstones */
+    private int slotAt(int i) {
+        int slot = i;
+        for (int k = 0; k < this.deadCount && this.dead[k] <= slot; k++) {
+            slot++;
+        }
+        return slot;
+    }
+
+    /** Index of the event kept in {@code slot} */
+    private int indexOfSlot(int slot) {
+        // A kept slot is never a tombstone, so this is where it would go
+        int k = -Arrays.binarySearch(this.dead, 0, this.deadCount, slot) - 1;
+        return slot - k;
+    }
+
+    private int slotOf(int id) {
+        return id < 0 || id >= this.nextId ? NO_SLOT : this.slotOfId[id];
+    }
+
+    /**
+     * Starts copying the columns without their tombstones on the compactor,
+     * unless a copy is already being made.
+     */
+    private void requestCompaction() {
+        if (this.compacting)
+            return;
+        this.compacting = true;
+
+        Columns src = this.cols;
+        int slots = this.slots;
+        int ids = this.nextId;
+        int idCapacity = this.slotOfId.length;
+        long removals = this.removals;
+        COMPACTOR.execute(() -> {
+            var c = compact(src, slots, ids, idCapacity, removals);
+            SwingUtilities.invokeLater(() -> install(c));
+        });
+    }
+
+    /** Copies the first {@code slots} slots of {@code src}, minus tombstones */
+    private static Compacted compact(Columns src, int slots, int ids, int idCapacity,
+            long removals) {
+        int kept = 0;
+        for (int s = 0; s < slots; s++) {
+            if (src.types[s] != TOMBSTONE)
+                kept++;
+        }
+        var cols = new Columns(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(kept) * 2));
+        int[] slotOfId = new int[idCapacity];
+        Arrays.fill(slotOfId, 0, ids, NO_SLOT);
+        int to = 0;
+        for (int s = 0; s < slots; s++) {
+            if (src.types[s] == TOMBSTONE)
+                continue;
+            cols.copy(src, s, to);
+            slotOfId[src.ids[s]] = to++;
+        }
+        return new Compacted(cols, slotOfId, slots, ids, removals);
+    }
+
+    /**
+     * Swaps in {@code c}, adding the events appended since it was made, if
+     * nothing was removed since. On the EDT.
+     */
+    private void install(Compacted c) {
+        this.compacting = false;
+        if (c.removals() != this.removals) {
+            if (this.deadCount >= COMPACT_AT)
+                requestCompaction();
+            return;
+        }
+
+        int dropped = this.deadCount;
+        int slots = this.slots - dropped;
+        Columns cols = c.cols();
+        if (cols.capacity() < slots)
+            cols = cols.grow(Integer.highestOneBit(slots) * 2);
+        int[] slotOfId = c.slotOfId();
+        if (slotOfId.length < this.slotOfId.length)
+            slotOfId = Arrays.copyOf(slotOfId, this.slotOfId.length);
+
+        // Nothing appended since can be a tombstone, so each moves down by
+        // exactly the number dropped
+        for (int s = c.slots(); s < this.slots; s++) {
+            cols.copy(this.cols, s, s - dropped);
+        }
+        for (int id = c.ids(); id < this.nextId; id++) {
+            slotOfId[id] = this.slotOfId[id] - dropped;
+        }
+
+        this.cols = cols;
+        this.slotOfId = slotOfId;
+        this.slots = slots;
+        this.deadCount = 0;
+    }
+
+    private void fireAppended(int from, int to) {
+        for (int k = 0; k < this.listeners.size(); k++) {
+            this.listeners.get(k).eventsAppended(from, to);
+        }
+    }
+
+    private void check(int i) {
+        if (i < 0 || i >= size())
+            throw new IndexOutOfBoundsException(i);
+    }
+
+    private static int idOf(EntranceIcon e) {
+        return e == null ? TrackerState.NONE : e.getId();
+    }
+
+    private EntranceIcon icon(int id) {
+        return id == TrackerState.NONE ? null : this.tracker.getView(id);
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Tombstones there can be before the columns are compacted */
+    private static final int COMPACT_AT = 32;
+
+    private static final long NANOS_PER_DAY = 86_400_000_000_000L;
+
+    /** Type code marking the slot of a removed event */
+    private static final byte TOMBSTONE = -1;
+
+    /** Slot of an id that isn't kept */
+    private static final int NO_SLOT = -1;
+
+    /** Compacts the columns of every log, one at a time */
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        var t = new Thread(r, "event-log-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final TrackerState<EntranceIcon, ?> tracker;
+
+    /** Columns of every slot, kept or not */
+    private Columns cols;
+
+    /** Slots used, including tombstones */
+    private int slots;
+
+    /** Slot of each id handed out, {@code NO_SLOT} if removed */
+    private int[] slotOfId;
+
+    /** Next id to hand out */
+    private int nextId;
+
+    /** Slots that are tombstones, sorted, in the first {@code deadCount} */
+    private int[] dead;
+
+    private int deadCount;
+
+    /** Counts removals, to tell whether a compacted copy is out of date */
+    private long removals;
+
+    /** Whether a compacted copy is being made */
+    private boolean compacting;
+
+    /** {@code System.nanoTime} when the log was made, at {@code startTime} */
+    private final long startNanos;
+
+    /** Time of day the log was made */
+    private final LocalTime startTime;
+
+    private final List<Listener> listeners;
+}
@@ -0,0 +1,424 @@
+package com.mycompany.eventhandling;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.mycompany.entrancerando.EntranceRando;
+import com.mycompany.entrances.ConnectionState;
+import com.mycompany.entrances.EntranceIcon;
+import com.mycompany.entrances.TrackerState;
+
+/**
+ * A write-ahead journal of everything that happens to the tracker, so that a
+ * session lost to a crash or a closed window can be restored.<p>
+ *
+ * The journal follows the {@code TrackerState} and the {@code EventLog} as a
+ * listener of both, and writes a small binary record for each change: an
+ * entrance's new connection and state, a group's new connecting group, an
+ * appended event, or the id of a removed event. After a header naming the
+ * number of entrances, the file is nothing but these records, in the order
+ * the changes happened. Entrances armed for a click are written as
+ * {@code UNKNOWN}, what they go back to.<p>
+ *
+ * Records are encoded on the EDT into a buffer, which is all a change costs
+ * there. A writer thread takes the whole buffer each time it wakes and writes
+ * it to the file's {@code FileChannel} in one go, so changes that pile up
+ * while it is writing are committed together. The file is forced to disk
+ * every {@code FORCE_MILLIS} while anything has been written, and once more
+ * when the journal is closed.<p>
+ *
+ * {@code replay} applies the records to a fresh tracker and log: the state
+ * of every entrance and group with one {@code TrackerState.restore}, and the
+ * events with one {@code appendAll} per run of events with the same time. A
+ * record cut off by a crash ends the replay, and is written over when
+ * journaling starts again.
+ *
+ * @author aauyong
+ */
+public final class SessionJournal implements TrackerState.Listener, EventLog.Listener {
+
+    /**
+     * Builds a journal of {@code tracker} and {@code log} kept in
+     * {@code file}. Nothing is read or written until {@code replay} or
+     * {@code start}.
+     */
+    public SessionJournal(Path file, TrackerState<EntranceIcon, ?> tracker, EventLog log) {
+        this.file = file;
+        this.tracker = tracker;
+        this.log = log;
+        this.lock = new Object();
+        this.pending = ByteBuffer.allocate(BUFFER_BYTES);
+        this.packed = new int[4];
+    }
+
+    /** Where the journal of the tracker's session is kept */
+    public static Path defaultFile() {
+        return EntranceRando.getAppDir().resolve(FILE_NAME);
+    }
+
+    /**
+     * Whether {@code file} holds a session of these entrances with anything
+     * in it to replay.
+     */
+    public boolean hasSession() {
+        try {
+            return Files.size(this.file) > HEADER_BYTES && readHeader(read());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Applies every whole record in {@code file} to the tracker and the log,
+     * which should both be as they were when the session began. Must be
+     * called on the EDT, before {@code start}.
+     *
+     * @return Number of records replayed
+     * @throws IOException If {@code file} can't be read
+     */
+    public int replay() throws IOException {
+        ByteBuffer in = read();
+        this.validLength = 0;
+        if (!readHeader(in))
+            return 0;
+
+        int n = this.tracker.size();
+        int groups = this.tracker.groupCount();
+        TrackerState.Snapshot s = this.tracker.snapshot();
+        List<EntranceEvent> batch = new ArrayList<>();
+        int batchSecond = -1;
+        int records = 0;
+        while (in.hasRemaining()) {
+            byte kind = in.get();
+            if (in.remaining() < bodyBytes(kind))
+                break;
+
+            if (kind == APPEND) {
+                byte type = in.get();
+                int a = in.getInt();
+                int b = in.getInt();
+                int second = in.getInt();
+                if (EntranceEvent.typeOf(type) == null || !isEntrance(a, n) || !isEntrance(b, n))
+                    break;
+                if (second != batchSecond) {
+                    appendBatch(batch, batchSecond);
+                    batchSecond = second;
+                }
+                batch.add(new EntranceEvent(EntranceEvent.typeOf(type), icon(a), icon(b)));
+            } else {
+                appendBatch(batch, batchSecond);
+                if (kind == ENTRANCE) {
+                    int id = in.getInt();
+                    int conn = in.getInt();
+                    byte state = in.get();
+                    if (id < 0 || id >= n || !isEntrance(conn, n)
+                            || state < 0 || state >= ConnectionState.values().length)
+                        break;
+                    s.connections()[id] = conn;
+                    s.states()[id] = state;
+                } else if (kind == GROUP) {
+                    int g = in.getInt();
+                    int h = in.getInt();
+                    if (g < 0 || g >= groups || h < TrackerState.NONE || h >= groups)
+                        break;
+                    s.groupConnections()[g] = h;
+                } else {
+                    this.log.removeById(in.getInt());
+                }
+            }
+            records++;
+            this.validLength = in.position();
+        }
+        // Events read before a cut off record still happened
+        appendBatch(batch, batchSecond);
+        this.tracker.restore(s);
+        return records;
+    }
+
+    /**
+     * Starts journaling every change from now on, after the records replayed
+     * if {@code keep}, else into an emptied file.
+     *
+     * @throws IOException If {@code file} can't be opened
+     */
+    public void start(boolean keep) throws IOException {
+        Files.createDirectories(this.file.getParent());
+        this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (keep && this.validLength > HEADER_BYTES) {
+            this.channel.truncate(this.validLength);
+            this.channel.position(this.validLength);
+        } else {
+            this.channel.truncate(0);
+            var header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(this.tracker.size()).flip();
+            while (header.hasRemaining()) {
+                this.channel.write(header);
+            }
+        }
+
+        this.writer = new Thread(this::runWriter, "journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        if (this.shutdownHook == null) {
+            this.shutdownHook = new Thread(this::close, "journal-close");
+            Runtime.getRuntime().addShutdownHook(this.shutdownHook);
+        }
+
+        this.tracker.addListener(this);
+        this.log.addListener(this);
+    }
+
+    /**
+     * Writes and forces whatever is left to the file, and stops writing any
+     * more. May be called from any thread, and calling it again does
+     * nothing. Called before shutting down, it also takes back the shutdown
+     * hook that would have called it.
+     */
+    public void close() {
+        synchronized (this.lock) {
+            if (this.closed)
+                return;
+            this.closed = true;
+            this.lock.notifyAll();
+        }
+        if (this.shutdownHook != null && Thread.currentThread() != this.shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+            } catch (IllegalStateException e) {
+                // Already shutting down, so the hook runs and does nothing
+            }
+        }
+        if (this.writer == null)
+            return;
+        try {
+            this.writer.join(CLOSE_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void entranceChanged(int id, ConnectionState previous) {
+        ConnectionState st = this.tracker.getState(id);
+        if (st == ConnectionState.PENDING)
+            st = ConnectionState.UNKNOWN;
+        synchronized (this.lock) {
+            ByteBuffer b = reserve(ENTRANCE);
+            b.putInt(id).putInt(this.tracker.getConnection(id)).put((byte) st.ordinal());
+        }
+    }
+
+    @Override
+    public void groupChanged(int g) {
+        synchronized (this.lock) {
+            reserve(GROUP).putInt(g).putInt(this.tracker.getConnectingGroup(g));
+        }
+    }
+
+    @Override
+    public void eventsAppended(int from, int to) {
+        int count = to - from;
+        if (this.packed.length < count * 4)
+            this.packed = new int[Math.max(count * 4, this.packed.length * 2)];
+        this.log.packEvents(from, to, this.packed);
+        synchronized (this.lock) {
+            for (int k = 0; k < count * 4; k += 4) {
+                reserve(APPEND).put((byte) this.packed[k]).putInt(this.packed[k + 1])
+                        .putInt(this.packed[k + 2]).putInt(this.packed[k + 3]);
+            }
+        }
+    }
+
+    @Override
+    public void eventRemoved(int i, EntranceEvent e) {
+        synchronized (this.lock) {
+            reserve(REMOVE).putInt(e.getId());
+        }
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /**
+     * Writes whatever has been encoded, forcing the file to disk every so
+     * often, until closed.
+     */
+    private void runWriter() {
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+        long lastForce = System.nanoTime();
+        boolean unforced = false;
+        try {
+            while (true) {
+                boolean stop;
+                synchronized (this.lock) {
+                    if (this.pending.position() == 0 && !this.closed)
+                        this.lock.wait(unforced ? FORCE_MILLIS : 0);
+                    ByteBuffer full = this.pending;
+                    this.pending = out;
+                    out = full;
+                    stop = this.closed;
+                }
+
+                out.flip();
+                unforced |= out.hasRemaining();
+                while (out.hasRemaining()) {
+                    this.channel.write(out);
+                }
+                out.clear();
+
+                long now = System.nanoTime();
+                if (unforced && (stop || now - lastForce >= FORCE_MILLIS * 1_000_000L)) {
+                    this.channel.force(false);
+                    unforced = false;
+                    lastForce = now;
+                }
+                if (stop)
+                    break;
+            }
+        } catch (IOException e) {
+            Logger.getLogger(SessionJournal.class.getName())
+                    .log(Level.WARNING, "Session journal stopped", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this.lock) {
+                this.closed = true;
+            }
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                Logger.getLogger(SessionJournal.class.getName())
+                    .log(Level.WARNING, "Couldn't close the session journal", e);
+            }
+        }
+    }
+
+    /**
+     * Makes room in {@code pending} for a record of {@code kind} and puts its
+     * kind, waking the writer if it was waiting. Holding {@code lock}.
+     * @return {@code pending}, to put the rest of the record into
+     */
+    private ByteBuffer reserve(byte kind) {
+        int need = 1 + bodyBytes(kind);
+        if (this.pending.remaining() < need) {
+            var bigger = ByteBuffer.allocate(Math.max(this.pending.capacity() * 2,
+                    this.pending.position() + need));
+            this.pending.flip();
+            bigger.put(this.pending);
+            this.pending = bigger;
+        }
+        // Once closed nothing is written any more, so the buffer is reused
+        if (this.closed)
+            this.pending.clear();
+        else if (this.pending.position() == 0)
+            this.lock.notifyAll();
+        return this.pending.put(kind);
+    }
+
+    private ByteBuffer read() throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(this.file));
+    }
+
+    /** Reads the header, {@code false} if it isn't one for these entrances */
+    private boolean readHeader(ByteBuffer in) {
+        if (in.remaining() < HEADER_BYTES)
+            return false;
+        return in.getInt() == MAGIC && in.getInt() == this.tracker.size();
+    }
+
+    private void appendBatch(List<EntranceEvent> batch, int second) {
+        if (batch.isEmpty())
+            return;
+        this.log.appendAll(batch, LocalTime.ofSecondOfDay(second));
+        batch.clear();
+    }
+
+    private EntranceIcon icon(int id) {
+        return id == TrackerState.NONE ? null : this.tracker.getView(id);
+    }
+
+    private static boolean isEntrance(int id, int n) {
+        return id >= TrackerState.NONE && id < n;
+    }
+
+    /** Bytes of a record of {@code kind} after its kind, {@code 0} if unknown */
+    private static int bodyBytes(byte kind) {
+        return switch (kind) {
+            case ENTRANCE -> 4 + 4 + 1;
+            case GROUP -> 4 + 4;
+            case APPEND -> 1 + 4 + 4 + 4;
+            case REMOVE -> 4;
+            default -> Integer.MAX_VALUE;
+        };
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    private static final String FILE_NAME = "session.journal";
+
+    /** Starts every journal, {@code ERJ1} */
+    private static final int MAGIC = 0x45524A31;
+
+    /** Magic number and number of entrances */
+    private static final int HEADER_BYTES = 4 + 4;
+
+    /** Record of an entrance's connection and state */
+    private static final byte ENTRANCE = 1;
+
+    /** Record of a group's connecting group */
+    private static final byte GROUP = 2;
+
+    /** Record of an event appended to the log */
+    private static final byte APPEND = 3;
+
+    /** Record of an event removed from the log, by id */
+    private static final byte REMOVE = 4;
+
+    /** Longest the file goes unforced while anything has been written */
+    private static final long FORCE_MILLIS = 200;
+
+    /** Longest {@code close} waits for the writer to finish */
+    private static final long CLOSE_WAIT_MILLIS = 2000;
+
+    private static final int BUFFER_BYTES = 4096;
+
+    private final Path file;
+
+    private final TrackerState<EntranceIcon, ?> tracker;
+
+    private final EventLog log;
+
+    /** Guards {@code pending} and {@code closed} */
+    private final Object lock;
+
+    /** Appended events copied out of the log, on the EDT */
+    private int[] packed;
+
+    /** Records encoded and waiting for the writer */
+    private ByteBuffer pending;
+
+    private boolean closed;
+
+    /** Length of the header and whole records read by {@code replay} */
+    private long validLength;
+
+    private FileChannel channel;
+
+    private Thread writer;
+
+    /** Closes the journal when the tracker exits, {@code null} until started */
+    private Thread shutdownHook;
+}
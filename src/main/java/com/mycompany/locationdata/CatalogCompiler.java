@@ -0,0 +1,202 @@
+package com.mycompany.locationdata;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validates {@code locations.json} and {@code groups.json} and compiles them
+ * into a {@code LocationCatalog}.<p>
+ *
+ * Run by the build in the {@code process-classes} phase, which writes the
+ * catalog next to the compiled classes so it ends up in the jar:
+ * <pre>
+ *  CatalogCompiler &lt;dir with the JSON files&gt; &lt;catalog file to write&gt;
+ * </pre>
+ * Anything that would break the tracker, such as a location without
+ * coordinates, an unknown world or a group member that doesn't exist, fails
+ * the build. Missing, duplicate or non-integer {@code "id"}s are only
+ * reported, since locations are indexed by their position instead.
+ *
+ * @author aauyong
+ */
+public final class CatalogCompiler {
+
+    private CatalogCompiler() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2)
+            throw new IllegalArgumentException(
+                "usage: CatalogCompiler <json dir> <catalog file>");
+
+        Path dir = Paths.get(args[0]);
+        Path out = Paths.get(args[1]);
+
+        LocationCatalog cat = compile(
+                ResourceLoader.readLocations(dir.resolve(LOCATIONS_FILE)),
+                ResourceLoader.readGroups(dir.resolve(GROUPS_FILE)));
+
+        Files.createDirectories(out.toAbsolutePath().getParent());
+        Path tmp = out.resolveSibling(out.getFileName() + ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmp)) {
+            cat.write(os);
+        }
+        Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING);
+
+        System.out.printf("Compiled %d locations and %d groups into %s%n",
+                cat.size(), cat.groupCount(), out);
+    }
+
+    /**
+     * Compiles the JSON files found by {@code ResourceLoader}. Used when the
+     * build didn't produce a catalog or a pack replaces the location data.
+     *
+     * @throws IOException If either file is missing or invalid
+     */
+    static LocationCatalog compileResources() throws IOException {
+        return compile(
+                ResourceLoader.readLocations(LOCATIONS_RESOURCE),
+                ResourceLoader.readGroups(GROUPS_RESOURCE));
+    }
+
+    /**
+     * Validates and compiles the records read from the two JSON files.
+     *
+     * @param locs Records of {@code locations.json}
+     * @param groups Records of {@code groups.json}
+     * @throws IOException If they fail validation
+     */
+    static LocationCatalog compile(List<LocationRecord> locs, List<GroupRecord> groups)
+            throws IOException {
+        List<String> errors = new ArrayList<>();
+        List<String> warnings = new ArrayList<>();
+
+        int n = locs.size();
+        String[] names = new String[n];
+        String[] types = new String[n];
+        boolean[] light = new boolean[n];
+        int[] xs = new int[n];
+        int[] ys = new int[n];
+        int[] sourceIds = new int[n];
+
+        Map<String, Integer> index = new HashMap<>();
+        Map<Integer, String> seenIds = new HashMap<>();
+
+        for (int i = 0; i < n; i++) {
+            LocationRecord loc = locs.get(i);
+            String name = loc.name();
+            names[i] = name;
+            if (index.putIfAbsent(name, i) != null)
+                errors.add(name + ": listed more than once");
+
+            types[i] = loc.type() == null ? "" : loc.type();
+
+            String world = loc.world();
+            if (!"light".equals(world) && !"dark".equals(world))
+                errors.add(name + ": world must be light or dark, was '" + world + "'");
+            light[i] = "light".equals(world);
+
+            xs[i] = coordinate(loc.x(), "x", name, errors);
+            ys[i] = coordinate(loc.y(), "y", name, errors);
+
+            Number id = loc.id();
+            if (id == null) {
+                warnings.add(name + ": no id");
+                sourceIds[i] = LocationCatalog.NO_SOURCE_ID;
+            } else if (!(id instanceof Integer)) {
+                warnings.add(name + ": id " + id + " is not an integer");
+                sourceIds[i] = LocationCatalog.NO_SOURCE_ID;
+            } else {
+                sourceIds[i] = id.intValue();
+                String prev = seenIds.putIfAbsent(sourceIds[i], name);
+                if (prev != null)
+                    warnings.add(name + ": id " + sourceIds[i] + " also used by " + prev);
+            }
+        }
+
+        int g = groups.size();
+        String[] groupNames = new String[g];
+        int[][] members = new int[g][];
+        String[][] dirs = new String[g][];
+
+        for (int gi = 0; gi < g; gi++) {
+            GroupRecord group = groups.get(gi);
+            groupNames[gi] = group.name();
+            members[gi] = new int[group.members().size()];
+            dirs[gi] = new String[group.members().size()];
+
+            for (int k = 0; k < group.members().size(); k++) {
+                GroupRecord.Member m = group.members().get(k);
+                Integer loc = index.get(m.name());
+                if (loc == null)
+                    errors.add(group.name() + ": no location called '" + m.name() + "'");
+                members[gi][k] = loc == null ? -1 : loc;
+
+                String dir = m.direction();
+                if (dir == null || DIRECTIONS.contains(dir)) {
+                    dirs[gi][k] = dir;
+                } else {
+                    errors.add(group.name() + "/" + m.name()
+                            + ": direction must be N, E, S, W or null, was " + dir);
+                }
+            }
+        }
+
+        for (String w : warnings) {
+            System.out.println("warning: " + w);
+        }
+        if (!errors.isEmpty()) {
+            for (String e : errors) {
+                System.out.println("error: " + e);
+            }
+            throw new IOException(errors.size() + " error(s) in location data");
+        }
+
+        return new LocationCatalog(names, types, light, xs, ys, sourceIds,
+                groupNames, members, dirs);
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /**
+     * Checks coordinate {@code field} of a location, adding an error if it is
+     * missing or off the map.
+     */
+    private static int coordinate(Integer v, String field, String name,
+            List<String> errors) {
+        if (v == null) {
+            errors.add(name + ": missing " + field);
+            return 0;
+        }
+        int c = v;
+        if (c < 0 || c >= MAP_EXTENT)
+            errors.add(name + ": " + field + " " + c + " is off the map");
+        return c;
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    private static final String LOCATIONS_FILE = "locations.json";
+
+    private static final String GROUPS_FILE = "groups.json";
+
+    static final String LOCATIONS_RESOURCE = "locationdata/" + LOCATIONS_FILE;
+
+    static final String GROUPS_RESOURCE = "locationdata/" + GROUPS_FILE;
+
+    /** Width and height of the map the coordinates are given on */
+    private static final int MAP_EXTENT = 4096;
+
+    private static final List<String> DIRECTIONS = List.of("N", "E", "S", "W");
+}
@@ -0,0 +1,23 @@
+package com.mycompany.locationdata;
+
+import java.util.List;
+
+/**
+ * One entry of {@code groups.json}, as read by {@code ResourceLoader}.
+ *
+ * @param name Name of the group
+ * @param members Members of the group, in file order
+ *
+ * @author aauyong
+ * @see CatalogCompiler
+ */
+public record GroupRecord(String name, List<Member> members) {
+
+    /**
+     * @param name Name of the member entrance
+     * @param type Type of the member, such as {@code cave}
+     * @param direction {@code N}, {@code E}, {@code S}, {@code W}, or
+     * {@code null} if the member is keyed by its type
+     */
+    public record Member(String name, String type, String direction) {}
+}
@@ -0,0 +1,275 @@
+package com.mycompany.locationdata;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The compiled, read-only table of every entrance location and entrance
+ * group.<p>
+ *
+ * Locations are numbered densely from {@code 0} in the order they appear in
+ * {@code locations.json}, and everything about them is kept in flat arrays
+ * indexed by that number. Groups refer to their members by the same numbers.
+ * The original {@code "id"} field of each location is kept as its
+ * {@code sourceId}, but is not used for indexing since it is not unique.<p>
+ *
+ * At build time {@code CatalogCompiler} validates the JSON files and writes
+ * the catalog to {@code CATALOG_RESOURCE}, which {@code load} reads without
+ * touching Jackson. If the resource is missing, such as when running straight
+ * from an IDE, the JSON is compiled at startup instead.
+ *
+ * @author aauyong
+ * @see CatalogCompiler
+ */
+public final class LocationCatalog {
+
+    LocationCatalog(String[] names, String[] types, boolean[] lightWorld,
+            int[] xs, int[] ys, int[] sourceIds, String[] groupNames,
+            int[][] groupMembers, String[][] groupDirections) {
+        this.names = names;
+        this.types = types;
+        this.lightWorld = lightWorld;
+        this.xs = xs;
+        this.ys = ys;
+        this.sourceIds = sourceIds;
+        this.groupNames = groupNames;
+        this.groupMembers = groupMembers;
+        this.groupDirections = groupDirections;
+    }
+
+    /**
+     * Loads the compiled catalog from the classpath, falling back to
+     * compiling the JSON files if it is missing or unreadable. The JSON files
+     * are also compiled if a pack replaces either of them.
+     *
+     * @return The catalog, or {@code null} if neither could be read
+     * @see ResourceLoader
+     */
+    public static LocationCatalog load() {
+        boolean overridden = ResourceLoader.isOverridden(CatalogCompiler.LOCATIONS_RESOURCE)
+                || ResourceLoader.isOverridden(CatalogCompiler.GROUPS_RESOURCE);
+        try (InputStream in = LocationCatalog.class.getResourceAsStream(CATALOG_RESOURCE)) {
+            if (in != null && !overridden)
+                return read(in);
+        } catch (IOException e) {
+            System.out.println("Location catalog unreadable, compiling from JSON: "
+                    + e.getMessage());
+        }
+
+        try {
+            return CatalogCompiler.compileResources();
+        } catch (IOException e) {
+            System.out.println("Location data missing: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads a catalog written by {@code write}.
+     * @throws IOException If the stream can't be read or isn't a catalog
+     */
+    public static LocationCatalog read(InputStream in) throws IOException {
+        var din = new DataInputStream(new BufferedInputStream(in));
+        if (din.readInt() != MAGIC)
+            throw new IOException("not a location catalog");
+        if (din.readInt() != VERSION)
+            throw new IOException("unsupported location catalog version");
+
+        String[] typeTable = new String[din.readUnsignedByte()];
+        for (int i = 0; i < typeTable.length; i++) {
+            typeTable[i] = din.readUTF();
+        }
+
+        int n = din.readInt();
+        String[] names = new String[n];
+        String[] types = new String[n];
+        boolean[] light = new boolean[n];
+        int[] xs = new int[n];
+        int[] ys = new int[n];
+        int[] sourceIds = new int[n];
+        for (int i = 0; i < n; i++) {
+            names[i] = din.readUTF();
+            types[i] = typeTable[din.readUnsignedByte()];
+            light[i] = din.readBoolean();
+            xs[i] = din.readUnsignedShort();
+            ys[i] = din.readUnsignedShort();
+            sourceIds[i] = din.readInt();
+        }
+
+        int g = din.readInt();
+        String[] groupNames = new String[g];
+        int[][] members = new int[g][];
+        String[][] dirs = new String[g][];
+        for (int i = 0; i < g; i++) {
+            groupNames[i] = din.readUTF();
+            int m = din.readUnsignedByte();
+            members[i] = new int[m];
+            dirs[i] = new String[m];
+            for (int k = 0; k < m; k++) {
+                members[i][k] = din.readInt();
+                char d = din.readChar();
+                dirs[i][k] = d == NO_DIRECTION ? null : String.valueOf(d);
+            }
+        }
+
+        return new LocationCatalog(names, types, light, xs, ys, sourceIds,
+                groupNames, members, dirs);
+    }
+
+    /**
+     * Writes {@code this} in the compact form read by {@code read}.
+     * @throws IOException If writing fails
+     */
+    public void write(OutputStream out) throws IOException {
+        var dout = new DataOutputStream(out);
+        dout.writeInt(MAGIC);
+        dout.writeInt(VERSION);
+
+        var typeTable = new java.util.ArrayList<String>();
+        for (String t : this.types) {
+            if (!typeTable.contains(t))
+                typeTable.add(t);
+        }
+        dout.writeByte(typeTable.size());
+        for (String t : typeTable) {
+            dout.writeUTF(t);
+        }
+
+        dout.writeInt(size());
+        for (int i = 0; i < size(); i++) {
+            dout.writeUTF(this.names[i]);
+            dout.writeByte(typeTable.indexOf(this.types[i]));
+            dout.writeBoolean(this.lightWorld[i]);
+            dout.writeShort(this.xs[i]);
+            dout.writeShort(this.ys[i]);
+            dout.writeInt(this.sourceIds[i]);
+        }
+
+        dout.writeInt(groupCount());
+        for (int i = 0; i < groupCount(); i++) {
+            dout.writeUTF(this.groupNames[i]);
+            dout.writeByte(this.groupMembers[i].length);
+            for (int k = 0; k < this.groupMembers[i].length; k++) {
+                dout.writeInt(this.groupMembers[i][k]);
+                String d = this.groupDirections[i][k];
+                dout.writeChar(d == null ? NO_DIRECTION : d.charAt(0));
+            }
+        }
+        dout.flush();
+    }
+
+    /** Number of locations */
+    public int size() {
+        return this.names.length;
+    }
+
+    /** Name of location {@code i} */
+    public String name(int i) {
+        return this.names[i];
+    }
+
+    /** Type of location {@code i}, such as {@code cave}, or {@code ""} */
+    public String type(int i) {
+        return this.types[i];
+    }
+
+    /** Whether location {@code i} is in the light world */
+    public boolean isLightWorld(int i) {
+        return this.lightWorld[i];
+    }
+
+    /** X coordinate of location {@code i} on a 4096px map */
+    public int x(int i) {
+        return this.xs[i];
+    }
+
+    /** Y coordinate of location {@code i} on a 4096px map */
+    public int y(int i) {
+        return this.ys[i];
+    }
+
+    /**
+     * The {@code "id"} field of location {@code i} in the source file, or
+     * {@code NO_SOURCE_ID} if it had none
+     */
+    public int sourceId(int i) {
+        return this.sourceIds[i];
+    }
+
+    /**
+     * Index of the location called {@code name}
+     * @return the index, or {@code -1} if there is no such location
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < this.names.length; i++) {
+            if (this.names[i].equals(name))
+                return i;
+        }
+        return -1;
+    }
+
+    /** Number of groups */
+    public int groupCount() {
+        return this.groupNames.length;
+    }
+
+    /** Name of group {@code g} */
+    public String groupName(int g) {
+        return this.groupNames[g];
+    }
+
+    /** Location indices of the members of group {@code g} */
+    public int[] groupMembers(int g) {
+        return this.groupMembers[g].clone();
+    }
+
+    /**
+     * Direction the {@code k}th member of group {@code g} is keyed by, one of
+     * {@code N}, {@code E}, {@code S}, {@code W}, or {@code null} if it is
+     * keyed by its type
+     */
+    public String groupDirection(int g, int k) {
+        return this.groupDirections[g][k];
+    }
+
+    /*===========================================================================
+    Variables
+    ===========================================================================*/
+
+    /** Classpath resource the compiled catalog is written to */
+    public static final String CATALOG_RESOURCE = "/locationdata/catalog.bin";
+
+    /** Stands in for a missing or non-integer {@code "id"} */
+    public static final int NO_SOURCE_ID = -1;
+
+    /** {@code ERLC} */
+    private static final int MAGIC = 0x45524c43;
+
+    private static final int VERSION = 1;
+
+    private static final char NO_DIRECTION = '-';
+
+    private final String[] names;
+
+    private final String[] types;
+
+    private final boolean[] lightWorld;
+
+    private final int[] xs;
+
+    private final int[] ys;
+
+    private final int[] sourceIds;
+
+    private final String[] groupNames;
+
+    /** Location indices of each group's members */
+    private final int[][] groupMembers;
+
+    /** Direction of each group member, parallel to {@code groupMembers} */
+    private final String[][] groupDirections;
+}
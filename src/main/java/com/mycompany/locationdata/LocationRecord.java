@@ -0,0 +1,18 @@
+package com.mycompany.locationdata;
+
+/**
+ * One entry of {@code locations.json}, as read by {@code ResourceLoader}.
+ * Fields missing from the file are {@code null}; nothing is validated here.
+ *
+ * @param name Name of the entrance
+ * @param type Type of entrance, such as {@code cave} or {@code drop}
+ * @param world {@code light} or {@code dark}
+ * @param x X position on a 4096px map
+ * @param y Y position on a 4096px map
+ * @param id The {@code "id"} field, which may not be an integer
+ *
+ * @author aauyong
+ * @see CatalogCompiler
+ */
+public record LocationRecord(String name, String type, String world,
+        Integer x, Integer y, Number id) {}
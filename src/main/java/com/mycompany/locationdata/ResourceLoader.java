@@ -0,0 +1,289 @@
+package com.mycompany.locationdata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.mycompany.entrancerando.EntranceRando;
+
+/**
+ * Finds and reads the tracker's data files, whether they are loose on disk,
+ * inside the jar, or in an external pack.<p>
+ *
+ * A resource is looked up by its path relative to the classpath root, such
+ * as {@code locationdata/locations.json}. A file at the same path under the
+ * pack directory takes precedence over the built-in one, so a pack can
+ * replace the maps or location data. The pack directory is
+ * {@code packs} under {@code EntranceRando.getAppDir()}, or whatever
+ * {@code entrancerando.packDir} is set to.<p>
+ *
+ * Built-in resources are read as streams, so they work the same from a jar.
+ * External files larger than {@code MMAP_THRESHOLD} are memory-mapped
+ * instead of read through a stream. JSON is read straight off Jackson's token
+ * stream into records, without building a tree. The time and memory taken to
+ * read each resource are printed.
+ *
+ * @author aauyong
+ */
+public final class ResourceLoader {
+
+    private ResourceLoader() {}
+
+    /**
+     * URL of {@code name}, from the pack directory if it is there and from
+     * the classpath otherwise.
+     *
+     * @param name Path relative to the classpath root, without a leading
+     * {@code /}
+     * @return The URL, or {@code null} if there is no such resource
+     */
+    public static URL find(String name) {
+        Path external = externalPath(name);
+        if (external != null) {
+            try {
+                return external.toUri().toURL();
+            } catch (MalformedURLException e) {
+                System.out.println("Unusable pack file " + external);
+            }
+        }
+        return ResourceLoader.class.getResource("/" + name);
+    }
+
+    /** Whether the pack directory has its own copy of {@code name} */
+    public static boolean isOverridden(String name) {
+        return externalPath(name) != null;
+    }
+
+    /**
+     * Reads a locations file found with {@code find}.
+     * @throws IOException If it is missing or malformed
+     */
+    public static List<LocationRecord> readLocations(String name) throws IOException {
+        return read(name, null, ResourceLoader::parseLocations);
+    }
+
+    /**
+     * Reads a groups file found with {@code find}.
+     * @throws IOException If it is missing or malformed
+     */
+    public static List<GroupRecord> readGroups(String name) throws IOException {
+        return read(name, null, ResourceLoader::parseGroups);
+    }
+
+    /**
+     * Reads the locations file at {@code file}.
+     * @throws IOException If it is missing or malformed
+     */
+    public static List<LocationRecord> readLocations(Path file) throws IOException {
+        return read(file.toString(), file, ResourceLoader::parseLocations);
+    }
+
+    /**
+     * Reads the groups file at {@code file}.
+     * @throws IOException If it is missing or malformed
+     */
+    public static List<GroupRecord> readGroups(Path file) throws IOException {
+        return read(file.toString(), file, ResourceLoader::parseGroups);
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /** Reads records off a parser positioned before the first token */
+    @FunctionalInterface
+    private interface RecordParser<T> {
+        List<T> parse(JsonParser p) throws IOException;
+    }
+
+    /**
+     * Opens the resource, parses it, and prints how long that took and how
+     * much was allocated.
+     *
+     * @param label Name to report, and resource to look up if {@code file}
+     * is {@code null}
+     * @param file File to read directly, or {@code null}
+     */
+    private static <T> List<T> read(String label, Path file, RecordParser<T> parser)
+            throws IOException {
+        long start = System.nanoTime();
+        long startAlloc = allocatedBytes();
+
+        String origin;
+        if (file == null) {
+            file = externalPath(label);
+            origin = file != null ? "pack" : "classpath";
+        } else {
+            origin = "file";
+        }
+
+        List<T> records;
+        try (InputStream in = file != null ? openFile(file) : openResource(label);
+                JsonParser p = Json.FACTORY.createParser(in)) {
+            records = parser.parse(p);
+        }
+
+        long alloc = allocatedBytes() - startAlloc;
+        System.out.printf("Read %s from %s: %d records in %.2f ms%s%n",
+                label, origin, records.size(), (System.nanoTime() - start) / 1e6,
+                startAlloc < 0 ? "" : String.format(", %d KB allocated", alloc / 1024));
+        return records;
+    }
+
+    private static InputStream openResource(String name) throws IOException {
+        InputStream in = ResourceLoader.class.getResourceAsStream("/" + name);
+        if (in == null)
+            throw new IOException("no resource " + name);
+        return in;
+    }
+
+    /**
+     * Opens {@code file}, memory-mapping it if it is large. The mapping
+     * outlives the channel, which is closed straight away.
+     */
+    private static InputStream openFile(Path file) throws IOException {
+        long size = Files.size(file);
+        if (size < MMAP_THRESHOLD)
+            return Files.newInputStream(file);
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return Json.stream(ch.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /** Path of {@code name} in the pack directory, or {@code null} if absent */
+    private static Path externalPath(String name) {
+        Path p = PACK_DIR.resolve(name).normalize();
+        return p.startsWith(PACK_DIR) && Files.isRegularFile(p) ? p : null;
+    }
+
+    /**
+     * Bytes allocated so far by this thread, or {@code -1} if the JVM can't
+     * tell.
+     */
+    private static long allocatedBytes() {
+        var bean = java.lang.management.ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean sun
+                && sun.isThreadAllocatedMemorySupported()) {
+            return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /** Parses {@code locations.json}: an object of location name to fields */
+    private static List<LocationRecord> parseLocations(JsonParser p) throws IOException {
+        List<LocationRecord> out = new ArrayList<>();
+        expect(p, JsonToken.START_OBJECT);
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.getCurrentName();
+            expect(p, JsonToken.START_OBJECT);
+
+            String type = null, world = null;
+            Integer x = null, y = null;
+            Number id = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                JsonToken t = p.nextToken();
+                switch (field) {
+                    case "type" -> type = textOrNull(p, t);
+                    case "world" -> world = textOrNull(p, t);
+                    case "x" -> x = t == JsonToken.VALUE_NUMBER_INT ? p.getIntValue() : null;
+                    case "y" -> y = t == JsonToken.VALUE_NUMBER_INT ? p.getIntValue() : null;
+                    case "id" -> id = t.isNumeric() ? p.getNumberValue() : null;
+                    default -> p.skipChildren();
+                }
+            }
+            out.add(new LocationRecord(name, type, world, x, y, id));
+        }
+        return out;
+    }
+
+    /**
+     * Parses {@code groups.json}: an object of group name to an object of
+     * member name to fields
+     */
+    private static List<GroupRecord> parseGroups(JsonParser p) throws IOException {
+        List<GroupRecord> out = new ArrayList<>();
+        expect(p, JsonToken.START_OBJECT);
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String group = p.getCurrentName();
+            expect(p, JsonToken.START_OBJECT);
+
+            List<GroupRecord.Member> members = new ArrayList<>();
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String member = p.getCurrentName();
+                expect(p, JsonToken.START_OBJECT);
+
+                String type = null, direction = null;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.getCurrentName();
+                    JsonToken t = p.nextToken();
+                    switch (field) {
+                        case "type" -> type = textOrNull(p, t);
+                        case "direction" -> direction = textOrNull(p, t);
+                        default -> p.skipChildren();
+                    }
+                }
+                members.add(new GroupRecord.Member(member, type, direction));
+            }
+            out.add(new GroupRecord(group, List.copyOf(members)));
+        }
+        return out;
+    }
+
+    private static String textOrNull(JsonParser p, JsonToken t) throws IOException {
+        if (t == JsonToken.VALUE_NULL)
+            return null;
+        if (t.isScalarValue())
+            return p.getText();
+        p.skipChildren();
+        return null;
+    }
+
+    private static void expect(JsonParser p, JsonToken expected) throws IOException {
+        JsonToken t = p.nextToken();
+        if (t != expected) {
+            throw new IOException("expected " + expected + " but found " + t
+                    + " at " + p.getCurrentLocation());
+        }
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    /** External files at least this large are memory-mapped */
+    private static final long MMAP_THRESHOLD = 1 << 20;
+
+    /**
+     * Everything of Jackson's this uses, kept out of the outer class so that
+     * Jackson is only loaded once JSON is actually read, and not by the
+     * lookups the startup path makes
+     */
+    private static final class Json {
+        static final JsonFactory FACTORY = new JsonFactory();
+
+        /** Stream over the mapped bytes of a file */
+        static InputStream stream(ByteBuffer bytes) {
+            return new ByteBufferBackedInputStream(bytes);
+        }
+    }
+
+    /** Directory that packs overriding the built-in resources are read from */
+    private static final Path PACK_DIR = System.getProperty("entrancerando.packDir") != null
+            ? Paths.get(System.getProperty("entrancerando.packDir")).toAbsolutePath().normalize()
+            : EntranceRando.getAppDir().resolve("packs").toAbsolutePath().normalize();
+}
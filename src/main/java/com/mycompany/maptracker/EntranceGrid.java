@@ -0,0 +1,226 @@
+package com.mycompany.maptracker;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid spatial index over entrance points.<p>
+ *
+ * Points are stored in map coordinates, the same space as
+ * {@code EntranceIcon.getPt()}, so changing the scale of a {@code MapPnl}
+ * never invalidates the index; queries are converted into map space by the
+ * caller instead. Points outside of the grid extent are clamped into the
+ * border cells.<p>
+ *
+ * Supports point-in-rectangle queries, nearest and k-nearest queries. All
+ * queries write ids into a caller-provided array so that none of them
+ * allocate.
+ *
+ * @author aauyong
+ */
+final class EntranceGrid {
+
+    /**
+     * Constructor
+     * @param width Width of the indexed area
+     * @param height Height of the indexed area
+     * @param cellSize Width and height of each cell
+     */
+    EntranceGrid(int width, int height, int cellSize) {
+        this.cellSize = cellSize;
+        this.cols = Math.max(1, (width + cellSize - 1) / cellSize);
+        this.rows = Math.max(1, (height + cellSize - 1) / cellSize);
+        this.cells = new int[this.cols * this.rows][];
+        this.cellCounts = new int[this.cols * this.rows];
+        this.xs = new int[16];
+        this.ys = new int[16];
+    }
+
+    /**
+     * Inserts the point {@code (x, y)} under {@code id}. Ids are expected to
+     * be small and dense, as they index the point arrays.
+     */
+    void insert(int id, int x, int y) {
+        if (id >= this.xs.length) {
+            int cap = Math.max(id + 1, this.xs.length * 2);
+            this.xs = Arrays.copyOf(this.xs, cap);
+            this.ys = Arrays.copyOf(this.ys, cap);
+        }
+        this.xs[id] = x;
+        this.ys[id] = y;
+        this.size = Math.max(this.size, id + 1);
+
+        int c = cellOf(x, y);
+        int[] cell = this.cells[c];
+        if (cell == null) {
+            cell = new int[4];
+            this.cells[c] = cell;
+        } else if (this.cellCounts[c] == cell.length) {
+            cell = Arrays.copyOf(cell, cell.length * 2);
+            this.cells[c] = cell;
+        }
+        cell[this.cellCounts[c]++] = id;
+    }
+
+    /**
+     * Finds every point within the rectangle {@code [x0, x1] x [y0, y1]}.
+     *
+     * @param out Array to write ids into
+     * @return Number of ids written, at most {@code out.length}
+     */
+    int queryRect(double x0, double y0, double x1, double y1, int[] out) {
+        int c0 = colOf(x0), c1 = colOf(x1);
+        int r0 = rowOf(y0), r1 = rowOf(y1);
+
+        int n = 0;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int idx = r * this.cols + c;
+                int[] cell = this.cells[idx];
+                for (int k = 0; k < this.cellCounts[idx]; k++) {
+                    int id = cell[k];
+                    if (this.xs[id] >= x0 && this.xs[id] <= x1
+                            && this.ys[id] >= y0 && this.ys[id] <= y1) {
+                        if (n == out.length)
+                            return n;
+                        out[n++] = id;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Finds the closest point to {@code (x, y)} within {@code maxDist}.
+     *
+     * @return id of the point, or {@code -1} if none are close enough
+     */
+    int nearest(double x, double y, double maxDist) {
+        int n = kNearest(x, y, 1, maxDist, this.single);
+        return n == 0 ? -1 : this.single[0];
+    }
+
+    /**
+     * Finds up to {@code out.length} of the closest points to {@code (x, y)}
+     * within {@code maxDist}, ordered from nearest to furthest.<p>
+     *
+     * Cells are searched in rings around the cell of the query point, and the
+     * search stops once the closest unvisited ring is further away than the
+     * furthest point kept.
+     *
+     * @param out Array to write ids into, its length is k
+     * @return Number of ids written
+     */
+    int kNearest(double x, double y, int k, double maxDist, int[] out) {
+        k = Math.min(k, out.length);
+        if (k <= 0)
+            return 0;
+        if (this.bestDist.length < k)
+            this.bestDist = new double[k];
+
+        double maxSq = maxDist * maxDist;
+        int cx = colOf(x), cy = rowOf(y);
+        int found = 0;
+        int maxRing = Math.max(this.cols, this.rows);
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Nearest any point in this ring can be to the query point
+            double ringDist = Math.max(0, (ring - 1)) * (double) this.cellSize;
+            if (ringDist * ringDist > maxSq)
+                break;
+            if (found == k && ringDist * ringDist > this.bestDist[k - 1])
+                break;
+
+            for (int r = cy - ring; r <= cy + ring; r++) {
+                if (r < 0 || r >= this.rows)
+                    continue;
+                boolean edgeRow = r == cy - ring || r == cy + ring;
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                for (int c = cx - ring; c <= cx + ring; c += step) {
+                    if (c < 0 || c >= this.cols)
+                        continue;
+                    found = scanCell(r * this.cols + c, x, y, k, maxSq, out, found);
+                }
+            }
+        }
+        return found;
+    }
+
+    /** Number of ids the index has room for, one past the largest id */
+    int size() {
+        return this.size;
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /**
+     * Offers each point in cell {@code idx} to the sorted {@code out} list of
+     * the {@code k} nearest.
+     */
+    private int scanCell(int idx, double x, double y, int k, double maxSq,
+            int[] out, int found) {
+        int[] cell = this.cells[idx];
+        for (int j = 0; j < this.cellCounts[idx]; j++) {
+            int id = cell[j];
+            double dx = this.xs[id] - x, dy = this.ys[id] - y;
+            double d = dx * dx + dy * dy;
+            if (d > maxSq || (found == k && d >= this.bestDist[k - 1]))
+                continue;
+
+            int pos = found < k ? found++ : k - 1;
+            while (pos > 0 && this.bestDist[pos - 1] > d) {
+                this.bestDist[pos] = this.bestDist[pos - 1];
+                out[pos] = out[pos - 1];
+                pos--;
+            }
+            this.bestDist[pos] = d;
+            out[pos] = id;
+        }
+        return found;
+    }
+
+    private int cellOf(double x, double y) {
+        return rowOf(y) * this.cols + colOf(x);
+    }
+
+    private int colOf(double x) {
+        return Math.max(0, Math.min(this.cols - 1, (int) Math.floor(x / this.cellSize)));
+    }
+
+    private int rowOf(double y) {
+        return Math.max(0, Math.min(this.rows - 1, (int) Math.floor(y / this.cellSize)));
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    private final int cellSize;
+
+    private final int cols;
+
+    private final int rows;
+
+    /** Ids in each cell, row major */
+    private final int[][] cells;
+
+    /** Number of ids used in each of {@code cells} */
+    private final int[] cellCounts;
+
+    /** X coordinate of each id */
+    private int[] xs;
+
+    /** Y coordinate of each id */
+    private int[] ys;
+
+    /** One past the largest id inserted */
+    private int size;
+
+    /** Squared distances matching the ids kept by {@code kNearest} */
+    private double[] bestDist = new double[8];
+
+    /** Scratch output for {@code nearest} */
+    private final int[] single = new int[1];
+}
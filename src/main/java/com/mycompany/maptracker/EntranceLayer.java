@@ -0,0 +1,538 @@
+package com.mycompany.maptracker;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.util.Arrays;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import javax.swing.ToolTipManager;
+
+import com.mycompany.entrances.ConnectionState;
+import com.mycompany.entrances.EntranceIcon;
+
+/**
+ * A single lightweight layer that paints every entrance of a {@code MapPnl}
+ * and routes clicks to them, instead of each {@code EntranceIcon} being its
+ * own component.<p>
+ *
+ * Placement and state are kept in flat arrays indexed in the order icons
+ * were added. The icons stay the model: they are never added to the panel,
+ * but the layer follows their {@code STATE_PROPERTY} changes and hands mouse
+ * clicks to their {@code MouseListener}s, so {@code EventHandler} works the
+ * same in both modes. Icons paint themselves dimmed, shaded, tinted, on a
+ * route or with a hint, the layer only repaints them when that changes.<p>
+ *
+ * Clicks that miss every entrance are passed on to the enclosing
+ * {@code MapTracker}.<p>
+ *
+ * Entrances are indexed by an {@code EntranceGrid} in map space, which backs
+ * hit-testing, hover highlighting, lasso selection and keyboard navigation.
+ * Dragging on an empty spot of the map selects every entrance in the
+ * rectangle, and right-clicking a selected entrance right-clicks all of them.
+ * The arrow keys move the highlight to the nearest entrance in that
+ * direction, and Enter or Delete left or right click it.<p>
+ *
+ * Repaints go through the {@code FrameScheduler}, so changes to many
+ * entrances at once are painted together on the next frame.
+ *
+ * @author aauyong
+ * @see MapPnl#USE_ENTRANCE_LAYER
+ */
+class EntranceLayer extends JComponent {
+
+    EntranceLayer() {
+        this.icons = new EntranceIcon[INITIAL_CAPACITY];
+        this.xs = new int[INITIAL_CAPACITY];
+        this.ys = new int[INITIAL_CAPACITY];
+        this.states = new byte[INITIAL_CAPACITY];
+        this.shown = new boolean[INITIAL_CAPACITY];
+        this.selected = new boolean[INITIAL_CAPACITY];
+        this.armed = -1;
+        this.hovered = -1;
+        this.scale = 1;
+        this.grid = new EntranceGrid(GRID_EXTENT, GRID_EXTENT, GRID_CELL);
+        this.found = new int[INITIAL_CAPACITY];
+        this.pulse = nanos -> {
+            boolean any = false;
+            for (int i = 0; i < this.count; i++) {
+                if (!this.icons[i].isPulsing())
+                    continue;
+                FrameScheduler.markDirty(this, this.xs[i], this.ys[i], this.size, this.size);
+                any = true;
+            }
+            return any;
+        };
+
+        setOpaque(false);
+        setFocusable(true);
+        ToolTipManager.sharedInstance().registerComponent(this);
+
+        var mouse = new java.awt.event.MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent evt) {
+                requestFocusInWindow();
+                int i = hitTest(evt.getX(), evt.getY());
+                boolean left = SwingUtilities.isLeftMouseButton(evt);
+                setArmed(left ? i : -1);
+                if (left && i < 0)
+                    lassoStart = evt.getPoint();
+                route(evt);
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent evt) {
+                if (lassoStart == null)
+                    return;
+                lasso = new java.awt.Rectangle(lassoStart);
+                lasso.add(evt.getPoint());
+                FrameScheduler.markDirty(EntranceLayer.this);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent evt) {
+                if (lasso != null) {
+                    selectIn(lasso);
+                    lasso = null;
+                    lassoStart = null;
+                    setArmed(-1);
+                    return;
+                }
+                lassoStart = null;
+                route(evt);
+                setArmed(-1);
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent evt) {
+                route(evt);
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent evt) {
+                setHovered(nearestTo(evt.getX(), evt.getY(), size));
+            }
+
+            @Override
+            public void mouseExited(MouseEvent evt) {
+                setHovered(-1);
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        initKeyBindings();
+    }
+
+    /**
+     * Adds {@code e} to the layer. Its placement is set on the next call to
+     * {@code setScale}.
+     *
+     * @param e Entrance to paint
+     */
+    void add(EntranceIcon e) {
+        if (this.count == this.icons.length) {
+            int cap = this.count * 2;
+            this.icons = Arrays.copyOf(this.icons, cap);
+            this.xs = Arrays.copyOf(this.xs, cap);
+            this.ys = Arrays.copyOf(this.ys, cap);
+            this.states = Arrays.copyOf(this.states, cap);
+            this.shown = Arrays.copyOf(this.shown, cap);
+            this.selected = Arrays.copyOf(this.selected, cap);
+            this.found = new int[cap];
+        }
+
+        int i = this.count++;
+        this.icons[i] = e;
+        this.states[i] = (byte) e.getConnectionState().ordinal();
+        this.shown[i] = e.isVisible();
+        this.grid.insert(i, e.getPt().x, e.getPt().y);
+
+        e.addPropertyChangeListener(EntranceIcon.STATE_PROPERTY, evt -> {
+            this.states[i] = (byte) ((ConnectionState) evt.getNewValue()).ordinal();
+            this.shown[i] = e.isVisible();
+            FrameScheduler.markDirty(this, this.xs[i], this.ys[i], this.size, this.size);
+        });
+        java.beans.PropertyChangeListener looks = evt ->
+            FrameScheduler.markDirty(this, this.xs[i], this.ys[i], this.size, this.size);
+        e.addPropertyChangeListener(EntranceIcon.DIMMED_PROPERTY, looks);
+        e.addPropertyChangeListener(EntranceIcon.REACHABLE_PROPERTY, looks);
+        e.addPropertyChangeListener(EntranceIcon.ROUTE_PROPERTY, looks);
+        e.addPropertyChangeListener(EntranceIcon.HINT_PROPERTY, looks);
+        e.addPropertyChangeListener(EntranceIcon.HEAT_PROPERTY, looks);
+        e.addPropertyChangeListener(EntranceIcon.PULSING_PROPERTY, evt -> {
+            looks.propertyChange(evt);
+            if (e.isPulsing())
+                FrameScheduler.animate(this.pulse);
+        });
+    }
+
+    /**
+     * Places every entrance at its map point multiplied by {@code scale}, and
+     * sizes them for the current width of the layer.
+     *
+     * @param scale Scale of panel space to map space
+     */
+    void setScale(double scale) {
+        this.scale = scale;
+        this.size = EntranceIcon.sizeFor(getWidth());
+        for (int i = 0; i < this.count; i++) {
+            var p = this.icons[i].getPt();
+            this.xs[i] = (int) (p.x * scale);
+            this.ys[i] = (int) (p.y * scale);
+        }
+        FrameScheduler.markDirty(this);
+    }
+
+    /**
+     * Re-reads whether each entrance is visible, after the useless
+     * visibility setting changes.
+     */
+    void refreshVisibility() {
+        for (int i = 0; i < this.count; i++) {
+            this.shown[i] = this.icons[i].isVisible();
+        }
+        FrameScheduler.markDirty(this);
+    }
+
+    /**
+     * Index of the top-most visible entrance under {@code (x, y)}.<p>
+     *
+     * Only the entrances whose top left corner is within one icon of the
+     * point, found through the {@code grid}, are tested against their shape.
+     *
+     * @return index into the layer, or {@code -1} if nothing was hit
+     */
+    int hitTest(int x, int y) {
+        long start = PaintProfiler.ENABLED ? System.nanoTime() : 0;
+
+        int n = this.grid.queryRect(
+                (x - this.size) / this.scale, (y - this.size) / this.scale,
+                x / this.scale, y / this.scale, this.found);
+        int hit = -1;
+        for (int k = 0; k < n; k++) {
+            int i = this.found[k];
+            if (i > hit && this.shown[i]
+                    && this.icons[i].containsAt(x - this.xs[i], y - this.ys[i], this.size)) {
+                hit = i;
+            }
+        }
+
+        if (PaintProfiler.ENABLED)
+            PaintProfiler.record("layer hit-test", System.nanoTime() - start);
+        return hit;
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent evt) {
+        int i = hitTest(evt.getX(), evt.getY());
+        return i < 0 ? null : this.icons[i].getToolTipText();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        long start = PaintProfiler.ENABLED ? System.nanoTime() : 0;
+
+        Graphics2D g2 = (Graphics2D) g;
+        var clip = g.getClipBounds();
+        for (int i = 0; i < this.count; i++) {
+            if (!this.shown[i])
+                continue;
+            if (clip != null && !clip.intersects(this.xs[i], this.ys[i], this.size, this.size))
+                continue;
+            this.icons[i].paintAt(g2, this.xs[i], this.ys[i], this.size,
+                    STATES[this.states[i]], i == this.armed);
+            if (this.selected[i])
+                outline(g2, i, SELECTED_COLOR);
+        }
+        if (this.hovered >= 0 && this.shown[this.hovered])
+            outline(g2, this.hovered, HOVER_COLOR);
+
+        if (this.lasso != null) {
+            g2.setColor(LASSO_FILL);
+            g2.fill(this.lasso);
+            g2.setColor(SELECTED_COLOR);
+            g2.draw(this.lasso);
+        }
+
+        if (PaintProfiler.ENABLED)
+            PaintProfiler.record("layer paint", System.nanoTime() - start);
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /**
+     * Index of the visible entrance whose center is nearest to {@code (x, y)}
+     * and within {@code maxDist}, in layer space.
+     */
+    private int nearestTo(int x, int y, double maxDist) {
+        double half = this.size / 2.0;
+        int n = this.grid.kNearest((x - half) / this.scale, (y - half) / this.scale,
+                NEAREST_CANDIDATES, maxDist / this.scale, this.found);
+        for (int k = 0; k < n; k++) {
+            if (this.shown[this.found[k]])
+                return this.found[k];
+        }
+        return -1;
+    }
+
+    /** Selects every visible entrance whose center is within {@code r} */
+    private void selectIn(java.awt.Rectangle r) {
+        Arrays.fill(this.selected, false);
+        double half = this.size / 2.0;
+        int n = this.grid.queryRect(
+                (r.x - half) / this.scale, (r.y - half) / this.scale,
+                (r.x + r.width - half) / this.scale, (r.y + r.height - half) / this.scale,
+                this.found);
+        for (int k = 0; k < n; k++) {
+            this.selected[this.found[k]] = this.shown[this.found[k]];
+        }
+        FrameScheduler.markDirty(this);
+    }
+
+    /**
+     * Moves the highlight to the nearest visible entrance in the direction of
+     * {@code (dx, dy)}, within 45 degrees either side of it. Starts from the
+     * entrance nearest the middle of the layer if nothing is highlighted.
+     */
+    private void moveHovered(int dx, int dy) {
+        if (this.hovered < 0) {
+            setHovered(nearestTo(getWidth() / 2, getHeight() / 2, Double.MAX_VALUE));
+            return;
+        }
+
+        int from = this.hovered;
+        int n = this.grid.kNearest(this.icons[from].getPt().x, this.icons[from].getPt().y,
+                this.found.length, Double.MAX_VALUE, this.found);
+        for (int k = 0; k < n; k++) {
+            int i = this.found[k];
+            if (i == from || !this.shown[i])
+                continue;
+            int ox = this.xs[i] - this.xs[from];
+            int oy = this.ys[i] - this.ys[from];
+            int along = ox * dx + oy * dy;
+            int across = Math.abs(ox * dy - oy * dx);
+            if (along > 0 && across <= along) {
+                setHovered(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sends a click with {@code button} to the highlighted entrance, as if
+     * the mouse had been clicked on its center.
+     */
+    private void clickHovered(int button) {
+        if (this.hovered < 0)
+            return;
+        int x = this.xs[this.hovered] + this.size / 2;
+        int y = this.ys[this.hovered] + this.size / 2;
+        int mask = button == MouseEvent.BUTTON1
+                ? java.awt.event.InputEvent.BUTTON1_DOWN_MASK
+                : java.awt.event.InputEvent.BUTTON3_DOWN_MASK;
+        route(new MouseEvent(this, MouseEvent.MOUSE_CLICKED,
+                System.currentTimeMillis(), mask, x, y, 1, false, button));
+    }
+
+    private void initKeyBindings() {
+        var im = getInputMap(WHEN_FOCUSED);
+        var am = getActionMap();
+        bindKey(im, am, "LEFT", () -> moveHovered(-1, 0));
+        bindKey(im, am, "RIGHT", () -> moveHovered(1, 0));
+        bindKey(im, am, "UP", () -> moveHovered(0, -1));
+        bindKey(im, am, "DOWN", () -> moveHovered(0, 1));
+        bindKey(im, am, "ENTER", () -> clickHovered(MouseEvent.BUTTON1));
+        bindKey(im, am, "DELETE", () -> clickHovered(MouseEvent.BUTTON3));
+        bindKey(im, am, "ESCAPE", () -> {
+            Arrays.fill(this.selected, false);
+            FrameScheduler.markDirty(this);
+        });
+    }
+
+    private static void bindKey(javax.swing.InputMap im, javax.swing.ActionMap am,
+            String key, Runnable r) {
+        im.put(javax.swing.KeyStroke.getKeyStroke(key), key);
+        am.put(key, new javax.swing.AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                r.run();
+            }
+        });
+    }
+
+    private void setHovered(int i) {
+        if (i == this.hovered)
+            return;
+        int prev = this.hovered;
+        this.hovered = i;
+        if (prev >= 0)
+            repaintAround(prev);
+        if (i >= 0)
+            repaintAround(i);
+    }
+
+    /** Repaints entrance {@code i} along with its outline */
+    private void repaintAround(int i) {
+        FrameScheduler.markDirty(this, this.xs[i] - OUTLINE, this.ys[i] - OUTLINE,
+                this.size + 2 * OUTLINE, this.size + 2 * OUTLINE);
+    }
+
+    /** Draws an outline of {@code color} just outside entrance {@code i} */
+    private void outline(Graphics2D g2, int i, java.awt.Color color) {
+        var stroke = g2.getStroke();
+        g2.setColor(color);
+        g2.setStroke(OUTLINE_STROKE);
+        g2.drawRect(this.xs[i] - OUTLINE / 2, this.ys[i] - OUTLINE / 2,
+                this.size + OUTLINE, this.size + OUTLINE);
+        g2.setStroke(stroke);
+    }
+
+    /**
+     * Marks entrance {@code i} as held down by the mouse, or none if
+     * {@code -1}, which is painted like a pressed button.
+     */
+    private void setArmed(int i) {
+        if (i == this.armed)
+            return;
+        int prev = this.armed;
+        this.armed = i;
+        if (prev >= 0)
+            FrameScheduler.markDirty(this, this.xs[prev], this.ys[prev], this.size, this.size);
+        if (i >= 0)
+            FrameScheduler.markDirty(this, this.xs[i], this.ys[i], this.size, this.size);
+    }
+
+    /**
+     * Hands {@code evt} to the listeners of the entrance it lands on, or to
+     * the enclosing {@code MapTracker} if it lands on none.
+     */
+    private void route(MouseEvent evt) {
+        int i = hitTest(evt.getX(), evt.getY());
+        if (i < 0) {
+            var tracker = SwingUtilities.getAncestorOfClass(MapTracker.class, this);
+            if (tracker != null)
+                tracker.dispatchEvent(SwingUtilities.convertMouseEvent(this, evt, tracker));
+            return;
+        }
+
+        boolean rightClick = evt.getID() == MouseEvent.MOUSE_CLICKED
+                && SwingUtilities.isRightMouseButton(evt);
+        if (rightClick && this.selected[i]) {
+            for (int j = 0; j < this.count; j++) {
+                if (this.selected[j])
+                    dispatchTo(j, evt);
+            }
+            return;
+        }
+        dispatchTo(i, evt);
+    }
+
+    /**
+     * Re-targets {@code evt} at entrance {@code i} and hands it to the
+     * entrance's mouse listeners.
+     */
+    private void dispatchTo(int i, MouseEvent evt) {
+        EntranceIcon e = this.icons[i];
+        var iconEvt = new MouseEvent(e, evt.getID(), evt.getWhen(),
+                evt.getModifiersEx(), evt.getX() - this.xs[i], evt.getY() - this.ys[i],
+                evt.getXOnScreen(), evt.getYOnScreen(), evt.getClickCount(),
+                evt.isPopupTrigger(), evt.getButton());
+
+        for (MouseListener l : e.getMouseListeners()) {
+            // The button's own UI listener is skipped, the layer arms itself
+            if (l instanceof javax.swing.plaf.basic.BasicButtonListener)
+                continue;
+
+            switch (evt.getID()) {
+                case MouseEvent.MOUSE_PRESSED -> l.mousePressed(iconEvt);
+                case MouseEvent.MOUSE_RELEASED -> l.mouseReleased(iconEvt);
+                case MouseEvent.MOUSE_CLICKED -> l.mouseClicked(iconEvt);
+            }
+        }
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    private static final int INITIAL_CAPACITY = 128;
+
+    private static final ConnectionState[] STATES = ConnectionState.values();
+
+    /** Size of the map space indexed by the {@code grid} */
+    private static final int GRID_EXTENT = 4096;
+
+    /** Cell size of the {@code grid} in map space */
+    private static final int GRID_CELL = 128;
+
+    /** How many of the nearest entrances are checked for visibility */
+    private static final int NEAREST_CANDIDATES = 8;
+
+    /** Width of the hover and selection outlines */
+    private static final int OUTLINE = 3;
+
+    private static final java.awt.BasicStroke OUTLINE_STROKE =
+        new java.awt.BasicStroke(OUTLINE);
+
+    private static final java.awt.Color HOVER_COLOR = java.awt.Color.WHITE;
+
+    private static final java.awt.Color SELECTED_COLOR = java.awt.Color.CYAN;
+
+    private static final java.awt.Color LASSO_FILL = new java.awt.Color(0, 255, 255, 48);
+
+    /** Entrances painted by the layer */
+    private EntranceIcon[] icons;
+
+    /** Left edge of each entrance in layer space */
+    private int[] xs;
+
+    /** Top edge of each entrance in layer space */
+    private int[] ys;
+
+    /** {@code ConnectionState} ordinal of each entrance */
+    private byte[] states;
+
+    /** Whether each entrance is currently visible */
+    private boolean[] shown;
+
+    /** Number of entrances in the layer */
+    private int count;
+
+    /** Width and height every entrance is painted at */
+    private int size;
+
+    /** Index of the entrance currently pressed, {@code -1} if none */
+    private int armed;
+
+    /** Repaints the pulsing entrances every frame while there are any */
+    private final FrameScheduler.Animation pulse;
+
+    /**
+     * Index of the entrance under the mouse or keyboard highlight,
+     * {@code -1} if none
+     */
+    private int hovered;
+
+    /** Whether each entrance is in the lasso selection */
+    private boolean[] selected;
+
+    /** Where a lasso drag started, {@code null} if not dragging */
+    private java.awt.Point lassoStart;
+
+    /** Current lasso rectangle, {@code null} if not dragging */
+    private java.awt.Rectangle lasso;
+
+    /** Scale of layer space to map space */
+    private double scale;
+
+    /** Spatial index of entrance points in map space */
+    private final EntranceGrid grid;
+
+    /** Scratch array for grid query results */
+    private int[] found;
+
+}
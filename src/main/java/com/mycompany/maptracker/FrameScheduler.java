@@ -0,0 +1,182 @@
+package com.mycompany.maptracker;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+/**
+ * A Singleton that batches repaints into frames.<p>
+ *
+ * Instead of calling {@code repaint} directly, views mark the region that
+ * changed with {@code markDirty}. The regions marked for each component are
+ * merged, and are handed to Swing at most once per frame, so a group
+ * connection or bulk change that touches dozens of entrances results in a
+ * single paint.<p>
+ *
+ * The scheduler also runs {@code Animation}s once per frame, such as the
+ * pulse on the entrance armed for the next click. Its timer only runs while
+ * there is something dirty or animating.<p>
+ *
+ * The frame rate defaults to {@code DEFAULT_FPS} and can be capped with the
+ * {@code entrancerando.fps} system property. Only meant to be used from the
+ * EDT.
+ *
+ * @author aauyong
+ */
+public final class FrameScheduler {
+
+    /**
+     * Something that changes every frame.
+     */
+    @FunctionalInterface
+    public interface Animation {
+        /**
+         * Called once per frame, before dirty regions are flushed
+         * @param nanos {@code System.nanoTime()} of the frame
+         * @return {@code true} to keep running, {@code false} once finished
+         */
+        boolean frame(long nanos);
+    }
+
+    private FrameScheduler() {}
+
+    /**
+     * Marks the whole of {@code c} to be repainted on the next frame
+     * @param c Component to repaint
+     */
+    public static void markDirty(JComponent c) {
+        markDirty(c, 0, 0, c.getWidth(), c.getHeight());
+    }
+
+    /**
+     * Marks a region of {@code c} to be repainted on the next frame, merging
+     * it with anything already marked for {@code c}.
+     *
+     * @param c Component to repaint
+     * @param x Left edge of the region, in the space of {@code c}
+     * @param y Top edge of the region
+     * @param w Width of the region
+     * @param h Height of the region
+     */
+    public static void markDirty(JComponent c, int x, int y, int w, int h) {
+        if (w <= 0 || h <= 0)
+            return;
+        Rectangle r = DIRTY.get(c);
+        if (r == null)
+            DIRTY.put(c, new Rectangle(x, y, w, h));
+        else
+            r.add(new Rectangle(x, y, w, h));
+        requests++;
+        schedule();
+    }
+
+    /**
+     * Runs {@code a} every frame until it returns {@code false}. Adding an
+     * animation that is already running does nothing.
+     * @param a Animation to run
+     */
+    public static void animate(Animation a) {
+        if (!ANIMATIONS.contains(a))
+            ANIMATIONS.add(a);
+        schedule();
+    }
+
+    /**
+     * A value that eases between {@code 0} and {@code 1} and back every
+     * {@code PULSE_PERIOD_MS}, as of the current frame. Used to pulse
+     * highlights.
+     */
+    public static float pulse() {
+        double t = (frameNanos % PULSE_PERIOD_NANOS) / (double) PULSE_PERIOD_NANOS;
+        return (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * t));
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /**
+     * Starts the timer if it is not already running, timed so that the next
+     * frame comes no sooner than one frame after the last.
+     */
+    private static void schedule() {
+        if (TIMER.isRunning())
+            return;
+        long sinceLast = (System.nanoTime() - lastFlushNanos) / 1_000_000L;
+        TIMER.setInitialDelay((int) Math.max(0, FRAME_MS - sinceLast));
+        TIMER.start();
+    }
+
+    /**
+     * Runs every animation, then repaints every dirty region. Stops the timer
+     * once nothing is left to do.
+     */
+    private static void tick() {
+        long start = System.nanoTime();
+        frameNanos = start;
+        lastFlushNanos = start;
+
+        for (int i = ANIMATIONS.size() - 1; i >= 0; i--) {
+            if (!ANIMATIONS.get(i).frame(start))
+                ANIMATIONS.remove(i);
+        }
+
+        if (!DIRTY.isEmpty()) {
+            for (var e : DIRTY.entrySet()) {
+                Rectangle r = e.getValue();
+                e.getKey().repaint(r.x, r.y, r.width, r.height);
+            }
+            DIRTY.clear();
+
+            if (PaintProfiler.ENABLED) {
+                PaintProfiler.count("frame requests", requests);
+                PaintProfiler.record("frame flush", System.nanoTime() - start);
+            }
+            requests = 0;
+        }
+
+        if (ANIMATIONS.isEmpty())
+            TIMER.stop();
+    }
+
+    private static int readFps() {
+        int fps = Integer.getInteger("entrancerando.fps", DEFAULT_FPS);
+        return Math.max(1, Math.min(fps, MAX_FPS));
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    /** Frame rate used when {@code entrancerando.fps} is not set */
+    private static final int DEFAULT_FPS = 60;
+
+    private static final int MAX_FPS = 240;
+
+    /** Length of one frame */
+    private static final int FRAME_MS = 1000 / readFps();
+
+    /** Length of one pulse, from dim to bright and back */
+    private static final long PULSE_PERIOD_NANOS = 900 * 1_000_000L;
+
+    /** Region marked for each component since the last frame */
+    private static final Map<JComponent, Rectangle> DIRTY = new IdentityHashMap<>();
+
+    private static final List<Animation> ANIMATIONS = new ArrayList<>();
+
+    private static final Timer TIMER = new Timer(FRAME_MS, evt -> tick());
+
+    /** When the current frame started */
+    private static long frameNanos = System.nanoTime();
+
+    /** When dirty regions were last flushed */
+    private static long lastFlushNanos;
+
+    /** Number of {@code markDirty} calls merged into the next frame */
+    private static int requests;
+}
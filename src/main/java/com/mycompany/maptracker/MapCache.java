@@ -0,0 +1,210 @@
+package com.mycompany.maptracker;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.mycompany.entrancerando.EntranceRando;
+
+/**
+ * An on-disk cache of decoded map rasters.<p>
+ *
+ * Each entry is a raw file holding a small header followed by the decoded
+ * pixels as packed ints. Files are named by the map resource, a hash of the
+ * resource bytes and the subsampling step it was decoded at. Steps are
+ * powers of two, so a map only ever has a handful of entries however many
+ * sizes the window is shown at, and any change to a map image produces a
+ * new key and older entries for that map are removed when the new one is
+ * written.<p>
+ *
+ * Entries are memory-mapped when loaded and copied in one bulk read into an
+ * ordinary {@code TYPE_INT_RGB} or {@code TYPE_INT_ARGB} image, so a cache
+ * hit skips PNG inflate entirely and the result can still be accelerated by
+ * Java2D.
+ *
+ * @author aauyong
+ */
+final class MapCache {
+
+    /**
+     * A decoded map read back from the cache
+     *
+     * @param image Decoded map, backed by the mapped file
+     * @param srcSize Size of the full resolution map it was decoded from
+     */
+    record Entry(BufferedImage image, Dimension srcSize) {}
+
+    /**
+     * Constructor
+     * @param dir Directory to keep cache files in
+     */
+    MapCache(Path dir) {
+        this.dir = dir;
+    }
+
+    /** Cache kept under the tracker's app directory */
+    static MapCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Hashes the bytes of {@code resource}, used as part of the cache key.
+     *
+     * @param resource Map image resource
+     * @return Hex string of the SHA-256 of the resource
+     * @throws IOException if the resource can't be read
+     */
+    static String hash(URL resource) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        try (InputStream in = resource.openStream()) {
+            byte[] buf = new byte[1 << 16];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                md.update(buf, 0, n);
+            }
+        }
+
+        var sb = new StringBuilder();
+        for (byte b : md.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Loads the entry for {@code name} at subsampling {@code step}, if one
+     * was stored for the same resource {@code hash}.
+     *
+     * @param name Name of the map resource
+     * @param hash Hash of the map resource bytes
+     * @param step Subsampling step the map was decoded at
+     * @return The cached entry, or {@code null} on a miss or unreadable file
+     */
+    Entry load(String name, String hash, int step) {
+        Path p = pathFor(name, hash, step);
+        if (!Files.isRegularFile(p))
+            return null;
+
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            ByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            if (buf.remaining() < HEADER_BYTES || buf.getInt() != MAGIC
+                    || buf.getInt() != VERSION)
+                return null;
+
+            int w = buf.getInt();
+            int h = buf.getInt();
+            var src = new Dimension(buf.getInt(), buf.getInt());
+            boolean alpha = buf.getInt() != 0;
+            if ((long) w * h * Integer.BYTES != buf.remaining())
+                return null;
+
+            var img = new BufferedImage(w, h,
+                    alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            buf.slice().asIntBuffer()
+                .get(((DataBufferInt) img.getRaster().getDataBuffer()).getData());
+            return new Entry(img, src);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes {@code img} into the cache and deletes any entries for
+     * {@code name} that were made from a different resource hash.
+     *
+     * @param name Name of the map resource
+     * @param hash Hash of the map resource bytes
+     * @param step Subsampling step the map was decoded at
+     * @param img Decoded map
+     * @param srcSize Size of the full resolution map
+     * @throws IOException if the entry can't be written
+     */
+    void store(String name, String hash, int step, BufferedImage img,
+            Dimension srcSize) throws IOException {
+        Files.createDirectories(this.dir);
+        removeStale(name, hash);
+
+        int w = img.getWidth();
+        int h = img.getHeight();
+        int[] px = img.getRGB(0, 0, w, h, null, 0, w);
+
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + px.length * Integer.BYTES);
+        buf.putInt(MAGIC).putInt(VERSION)
+            .putInt(w).putInt(h)
+            .putInt(srcSize.width).putInt(srcSize.height)
+            .putInt(img.getColorModel().hasAlpha() ? 1 : 0);
+        buf.asIntBuffer().put(px);
+        buf.rewind();
+
+        Path p = pathFor(name, hash, step);
+        Path tmp = Files.createTempFile(this.dir, name, ".tmp");
+        try {
+            try (FileChannel fc = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (buf.hasRemaining()) {
+                    fc.write(buf);
+                }
+            }
+            Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // Gone already once moved, left behind if writing or moving failed
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    private Path pathFor(String name, String hash, int step) {
+        return this.dir.resolve(name + "-" + hash + "-" + step + EXT);
+    }
+
+    /** Deletes entries for {@code name} that weren't made from {@code hash} */
+    private void removeStale(String name, String hash) throws IOException {
+        String keep = name + "-" + hash + "-";
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(this.dir, name + "-*" + EXT)) {
+            for (Path p : ds) {
+                if (!p.getFileName().toString().startsWith(keep))
+                    Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    private static final MapCache DEFAULT =
+        new MapCache(EntranceRando.getAppDir().resolve("cache"));
+
+    /** "ERMC" */
+    private static final int MAGIC = 0x45524d43;
+
+    private static final int VERSION = 2;
+
+    /** magic, version, width, height, source width, source height, alpha */
+    private static final int HEADER_BYTES = 7 * Integer.BYTES;
+
+    private static final String EXT = ".raw";
+
+    private final Path dir;
+}
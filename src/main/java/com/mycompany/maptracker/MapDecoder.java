@@ -0,0 +1,218 @@
+package com.mycompany.maptracker;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * A decoder for a map image resource that decodes at the resolution the map
+ * will be shown at rather than the full size of the source.<p>
+ *
+ * Uses the {@code ImageReader} source subsampling parameters so that only
+ * every n-th row and column is kept while decoding. The subsampling factor is
+ * the largest power of two that keeps the decoded image at or above the
+ * requested width.<p>
+ *
+ * Decoded maps are kept in a {@code MapCache} by their subsampling factor,
+ * so a later decode of the same image for any width needing the same factor
+ * reads the cached pixels instead of inflating the PNG again.
+ *
+ * @author aauyong
+ */
+public class MapDecoder {
+
+    /**
+     * Constructor
+     * @param resource Location of the map image
+     */
+    public MapDecoder(URL resource) {
+        this(resource, MapCache.getDefault());
+    }
+
+    /**
+     * Constructor
+     * @param resource Location of the map image
+     * @param cache Cache of decoded maps, or {@code null} to always decode
+     */
+    MapDecoder(URL resource, MapCache cache) {
+        this.resource = resource;
+        this.cache = cache;
+    }
+
+    /**
+     * Gets the size of the full resolution map, reading only the image header
+     * the first time it is called.
+     *
+     * @return Full size of the source map
+     * @throws IOException if the header can't be read
+     */
+    public synchronized Dimension getSourceSize() throws IOException {
+        if (this.srcSize == null) {
+            try (ImageInputStream iis = openStream()) {
+                ImageReader reader = readerFor(iis);
+                try {
+                    this.srcSize = new Dimension(
+                        reader.getWidth(0), reader.getHeight(0));
+                } finally {
+                    reader.dispose();
+                }
+            }
+        }
+        return new Dimension(this.srcSize);
+    }
+
+    /**
+     * Decodes the map so that its width is at least {@code targetWidth},
+     * skipping rows and columns that wouldn't be shown at that size.<p>
+     *
+     * The {@code cache} is checked first, and on a miss the decoded map is
+     * written to it. Cache failures fall back to decoding.
+     *
+     * @param targetWidth Width the map will be displayed at
+     * @return Decoded map, never wider than the source
+     * @throws IOException if the image can't be read
+     */
+    public BufferedImage decode(int targetWidth) throws IOException {
+        if (this.cache == null || this.resource == null)
+            return decodeImage(targetWidth);
+
+        String name = resourceName();
+        String hash;
+        try {
+            hash = MapCache.hash(this.resource);
+        } catch (IOException e) {
+            return decodeImage(targetWidth);
+        }
+
+        int step = subsamplingFor(getSourceSize().width, targetWidth);
+        var hit = this.cache.load(name, hash, step);
+        if (hit != null)
+            return hit.image();
+
+        BufferedImage img = decodeImage(targetWidth);
+        try {
+            this.cache.store(name, hash, step, img, getSourceSize());
+        } catch (IOException e) {
+            System.out.println("Couldn't cache " + name + ": " + e.getMessage());
+        }
+        return img;
+    }
+
+    /**
+     * Calls {@code decode} on the shared decoding pool.
+     *
+     * @param targetWidth Width the map will be displayed at
+     * @return Future holding the decoded map
+     * @see #decode(int)
+     */
+    public CompletableFuture<BufferedImage> decodeAsync(int targetWidth) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return decode(targetWidth);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, DECODERS);
+    }
+
+    /**
+     * Largest power of two subsampling step that still keeps
+     * {@code srcSize / step} at or above {@code target}. Keeping to powers of
+     * two bounds how many decodes of a map are ever cached.
+     *
+     * @param srcSize Size of the source along one axis
+     * @param target Desired size along the same axis
+     * @return Step of at least 1
+     */
+    static int subsamplingFor(int srcSize, int target) {
+        if (target <= 0)
+            return 1;
+        return Integer.highestOneBit(Math.max(1, srcSize / target));
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /** Decodes the image itself, without going through the cache */
+    private BufferedImage decodeImage(int targetWidth) throws IOException {
+        try (ImageInputStream iis = openStream()) {
+            ImageReader reader = readerFor(iis);
+            try {
+                int w = reader.getWidth(0);
+                int h = reader.getHeight(0);
+                synchronized (this) {
+                    this.srcSize = new Dimension(w, h);
+                }
+
+                int step = subsamplingFor(w, targetWidth);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new java.awt.Rectangle(0, 0, w, h));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private ImageInputStream openStream() throws IOException {
+        if (this.resource == null)
+            throw new IOException("Map resource missing");
+
+        ImageInputStream iis = ImageIO.createImageInputStream(
+            this.resource.openStream());
+        if (iis == null)
+            throw new IOException("Can't open " + this.resource);
+        return iis;
+    }
+
+    /** File name of the resource without its extension, used as a cache key */
+    private String resourceName() {
+        String path = this.resource.getPath();
+        String file = path.substring(path.lastIndexOf('/') + 1);
+        int dot = file.lastIndexOf('.');
+        return dot > 0 ? file.substring(0, dot) : file;
+    }
+
+    private static ImageReader readerFor(ImageInputStream iis) throws IOException {
+        var it = ImageIO.getImageReaders(iis);
+        if (!it.hasNext())
+            throw new IOException("No image reader for map");
+
+        ImageReader reader = it.next();
+        reader.setInput(iis, true, true);
+        return reader;
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    /** Pool that map decodes run on, so both worlds can decode at once */
+    private static final ExecutorService DECODERS =
+        Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "map-decoder");
+            t.setDaemon(true);
+            return t;
+        });
+
+    /** Location of the map image */
+    private final URL resource;
+
+    /** Cache of decoded maps, {@code null} if caching is off */
+    private final MapCache cache;
+
+    /** Cached size of the full resolution map */
+    private Dimension srcSize;
+}
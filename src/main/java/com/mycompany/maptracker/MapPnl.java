@@ -5,6 +5,7 @@
 package com.mycompany.maptracker;
 
 import java.awt.Image;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -25,9 +26,30 @@ import javax.swing.JPanel;
 public class MapPnl extends JPanel {
 
     public MapPnl(Image map) {
+        this.settleTimer = new javax.swing.Timer(SETTLE_DELAY_MS, evt -> {
+            if (this.pyramid != null)
+                this.pyramid.requestExact(getWidth(), getHeight());
+            upgradeMapIfNeeded();
+        });
+        this.settleTimer.setRepeats(false);
+
         setMap(map);
         this.locations = new HashMap<>();
         this.setLayout(null);
+
+        if (USE_ENTRANCE_LAYER) {
+            this.entrLayer = new EntranceLayer();
+            this.add(this.entrLayer);
+        }
+        if (PaintProfiler.ENABLED && !USE_ENTRANCE_LAYER)
+            profileComponentHitTests();
+
+        addComponentListener(new java.awt.event.ComponentAdapter() {
+            @Override
+            public void componentResized(java.awt.event.ComponentEvent evt) {
+                settleTimer.restart();
+            }
+        });
     }
 
     /*===========================================================================
@@ -41,33 +63,73 @@ public class MapPnl extends JPanel {
     /*===========================================================================
     Public Methods
     ===========================================================================*/
+    /**
+     * Sets the background map. If {@code map} is a {@code BufferedImage}, a
+     * {@code MapPyramid} is started for it so that repaints blit a pre-scaled
+     * copy instead of rescaling the full size map.
+     *
+     * @param map Map to paint as the background
+     * @see MapPyramid
+     */
     public void setMap(Image map) {
         this.bg = map;
+        if (map != null)
+            this.mapDim = new java.awt.Dimension(map.getWidth(this), map.getHeight(this));
+        this.pyramid = map instanceof BufferedImage bi
+                ? new MapPyramid(bi, this::repaint)
+                : null;
+        this.settleTimer.restart();
+    }
+
+    /**
+     * Sets the background map to {@code map}, which was decoded by
+     * {@code decoder} at a possibly reduced resolution.<p>
+     *
+     * The size of the full resolution source is kept as the map dimension so
+     * that entrance coordinates are unaffected by the decode resolution. If
+     * the panel later grows beyond the decoded width, a larger decode is
+     * requested from {@code decoder}.
+     *
+     * @param decoder Decoder that produced {@code map}
+     * @param map Decoded map
+     * @throws IOException if the source size can't be read
+     * @see MapDecoder
+     */
+    public void setMap(MapDecoder decoder, BufferedImage map) throws IOException {
+        setMap(map);
+        this.decoder = decoder;
+        this.mapDim = decoder.getSourceSize();
     }
 
     /**
      * Override of paintComponent <p>
      *
      * Calls {@code super} paintComponent, and then draws the stored background
-     * image, {@code bg}, into the panel.<p>
+     * image, {@code bg}, into the panel. When a {@code pyramid} is available,
+     * the pre-scaled level closest to the panel size is drawn instead, which
+     * is an unscaled blit once the size has settled.<p>
      *
-     * A scale is then created that takes the scale of the current size of the
-     * panel to the size of the {@code bg} image. If this scale differs from
-     * {@code prevScale}, the scale used to paint the component previously, then
-     * the entrance locations are updated.
+     * Entrances are placed in {@code doLayout} rather than here, so painting
+     * never moves components. Until a map is set, a placeholder is painted.
      *
-     * @see updateEntrs
+     * @see #doLayout()
      */
     @Override
     public void paintComponent(java.awt.Graphics g) {
         super.paintComponents(g);
-        g.drawImage(this.bg, 0, 0, getWidth(), getHeight(), null);
-
-        double scale = (double)getWidth() / this.bg.getWidth(this);
+        if (this.bg == null) {
+            paintPlaceholder(g);
+            return;
+        }
 
-        if (prevScale != scale) {
-            updateEntrs(scale);
-            prevScale = scale;
+        if (this.pyramid != null) {
+            var lvl = this.pyramid.getLevel(getWidth(), getHeight());
+            if (lvl.getWidth() == getWidth() && lvl.getHeight() == getHeight())
+                g.drawImage(lvl, 0, 0, null);
+            else
+                g.drawImage(lvl, 0, 0, getWidth(), getHeight(), null);
+        } else {
+            g.drawImage(this.bg, 0, 0, getWidth(), getHeight(), null);
         }
     }
 
@@ -89,15 +151,48 @@ public class MapPnl extends JPanel {
      */
     public void addLoc(EntranceIcon e, String name) {
         locations.put(name, e);
-        this.add(e);
+        if (this.entrLayer != null)
+            this.entrLayer.add(e);
+        else
+            this.add(e);
+
+        // Place the new icon on the next layout even if the size is unchanged
+        this.prevScale = 0;
+        revalidate();
     }
 
     public Map<String, EntranceIcon> getLocations() {
         return this.locations;
     }
 
+    /**
+     * Gets the size of the full resolution map, which may be larger than the
+     * image that was decoded for display.
+     */
     public java.awt.Dimension getMapDim() {
-        return new java.awt.Dimension( this.bg.getWidth(this), this.bg.getHeight(this));
+        return new java.awt.Dimension(this.mapDim);
+    }
+
+    /**
+     * Sets the size of the full resolution map before the map itself is
+     * set, so that entrances can be placed while it is still loading.
+     * @param d Size of the full resolution map
+     */
+    public void setMapDim(java.awt.Dimension d) {
+        this.mapDim = new java.awt.Dimension(d);
+        this.prevScale = 0;
+        revalidate();
+    }
+
+    /**
+     * Sets the text shown in place of the map while there is none, such as
+     * while it is loading.
+     * @param text Text to show, or {@code null} for none
+     */
+    public void setPlaceholder(String text) {
+        this.placeholder = text;
+        if (this.bg == null)
+            repaint();
     }
 
     /**
@@ -109,31 +204,142 @@ public class MapPnl extends JPanel {
         for (var l : locations.values()) {
             l.setHidingVisibility(b);
         }
+        if (this.entrLayer != null)
+            this.entrLayer.refreshVisibility();
+    }
+
+    /**
+     * Override of doLayout <p>
+     *
+     * Keeps the {@code entrLayer}, if there is one, covering the panel. A
+     * scale is then created that takes the current size of the panel to the
+     * size of the map. If this scale differs from {@code prevScale}, the scale
+     * entrances were last placed at, then the entrance locations are updated.
+     *
+     * @see updateEntrs
+     */
+    @Override
+    public void doLayout() {
+        if (this.entrLayer != null)
+            this.entrLayer.setBounds(0, 0, getWidth(), getHeight());
+        if (this.mapDim == null)
+            return;
+
+        double scale = (double)getWidth() / this.mapDim.width;
+        if (prevScale != scale) {
+            updateEntrs(scale);
+            prevScale = scale;
+        }
+    }
+
+    /**
+     * Override of paintChildren, timing how long the entrances take to paint
+     * when profiling.
+     *
+     * @see PaintProfiler
+     */
+    @Override
+    protected void paintChildren(java.awt.Graphics g) {
+        if (!PaintProfiler.ENABLED) {
+            super.paintChildren(g);
+            return;
+        }
+        long start = System.nanoTime();
+        super.paintChildren(g);
+        PaintProfiler.record(this.entrLayer != null ? "layer children paint"
+                : "component icons paint", System.nanoTime() - start);
     }
 
     /*===========================================================================
     Private Methods
     ===========================================================================*/
+    /** Fills the panel and centers {@code placeholder} in it */
+    private void paintPlaceholder(java.awt.Graphics g) {
+        g.setColor(PLACEHOLDER_BG);
+        g.fillRect(0, 0, getWidth(), getHeight());
+        if (this.placeholder == null)
+            return;
+
+        var fm = g.getFontMetrics();
+        g.setColor(PLACEHOLDER_FG);
+        g.drawString(this.placeholder,
+                (getWidth() - fm.stringWidth(this.placeholder)) / 2,
+                (getHeight() + fm.getAscent()) / 2);
+    }
+
+    /**
+     * Requests a larger decode of the map if the panel has grown past the
+     * width {@code bg} was decoded at, and the source has more to offer.
+     */
+    private void upgradeMapIfNeeded() {
+        if (this.decoder == null || this.upgrading || this.bg == null)
+            return;
+
+        int decoded = this.bg.getWidth(this);
+        if (getWidth() <= decoded || decoded >= this.mapDim.width)
+            return;
+
+        this.upgrading = true;
+        var dec = this.decoder;
+        dec.decodeAsync(getWidth()).whenComplete((img, ex) ->
+            javax.swing.SwingUtilities.invokeLater(() -> {
+                this.upgrading = false;
+                if (ex != null || dec != this.decoder
+                        || img.getWidth() <= this.bg.getWidth(this))
+                    return;
+                try {
+                    setMap(dec, img);
+                } catch (IOException e) {
+                    System.out.println("Map upgrade failed");
+                }
+            })
+        );
+    }
+
+    /**
+     * Times the same deepest-component search Swing does to find the icon
+     * under a click, for comparison against {@code EntranceLayer.hitTest}.
+     */
+    private void profileComponentHitTests() {
+        java.awt.Toolkit.getDefaultToolkit().addAWTEventListener(evt -> {
+            var me = (java.awt.event.MouseEvent) evt;
+            if (me.getID() != java.awt.event.MouseEvent.MOUSE_PRESSED
+                    || !javax.swing.SwingUtilities.isDescendingFrom(me.getComponent(), this))
+                return;
+
+            var p = javax.swing.SwingUtilities.convertPoint(me.getComponent(), me.getPoint(), this);
+            long start = System.nanoTime();
+            javax.swing.SwingUtilities.getDeepestComponentAt(this, p.x, p.y);
+            PaintProfiler.record("component hit-test", System.nanoTime() - start);
+        }, java.awt.AWTEvent.MOUSE_EVENT_MASK);
+    }
+
     /**
      * Update the placement of the Entrances <p>
      *
      * Iterates through each Entrance in the panel and sets its bounds at
      * the coordinate point that it stores. This point is scaled to the
-     * coordinate space of the panel.<p>
+     * coordinate space of the panel. The icon size is computed once for the
+     * whole panel rather than per icon.<p>
      *
      * If the panel is set to hide useless points, then those points are skipped
      * over.
      * @param scale scale of panel space to the coordinate space
      */
     private void updateEntrs(double scale) {
+        if (this.entrLayer != null) {
+            this.entrLayer.setScale(scale);
+            return;
+        }
+
+        int size = EntranceIcon.sizeFor(getWidth());
         for (var l : locations.values()) {
             var p = l.getPt();
-            java.awt.Point newP = new java.awt.Point(
+            l.setBounds(
                 (int)( (double) p.x * scale),
-                (int)( (double) p.y * scale)
+                (int)( (double) p.y * scale),
+                size, size
             );
-
-            l.setBounds(new java.awt.Rectangle(newP, l.getPreferredSize()));
         }
     }
 
@@ -145,18 +351,57 @@ public class MapPnl extends JPanel {
      */
     private Image bg;
 
+    /** Text painted while there is no {@code bg} */
+    private String placeholder;
+
+    private static final java.awt.Color PLACEHOLDER_BG = new java.awt.Color(40, 40, 40);
+
+    private static final java.awt.Color PLACEHOLDER_FG = java.awt.Color.LIGHT_GRAY;
+
+    /** Size of the full resolution map that {@code bg} was decoded from */
+    private java.awt.Dimension mapDim;
+
+    /** Decoder for {@code bg}, used to decode larger when the panel grows */
+    private MapDecoder decoder;
+
+    /** Whether a larger decode of the map is in flight */
+    private boolean upgrading;
+
+    /** Pre-scaled copies of {@code bg}, {@code null} if it isn't buffered */
+    private MapPyramid pyramid;
+
+    /**
+     * Fires once the panel has stopped resizing, to build the exact size
+     * level of the {@code pyramid}
+     */
+    private final javax.swing.Timer settleTimer;
+
+    /** Delay after the last resize before the size is considered settled */
+    private static final int SETTLE_DELAY_MS = 150;
+
     /**
      * Default width/height of the panel
      */
     public static final int DEFAULT_SIZE = 800;
 
+    /**
+     * Whether entrances are painted by a single {@code EntranceLayer} rather
+     * than each {@code EntranceIcon} being added as a component. Set with the
+     * {@code entrancerando.entranceLayer} system property.
+     */
+    public static final boolean USE_ENTRANCE_LAYER =
+        Boolean.getBoolean("entrancerando.entranceLayer");
+
+    /** Layer painting the entrances, {@code null} in component mode */
+    private EntranceLayer entrLayer;
+
     /**
      * Map of Entrances, keyed by name
      */
     private HashMap<String, EntranceIcon> locations;
 
     /**
-     * Cache of previous scale used for painting
+     * Cache of previous scale the entrances were placed at
      */
     private double prevScale;
 }
@@ -0,0 +1,181 @@
+package com.mycompany.maptracker;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * A mip-style pyramid of pre-scaled copies of a map image.<p>
+ *
+ * Level 0 is the source image, and each following level is half the size of
+ * the one before it, down to {@code MIN_LEVEL_SIZE}. On top of the levels, a
+ * single {@code exact} image can be built at the size a {@code MapPnl} has
+ * settled on, so that painting at that size is an unscaled blit.<p>
+ *
+ * All scaling is done on a shared background thread. Until a level is ready
+ * the closest finished level is handed out instead, and {@code onUpdate} is
+ * called on the EDT whenever a new image becomes available.
+ *
+ * @author aauyong
+ */
+class MapPyramid {
+
+    /**
+     * Constructor. Starts building the halving levels off the EDT.
+     *
+     * @param src Full size source image, level 0
+     * @param onUpdate Called on the EDT when a level or exact image is ready
+     */
+    MapPyramid(BufferedImage src, Runnable onUpdate) {
+        this.onUpdate = onUpdate;
+        this.levels = new BufferedImage[]{ src };
+        this.exactGen = new AtomicInteger();
+
+        SCALER.execute(this::buildLevels);
+    }
+
+    /**
+     * Gets the image that should be drawn for a panel of size {@code w} by
+     * {@code h}.<p>
+     *
+     * If the {@code exact} image matches the size, it is returned as is.
+     * Otherwise the smallest level that is still at least as large as the
+     * requested size is returned, falling back to the largest level.
+     *
+     * @param w Width of the panel
+     * @param h Height of the panel
+     * @return Image to blit into the panel
+     */
+    BufferedImage getLevel(int w, int h) {
+        BufferedImage e = this.exact;
+        if (e != null && e.getWidth() == w && e.getHeight() == h)
+            return e;
+
+        return nearestLevel(w, h);
+    }
+
+    /**
+     * Schedules a build of the {@code exact} image at {@code w} by {@code h}.
+     * Any build that is still queued for an older size is dropped.
+     *
+     * @param w Width of the panel
+     * @param h Height of the panel
+     */
+    void requestExact(int w, int h) {
+        if (w <= 0 || h <= 0)
+            return;
+
+        BufferedImage e = this.exact;
+        if (e != null && e.getWidth() == w && e.getHeight() == h)
+            return;
+
+        int gen = this.exactGen.incrementAndGet();
+        SCALER.execute(() -> {
+            if (gen != this.exactGen.get())
+                return;
+
+            var scaled = scale(nearestLevel(w, h), w, h);
+            if (gen == this.exactGen.get()) {
+                this.exact = scaled;
+                SwingUtilities.invokeLater(this.onUpdate);
+            }
+        });
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /**
+     * Smallest level whose size is at least {@code w} by {@code h}, or the
+     * source if none of the smaller levels are big enough.
+     */
+    private BufferedImage nearestLevel(int w, int h) {
+        BufferedImage[] lvls = this.levels;
+        for (int i = lvls.length - 1; i > 0; i--) {
+            if (lvls[i].getWidth() >= w && lvls[i].getHeight() >= h)
+                return lvls[i];
+        }
+        return lvls[0];
+    }
+
+    /**
+     * Builds each halving level from the one before it, publishing the levels
+     * as they complete.
+     */
+    private void buildLevels() {
+        BufferedImage prev = this.levels[0];
+        int count = 1;
+        for (int w = prev.getWidth() / 2, h = prev.getHeight() / 2;
+                w >= MIN_LEVEL_SIZE && h >= MIN_LEVEL_SIZE;
+                w /= 2, h /= 2) {
+            count++;
+        }
+
+        var built = new BufferedImage[count];
+        built[0] = prev;
+        for (int i = 1; i < count; i++) {
+            prev = scale(prev, prev.getWidth() / 2, prev.getHeight() / 2);
+            built[i] = prev;
+
+            var published = new BufferedImage[i + 1];
+            System.arraycopy(built, 0, published, 0, i + 1);
+            this.levels = published;
+        }
+        SwingUtilities.invokeLater(this.onUpdate);
+    }
+
+    /**
+     * Scales {@code src} into a new image of {@code w} by {@code h} using
+     * bilinear interpolation.
+     */
+    private static BufferedImage scale(BufferedImage src, int w, int h) {
+        int type = src.getTransparency() == Transparency.OPAQUE
+                ? BufferedImage.TYPE_INT_RGB
+                : BufferedImage.TYPE_INT_ARGB;
+
+        var dst = new BufferedImage(w, h, type);
+        Graphics2D g2 = dst.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.setRenderingHint(RenderingHints.KEY_RENDERING,
+                RenderingHints.VALUE_RENDER_QUALITY);
+        g2.drawImage(src, 0, 0, w, h, null);
+        g2.dispose();
+        return dst;
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    /** Smallest width/height a halving level is allowed to have */
+    private static final int MIN_LEVEL_SIZE = 128;
+
+    /** Shared background thread that all pyramids scale on */
+    private static final ExecutorService SCALER =
+        Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "map-scaler");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+
+    /** Callback for when a new image is available */
+    private final Runnable onUpdate;
+
+    /** Halving levels, index 0 being the source image */
+    private volatile BufferedImage[] levels;
+
+    /** Image scaled to the exact size last requested */
+    private volatile BufferedImage exact;
+
+    /** Generation of the latest exact request, used to drop stale builds */
+    private final AtomicInteger exactGen;
+}
@@ -5,32 +5,37 @@
 package com.mycompany.maptracker;
 
 import java.awt.Dimension;
-import java.io.IOException;
-import java.net.URISyntaxException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.awt.image.BufferedImage;
 
 import java.util.Map;
 import java.util.HashMap;
 
-import javax.imageio.ImageIO;
 import javax.swing.JPanel;
 import javax.swing.JLayeredPane;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mycompany.entrancerando.SettingsHandler.Grouping;
+import com.mycompany.entrances.CompletionSampler;
+import com.mycompany.entrances.ConnectionHandler;
+import com.mycompany.entrances.DeductionEngine;
 import com.mycompany.entrances.EntranceGroup;
 import com.mycompany.entrances.EntranceIcon;
+import com.mycompany.entrances.ReachabilityEngine;
+import com.mycompany.entrances.RouteFinder;
+import com.mycompany.entrances.TrackerState;
+import com.mycompany.locationdata.LocationCatalog;
+import com.mycompany.locationdata.ResourceLoader;
 import com.mycompany.entrancerando.SettingsHandler;
 
 /**
  * A Container for the Map Tracker, which is composed of two
  * MapBgPnls that track locations and icons.
  *
+ * The tracker starts out with placeholder maps and no entrances, so it can be
+ * shown straight away. The maps and entrances are filled in with
+ * {@code setMap} and {@code addEntrances} once they have loaded.
  *
  * @author blarg
+ * @see com.mycompany.entrancerando.StartupPipeline
  */
 public class MapTracker extends JLayeredPane {
 
@@ -39,7 +44,6 @@ public class MapTracker extends JLayeredPane {
 
         initComponents();
         initMapsPnl();
-        readAndAddEntrs();
 
         this.setLayout(new javax.swing.OverlayLayout(this));
 
@@ -69,30 +73,24 @@ public class MapTracker extends JLayeredPane {
      * by other elements, {@code otherMinSize} from the size of the current
      * window.
      *
-     * Maintains a rectangle, 2:1 if horizontal or 1:2 if vertical
+     * Maintains a rectangle, 2:1 if horizontal or 1:2 if vertical. The maps
+     * are horizontal unless the space is taller than it is wide, by the same
+     * rule as {@code MapTrackerLayout}, which arranges them once the size is
+     * applied.
      *
      * If the dimension would {@code <= 0}, then the {@code DEFAUlT_SIZE} is used.
      *
-     * @see {@code horzOrntn}
-     * @see {@code changeOrient}
      * @see {@code otherMinSize}
      * @see {@code setOtherMinSize}
      * @see {@code this.DEFAULT_SIZE}
+     * @see MapTrackerLayout
      */
     @Override
     public Dimension getPreferredSize() {
         Dimension d = this.getParent().getSize();
         d.height -= otherMinSize.height;
 
-        if (d.width > 0
-                && horzOrntn
-                && d.width < MapPnl.DEFAULT_SIZE * 2) {
-            this.horzOrntn = false;
-            changeOrient();
-        } else if (!horzOrntn && d.width >= MapPnl.DEFAULT_SIZE * 2) {
-            this.horzOrntn = true;
-            changeOrient();
-        }
+        boolean horzOrntn = d.width <= 0 || MapTrackerLayout.isHorizontal(d);
 
         int prio, other;
         int x = 1, y = 1;
@@ -121,6 +119,191 @@ public class MapTracker extends JLayeredPane {
         return entrances;
     }
 
+    /**
+     * Creates a decoder for the map of the light or dark world. Maps come
+     * from a pack if one replaces them.
+     *
+     * @param lightWorld Whether to decode the light world map
+     * @see ResourceLoader
+     */
+    public static MapDecoder createDecoder(boolean lightWorld) {
+        return new MapDecoder(ResourceLoader.find(
+                lightWorld ? LIGHT_MAP_RESOURCE : DARK_MAP_RESOURCE));
+    }
+
+    /**
+     * Replaces the placeholder of the light or dark world with {@code map}.
+     *
+     * @param lightWorld Whether {@code map} is of the light world
+     * @param decoder Decoder that produced {@code map}, used for larger
+     * decodes later
+     * @param map Decoded map, or {@code null} if decoding failed
+     */
+    public void setMap(boolean lightWorld, MapDecoder decoder, BufferedImage map) {
+        MapPnl pnl = lightWorld ? this.light : this.dark;
+        try {
+            if (map == null)
+                throw new java.io.IOException("not decoded");
+            pnl.setMap(decoder, map);
+        } catch (java.io.IOException e) {
+            pnl.setPlaceholder(MISSING_TEXT);
+            System.out.println((lightWorld ? "Light" : "Dark") + " world map missing");
+        }
+    }
+
+    /**
+     * Adds an {@code EntranceIcon} for every location in {@code cat} and
+     * groups them, placing them on maps of size {@code lightDim} and
+     * {@code darkDim}. Can be called before the maps themselves are set.
+     *
+     * @param cat Catalog of locations and groups
+     * @param lightDim Size of the full resolution light world map
+     * @param darkDim Size of the full resolution dark world map
+     */
+    public void addEntrances(LocationCatalog cat, Dimension lightDim, Dimension darkDim) {
+        this.light.setMapDim(lightDim);
+        this.dark.setMapDim(darkDim);
+        this.trackerState = TrackerState.fromCatalog(cat);
+        EntranceIcon.bindViews(this.trackerState);
+        ConnectionHandler.attach(this.trackerState);
+        int start = this.trackerState.indexOf(START_ENTRANCE);
+        if (start != TrackerState.NONE)
+            this.reachability = new ReachabilityEngine(this.trackerState, start);
+        this.routeFinder = new RouteFinder(this.trackerState);
+        this.deduction = new DeductionEngine(this.trackerState);
+        this.sampler = new CompletionSampler(this.trackerState);
+        readAndAddEntrs(cat);
+        shadeUnreachable();
+        startAnalysis();
+    }
+
+    /**
+     * Getter for the state the entrances are views of, {@code null} until
+     * they are added
+     */
+    public TrackerState<EntranceIcon, EntranceGroup> getTrackerState() {
+        return this.trackerState;
+    }
+
+    /**
+     * Dims every entrance that {@code e} can't be connected to right now, as
+     * given by {@code ConnectionHandler.legalTargets}. If sampling has caught
+     * up with the connections, the rest are tinted by how likely {@code e} is
+     * to lead to them, relative to the likeliest, and are tinted again when
+     * newer samples come in while {@code e} is still armed.
+     * @param e The armed entrance
+     */
+    public void showLegalTargets(EntranceIcon e) {
+        if (this.trackerState == null)
+            return;
+        this.armed = e;
+        long start = PaintProfiler.ENABLED ? System.nanoTime() : 0;
+
+        long[] targets = ConnectionHandler.legalTargets(e);
+        var est = this.estimate;
+        boolean heat = est != null && est.samples() > 0
+                && est.epoch() == this.trackerState.getConnectionEpoch()
+                && est.grouping() == ConnectionHandler.getGroupSettings();
+        double max = heat ? est.maxProbability(e.getId()) : 0;
+        for (int i = 0; i < this.trackerState.size(); i++) {
+            var icon = this.trackerState.getView(i);
+            if (icon == null)
+                continue;
+            boolean legal = (targets[i >>> 6] & (1L << i)) != 0;
+            icon.setDimmed(!legal);
+            icon.setHeat(legal && max > 0
+                    ? (float) (est.probability(e.getId(), i) / max)
+                    : EntranceIcon.NO_HEAT);
+        }
+
+        if (PaintProfiler.ENABLED)
+            PaintProfiler.record("legal targets", System.nanoTime() - start);
+    }
+
+    /**
+     * Shades every entrance that can't be reached from {@code START_ENTRANCE}
+     * with the connections made so far, and unshades the rest.
+     */
+    public void shadeUnreachable() {
+        if (this.reachability == null)
+            return;
+        long start = PaintProfiler.ENABLED ? System.nanoTime() : 0;
+
+        long[] reachable = this.reachability.getReachable();
+        for (int i = 0; i < this.trackerState.size(); i++) {
+            var icon = this.trackerState.getView(i);
+            if (icon != null)
+                icon.setUnreachable((reachable[i >>> 6] & (1L << i)) == 0);
+        }
+
+        if (PaintProfiler.ENABLED)
+            PaintProfiler.record("reachability", System.nanoTime() - start);
+    }
+
+    /**
+     * Marks the shortest route from {@code from} to {@code to} on both maps,
+     * replacing any route shown before.
+     * @return {@code false} if there is no route, in which case only
+     * {@code from} is marked
+     */
+    public boolean showRoute(EntranceIcon from, EntranceIcon to) {
+        if (this.routeFinder == null)
+            return false;
+        long start = PaintProfiler.ENABLED ? System.nanoTime() : 0;
+
+        int[] route = this.routeFinder.route(from.getId(), to.getId());
+        clearRoute();
+        if (route == null) {
+            from.setRouteStep(1);
+        } else {
+            for (int k = 0; k < route.length; k++) {
+                this.trackerState.getView(route[k]).setRouteStep(k + 1);
+            }
+        }
+
+        if (PaintProfiler.ENABLED)
+            PaintProfiler.record("route", System.nanoTime() - start);
+        return route != null;
+    }
+
+    /** Removes the route marked by {@code showRoute} */
+    public void clearRoute() {
+        if (this.trackerState == null)
+            return;
+        for (int i = 0; i < this.trackerState.size(); i++) {
+            var icon = this.trackerState.getView(i);
+            if (icon != null)
+                icon.setRouteStep(EntranceIcon.NOT_ON_ROUTE);
+        }
+    }
+
+    /**
+     * Starts deducing forced and impossible connections and sampling where
+     * the rest lead in the background, cancelling any still running.
+     * Entrances are given hints once the deduction is done, and the samples
+     * are used by {@code showLegalTargets} once they are.
+     */
+    public void startAnalysis() {
+        if (this.deduction == null)
+            return;
+        this.deduction.request(this::showDeduction);
+        this.sampler.request(SAMPLES, this::showEstimate);
+    }
+
+    /** Undoes {@code showLegalTargets}, no entrance is dimmed */
+    public void clearLegalTargets() {
+        if (this.trackerState == null)
+            return;
+        this.armed = null;
+        for (int i = 0; i < this.trackerState.size(); i++) {
+            var icon = this.trackerState.getView(i);
+            if (icon != null) {
+                icon.setDimmed(false);
+                icon.setHeat(EntranceIcon.NO_HEAT);
+            }
+        }
+    }
+
     /**
      * Sets whether or not the {@code MapTracker} will hide
      * {@code USELESS EntranceIcons}.<p>
@@ -141,11 +324,44 @@ public class MapTracker extends JLayeredPane {
      * =============================================================================
      */
 
+    /**
+     * Keeps the samples for {@code showLegalTargets}, and tints the targets
+     * of the armed entrance with them if there is one
+     */
+    private void showEstimate(CompletionSampler.Estimate est) {
+        this.estimate = est;
+        if (PaintProfiler.ENABLED)
+            PaintProfiler.count("completions sampled per second", (long) est.samplesPerSecond());
+        if (this.armed != null)
+            showLegalTargets(this.armed);
+    }
+
+    /** Gives every entrance the hint {@code r} has for it */
+    private void showDeduction(DeductionEngine.Result r) {
+        int[] hints = new int[this.trackerState.size()];
+        int[] partners = new int[hints.length];
+        for (int k = 0; k < r.forced().length; k += 2) {
+            int a = r.forced()[k];
+            int b = r.forced()[k + 1];
+            hints[a] = hints[b] = EntranceIcon.HINT_FORCED;
+            partners[a] = b;
+            partners[b] = a;
+        }
+        for (int a : r.impossible()) {
+            hints[a] = EntranceIcon.HINT_IMPOSSIBLE;
+        }
+        for (int i = 0; i < hints.length; i++) {
+            var icon = this.trackerState.getView(i);
+            if (icon != null)
+                icon.setHint(hints[i], this.trackerState.getView(partners[i]));
+        }
+    }
+
     /**
      * Initialize the components in memory
      */
     private final void initComponents() {
-        this.mapsPnl = new JPanel(new java.awt.GridBagLayout());
+        this.mapsPnl = new JPanel(null);
 
         this.light = new MapPnl();
         this.dark = new MapPnl();
@@ -160,78 +376,25 @@ public class MapTracker extends JLayeredPane {
      * Initiation of the two background panels for the {@code light} world and
      * {@code dark} world.
      *
-     * Sets the map for each {@code mapBgPnl} and places it in the layout.
+     * Places each {@code mapBgPnl} in the layout with a placeholder until its
+     * map is set.
      *
      * @see {@code mapBgPnl}
+     * @see #setMap(boolean, MapDecoder, BufferedImage)
      */
     private void initMapsPnl() {
-        try {
-            this.light.setMap(ImageIO.read(
-                    this.getClass().getResource("/maps/light_world.png")));
-        } catch (java.io.IOException e) {
-            this.light = null;
-            System.out.println("Light world map missing");
-        }
+        this.light.setPlaceholder(LOADING_TEXT);
+        this.dark.setPlaceholder(LOADING_TEXT);
 
-        try {
-            this.dark.setMap(ImageIO.read(
-                    this.getClass().getResource("/maps/dark_world.png")));
-        } catch (java.io.IOException e) {
-            this.dark = null;
-            System.out.println("Dark world map missing");
-        }
-        this.mapsPnl.setLayout(new java.awt.GridBagLayout());
-
-        this.mapsPnl.add(this.light, new java.awt.GridBagConstraints() {
-            {
-                anchor = java.awt.GridBagConstraints.NORTHEAST;
-                fill = java.awt.GridBagConstraints.BOTH;
-                weightx = 1;
-                weighty = 1;
-            }
-        });
-
-        this.mapsPnl.add(this.dark, new java.awt.GridBagConstraints() {
-            {
-                gridx = 1;
-                anchor = java.awt.GridBagConstraints.NORTHWEST;
-                fill = java.awt.GridBagConstraints.BOTH;
-                weightx = 1;
-                weighty = 1;
-            }
-        });
+        this.mapsPnl.setLayout(new MapTrackerLayout(this.light, this.dark));
+        this.mapsPnl.add(this.light);
+        this.mapsPnl.add(this.dark);
     }
 
     /**
-     * Changes the orientation of the layout of the BG panels, flipping from
-     * vertical to horizontal or vice versa, updates {@code horzOrntn}.
+     * Reads and adds entrances from the {@code LocationCatalog}.<p>
      *
-     * This is done by removing the {@code dark} map panel and then re-adding it
-     * into the second row.
-     */
-    private void changeOrient() {
-        this.mapsPnl.getLayout().removeLayoutComponent(this.dark);
-        this.mapsPnl.add(this.dark, new java.awt.GridBagConstraints() {
-            {
-                gridx = horzOrntn ? 1 : 0;
-                gridy = !horzOrntn ? 1 : 0;
-                anchor = java.awt.GridBagConstraints.NORTHWEST;
-                fill = java.awt.GridBagConstraints.BOTH;
-                weightx = 1;
-                weighty = 1;
-            }
-        });
-        revalidate();
-        repaint();
-    }
-
-    /**
-     * Reads and adds entrances from the locations JSON file.<p>
-     *
-     * Locations are read into a Jackson {@code JsonNode}, and then parsed to
-     * gather the data about each possible entrance detailed in the file.<p>
-     *
-     * Each node is expected to at least contain:
+     * Each location in the catalog has at least:
      * <ul>
      *  <li> x coordinate : X position on a 4096pix map
      *  <li> y coordinate : Y position on a 4096pix map
@@ -244,28 +407,20 @@ public class MapTracker extends JLayeredPane {
      * passed to the proper map panel based on its {@code world} setting.
      *
      * @see EntranceIcon
-     * @see JsonNode
-     * @see ObjectMapper
+     * @see LocationCatalog
      */
-    private void readAndAddEntrs() {
-        var jn = readJson("/locationdata/locations.json");
-        var it = jn.fieldNames();
-        while (it.hasNext()) {
-            String name = it.next();
-
-            var node = jn.get(name);
-            boolean inLWorld = node.get("world").asText().equals("light");
+    private void readAndAddEntrs(LocationCatalog cat) {
+        for (int i = 0; i < cat.size(); i++) {
+            String name = cat.name(i);
+            MapPnl pnl = cat.isLightWorld(i) ? this.light : this.dark;
             var e = new EntranceIcon(
-                    node.get("x").asInt(),
-                    node.get("y").asInt(),
-                    node.get("type") != null ? node.get("type").asText() : "",
-                    name,
-                    (double) this.light.getMapDim().width / DEFAULT_SIZE,
-                    inLWorld);
-            if (node.get("world").asText().equals("light") )
-                this.light.addLoc(e, name);
-            else
-                this.dark.addLoc(e, name);
+                    this.trackerState,
+                    i,
+                    cat.x(i),
+                    cat.y(i),
+                    cat.type(i),
+                    (double) pnl.getMapDim().width / DEFAULT_SIZE);
+            pnl.addLoc(e, name);
 
             this.entrances.put(name, e);
         }
@@ -273,64 +428,16 @@ public class MapTracker extends JLayeredPane {
     }
 
     /**
-     * Following a grouping JSON file, organize all previously read
-     * {@code EntranceIcon} into a mapping by the group name and assign the
-     * group name to each icon for later use.
-     *
-     * Reading the JSON, {@code EntranceGroup}s are keyed into
-     * {@code this.entranceGroups} by their name. The JSON is structured as a
-     * grouping of names of {@code EntranceIcon}s in the group and a type and
-     * direction.
-     *
-     * The directino is read and used to add the {@code EntranceIcon} to the group
+     * Creates an {@code EntranceGroup} view for each group of the
+     * {@code trackerState}, keyed into {@code this.entranceGroups} by name.
+     * Membership itself is kept by the state.
      */
     private void organizeEntranceGroups() {
-        var jn = readJson("/locationdata/groups.json");
-        var jnIt = jn.fieldNames();
-        while (jnIt.hasNext()) {
-            String groupName = jnIt.next();
-            var groupIt = jn.get(groupName).fieldNames();
-            EntranceGroup group = new EntranceGroup(groupName);
-            while( groupIt.hasNext() ) {
-                String entrName = groupIt.next();
-                EntranceIcon ei = this.entrances.get(entrName);
-
-                String dir =  jn.get(groupName).get(entrName).get("direction").asText();
-                if (dir.equals("null"))
-                    group.add(ei);
-                else
-                    group.add(ei, dir);
-
-                ei.setGroup(group);
-            }
-            this.entranceGroups.put(groupName, group);
+        for (int g = 0; g < this.trackerState.groupCount(); g++) {
+            EntranceGroup group = new EntranceGroup(this.trackerState, g);
+            this.entranceGroups.put(group.getGroupName(), group);
         }
     }
-
-    /**
-     * Reads a JSON file located at {@code path}.
-     * @param path Relative resource path
-     * @return {@code JsonNode} created from reading the file. {@code null} if
-     * there is any reading errors
-     */
-    private JsonNode readJson(String resourcePath) {
-        Path p;
-        try {
-            p = Paths.get(getClass().getResource(resourcePath).toURI());
-        } catch (URISyntaxException e) {
-            return null;
-        }
-
-        JsonNode jn = null;
-        try {
-            byte[] mapData = Files.readAllBytes(p);
-            ObjectMapper objectMapper = new ObjectMapper();
-            jn = objectMapper.readTree(mapData);
-        } catch (IOException e) {
-            return null;
-        }
-        return jn;
-    }
     // -----------------------------------------------------------------------------------
 
     /*
@@ -345,6 +452,23 @@ public class MapTracker extends JLayeredPane {
      */
     public final static int DEFAULT_SIZE = 600;
 
+    /** Completions sampled after each change, {@code -Dentrancerando.samples} */
+    private static final int SAMPLES =
+        Math.max(1, Integer.getInteger("entrancerando.samples", 4000));
+
+    /** Entrance that reachability is measured from */
+    private static final String START_ENTRANCE = "Links House";
+
+    private static final String LIGHT_MAP_RESOURCE = "maps/light_world.png";
+
+    private static final String DARK_MAP_RESOURCE = "maps/dark_world.png";
+
+    /** Shown in place of a map that is still loading */
+    private static final String LOADING_TEXT = "Loading map\u2026";
+
+    /** Shown in place of a map that couldn't be loaded */
+    private static final String MISSING_TEXT = "Map missing";
+
     private JPanel mapsPnl;
 
     /**
@@ -355,11 +479,6 @@ public class MapTracker extends JLayeredPane {
     /** Custom Panel containing the right/bot map */
     private MapPnl dark;
 
-    /**
-     * Whether Orientation of the panel should be horizontal or not
-     */
-    private boolean horzOrntn = true;
-
     /**
      * Dimension that stores the minimum size of other elements in the window
      * Used to calculate the preferred size of the component
@@ -368,6 +487,38 @@ public class MapTracker extends JLayeredPane {
 
     private Map<String, EntranceIcon> entrances;
 
+    /** State of every entrance and group, viewed by the icons */
+    private TrackerState<EntranceIcon, EntranceGroup> trackerState;
+
+    /**
+     * What can be reached from {@code START_ENTRANCE}, {@code null} until
+     * entrances are added or if there is no such entrance
+     */
+    private ReachabilityEngine reachability;
+
+    /** Routes between entrances, {@code null} until entrances are added */
+    private RouteFinder routeFinder;
+
+    /**
+     * Deduces forced and impossible connections, {@code null} until
+     * entrances are added
+     */
+    private DeductionEngine deduction;
+
+    /**
+     * Samples where unconnected entrances lead, {@code null} until entrances
+     * are added
+     */
+    private CompletionSampler sampler;
+
+    /** Latest result of {@code sampler}, {@code null} until there is one */
+    private CompletionSampler.Estimate estimate;
+
+    /**
+     * Entrance whose legal targets are shown, {@code null} if they aren't
+     */
+    private EntranceIcon armed;
+
     /**
      * a mapping of each group to its corresponding elements.
      */
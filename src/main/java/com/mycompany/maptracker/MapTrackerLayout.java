@@ -0,0 +1,138 @@
+package com.mycompany.maptracker;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.LayoutManager;
+
+/**
+ * Lays out the {@code light} and {@code dark} map panels of a
+ * {@code MapTracker} as two squares, side by side when the space is wider
+ * than it is tall and stacked otherwise.<p>
+ *
+ * While the window is being dragged, layouts for a new container size are
+ * limited to one per {@code FRAME_MS}; a layout requested sooner is deferred
+ * until the frame is up, so only the latest size gets applied. A layout at
+ * the size already laid out, such as after a child is swapped or revalidated,
+ * runs straight away.<p>
+ *
+ * The preferred size is oriented by the same rule as the layout, so a
+ * container given its preferred size is laid out the way it asked for.
+ *
+ * @author aauyong
+ */
+class MapTrackerLayout implements LayoutManager {
+
+    /**
+     * Constructor
+     * @param light Panel placed left or top
+     * @param dark Panel placed right or bottom
+     */
+    MapTrackerLayout(Component light, Component dark) {
+        this.light = light;
+        this.dark = dark;
+        this.lastLayoutNanos = 0;
+    }
+
+    @Override
+    public void layoutContainer(Container parent) {
+        Dimension d = parent.getSize();
+        long now = System.nanoTime();
+        if (!d.equals(this.laidOutSize)) {
+            if (this.laidOutSize != null && now - this.lastLayoutNanos < FRAME_NANOS) {
+                deferLayout(parent);
+                return;
+            }
+            this.lastLayoutNanos = now;
+            this.laidOutSize = d;
+        }
+
+        boolean horizontal = isHorizontal(d);
+        int side = horizontal
+                ? Math.min(d.width / 2, d.height)
+                : Math.min(d.width, d.height / 2);
+
+        if (this.light != null)
+            this.light.setBounds(0, 0, side, side);
+        if (this.dark != null) {
+            if (horizontal)
+                this.dark.setBounds(side, 0, side, side);
+            else
+                this.dark.setBounds(0, side, side, side);
+        }
+    }
+
+    /**
+     * Two maps of {@code MapPnl.DEFAULT_SIZE}, side by side unless
+     * {@code parent} is already taller than it is wide.
+     */
+    @Override
+    public Dimension preferredLayoutSize(Container parent) {
+        return isHorizontal(parent.getSize())
+                ? new Dimension(MapPnl.DEFAULT_SIZE * 2, MapPnl.DEFAULT_SIZE)
+                : new Dimension(MapPnl.DEFAULT_SIZE, MapPnl.DEFAULT_SIZE * 2);
+    }
+
+    @Override
+    public Dimension minimumLayoutSize(Container parent) {
+        return new Dimension(0, 0);
+    }
+
+    @Override
+    public void addLayoutComponent(String name, Component comp) {}
+
+    @Override
+    public void removeLayoutComponent(Component comp) {}
+
+    /**
+     * Whether the maps go side by side in a space of size {@code d}, which
+     * they do until it is taller than it is wide. Shared with
+     * {@code MapTracker.getPreferredSize}, so both orient the maps alike.
+     */
+    static boolean isHorizontal(Dimension d) {
+        return d.width >= d.height;
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /**
+     * Runs the layout again once the current frame is over, replacing any
+     * deferred layout that is still pending.
+     */
+    private void deferLayout(Container parent) {
+        if (this.deferred == null) {
+            this.deferred = new javax.swing.Timer(FRAME_MS, evt -> {
+                this.lastLayoutNanos = 0;
+                parent.invalidate();
+                parent.validate();
+                parent.repaint();
+            });
+            this.deferred.setRepeats(false);
+        }
+        this.deferred.restart();
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    /** Shortest time between two layouts, about one frame at 60Hz */
+    private static final int FRAME_MS = 16;
+
+    private static final long FRAME_NANOS = FRAME_MS * 1_000_000L;
+
+    private final Component light;
+
+    private final Component dark;
+
+    /** Container size the children were last laid out for */
+    private Dimension laidOutSize;
+
+    /** When the last layout ran */
+    private long lastLayoutNanos;
+
+    /** Timer running a layout that came in too soon after the last */
+    private javax.swing.Timer deferred;
+}
@@ -0,0 +1,63 @@
+package com.mycompany.maptracker;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collects timings of entrance painting and hit-testing so the
+ * component-per-icon and {@code EntranceLayer} modes can be compared, along
+ * with counts such as how many repaints each frame merged.<p>
+ *
+ * Only active when the {@code entrancerando.profile} system property is set.
+ * Every {@code REPORT_EVERY} samples of a label, the average is printed.
+ *
+ * @author aauyong
+ */
+final class PaintProfiler {
+
+    private PaintProfiler() {}
+
+    /**
+     * Records one sample for {@code label}
+     * @param label What was timed
+     * @param nanos How long it took
+     */
+    static synchronized void record(String label, long nanos) {
+        long[] acc = SAMPLES.computeIfAbsent(label, k -> new long[2]);
+        acc[0] += nanos;
+        if (++acc[1] == REPORT_EVERY) {
+            System.out.println("[profile] %s avg %.1f us over %d".formatted(
+                label, acc[0] / 1000.0 / acc[1], acc[1]));
+            acc[0] = 0;
+            acc[1] = 0;
+        }
+    }
+
+    /**
+     * Records one count for {@code label}, such as how many requests a frame
+     * merged, reported as an average count rather than a time
+     * @param label What was counted
+     * @param n How many there were
+     */
+    static synchronized void count(String label, long n) {
+        long[] acc = COUNTS.computeIfAbsent(label, k -> new long[2]);
+        acc[0] += n;
+        if (++acc[1] == REPORT_EVERY) {
+            System.out.println("[profile] %s avg %.1f over %d".formatted(
+                label, acc[0] / (double) acc[1], acc[1]));
+            acc[0] = 0;
+            acc[1] = 0;
+        }
+    }
+
+    /** Whether timings should be taken at all */
+    static final boolean ENABLED = Boolean.getBoolean("entrancerando.profile");
+
+    private static final int REPORT_EVERY = 100;
+
+    /** Running total nanos and sample count, keyed by label */
+    private static final Map<String, long[]> SAMPLES = new HashMap<>();
+
+    /** Running total and sample count of {@code count}s, keyed by label */
+    private static final Map<String, long[]> COUNTS = new HashMap<>();
+}
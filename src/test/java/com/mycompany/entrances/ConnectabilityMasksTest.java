@@ -0,0 +1,173 @@
+package com.mycompany.entrances;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Objects;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.entrancerando.SettingsHandler.Grouping;
+import com.mycompany.locationdata.LocationCatalog;
+
+/**
+ * Checks {@code ConnectabilityMasks} against the rules that
+ * {@code ConnectionHandler.areConnectable} used to check one pair at a time,
+ * for every pair of entrances in the catalog.
+ *
+ * @author aauyong
+ */
+public class ConnectabilityMasksTest {
+
+    @BeforeEach
+    void setUp() {
+        this.tracker = TrackerState.fromCatalog(LocationCatalog.load());
+    }
+
+    @Test
+    void matchesOldRulesUnderEveryGrouping() {
+        for (Grouping grouping : Grouping.values()) {
+            var masks = new ConnectabilityMasks(this.tracker, grouping);
+            assertMatches(masks, grouping);
+            masks.dispose();
+        }
+    }
+
+    @Test
+    void matchesOldRulesAfterRebuild() {
+        var masks = new ConnectabilityMasks(this.tracker, Grouping.SIMPLE);
+        for (Grouping grouping : Grouping.values()) {
+            masks.rebuild(grouping);
+            assertMatches(masks, grouping);
+        }
+    }
+
+    @Test
+    void restrictedFollowsTheWorldGroupsLeadTo() {
+        var masks = new ConnectabilityMasks(this.tracker, Grouping.RESTRICTED);
+        int g = groupOfTwoNonDungeons();
+        int first = this.tracker.getGroupMember(g, 0);
+        int second = this.tracker.getGroupMember(g, 1);
+
+        this.tracker.connect(first, anyIn(TrackerState.LIGHT, first));
+        assertEquals(TrackerState.LIGHT, this.tracker.getConnectingWorld(g));
+        assertMatches(masks, Grouping.RESTRICTED);
+
+        this.tracker.connect(second, anyIn(TrackerState.DARK, second));
+        assertEquals(-1, this.tracker.getConnectingWorld(g));
+        assertMatches(masks, Grouping.RESTRICTED);
+
+        this.tracker.clearConnection(first);
+        assertEquals(TrackerState.DARK, this.tracker.getConnectingWorld(g));
+        assertMatches(masks, Grouping.RESTRICTED);
+
+        this.tracker.clearConnection(second);
+        assertEquals(0, this.tracker.getConnectingWorld(g));
+        assertMatches(masks, Grouping.RESTRICTED);
+    }
+
+    @Test
+    void restrictedFollowsGroupConnections() {
+        var masks = new ConnectabilityMasks(this.tracker, Grouping.RESTRICTED);
+        int connected = 0;
+        for (int g = 0; g < this.tracker.groupCount(); g++) {
+            for (int h = 0; h < this.tracker.groupCount(); h++) {
+                if (g == h || this.tracker.getConnectingGroup(g) != TrackerState.NONE
+                        || !this.tracker.groupsConnectable(g, h))
+                    continue;
+                assertNotNull(this.tracker.connectGroups(g, h));
+                assertMatches(masks, Grouping.RESTRICTED);
+                connected++;
+                break;
+            }
+        }
+        assertTrue(connected > 0, "no groups could be connected");
+
+        for (int i = 0; i < this.tracker.size(); i++) {
+            this.tracker.clearConnection(i);
+        }
+        assertMatches(masks, Grouping.RESTRICTED);
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    private void assertMatches(ConnectabilityMasks masks, Grouping grouping) {
+        for (int a = 0; a < this.tracker.size(); a++) {
+            for (int b = 0; b < this.tracker.size(); b++) {
+                final int fa = a;
+                final int fb = b;
+                assertEquals(oldRule(grouping, a, b), masks.isLegal(a, b),
+                        () -> grouping + " " + this.tracker.getName(fa)
+                                + " -> " + this.tracker.getName(fb));
+            }
+        }
+    }
+
+    /** {@code ConnectionHandler.areConnectable} as it was, on ids */
+    private boolean oldRule(Grouping grouping, int a, int b) {
+        if (a == b)
+            return true;
+
+        String typeA = this.tracker.getType(a);
+        String typeB = this.tracker.getType(b);
+        boolean sameType = Objects.equals(typeA, typeB);
+        int groupA = this.tracker.getGroup(a);
+        boolean groupedA = groupA != TrackerState.NONE;
+        boolean groupedB = this.tracker.getGroup(b) != TrackerState.NONE;
+
+        switch (grouping) {
+            case SIMPLE -> {
+                return sameType && groupedA == groupedB;
+            }
+            case RESTRICTED -> {
+                if (!sameType)
+                    return false;
+                if (EntranceIcon.DUNGEON.equals(typeA))
+                    return groupedA == groupedB;
+                if (!groupedA)
+                    return true;
+                int groupWorld = this.tracker.getConnectingWorld(groupA);
+                return groupWorld == 0 || this.tracker.getWorld(b) == groupWorld;
+            }
+            case FULL, CROSSED -> {
+                boolean dropA = EntranceIcon.DROP.equals(typeA);
+                boolean dropB = EntranceIcon.DROP.equals(typeB);
+                return !(dropA || dropB) || sameType;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    /** A group with at least two members that aren't dungeons */
+    private int groupOfTwoNonDungeons() {
+        for (int g = 0; g < this.tracker.groupCount(); g++) {
+            if (this.tracker.getGroupSize(g) < 2)
+                continue;
+            if (!EntranceIcon.DUNGEON.equals(this.tracker.getType(this.tracker.getGroupMember(g, 0)))
+                    && !EntranceIcon.DUNGEON.equals(this.tracker.getType(this.tracker.getGroupMember(g, 1))))
+                return g;
+        }
+        throw new AssertionError("no group of two non-dungeons");
+    }
+
+    /** Any entrance in {@code world} other than {@code not} */
+    private int anyIn(byte world, int not) {
+        for (int i = 0; i < this.tracker.size(); i++) {
+            if (i != not && this.tracker.getWorld(i) == world)
+                return i;
+        }
+        throw new AssertionError("no entrance in world " + world);
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    private TrackerState<?, ?> tracker;
+}
@@ -0,0 +1,98 @@
+package com.mycompany.entrances;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.entrancerando.SettingsHandler;
+import com.mycompany.entrancerando.SettingsHandler.Grouping;
+import com.mycompany.locationdata.GroupRecord;
+import com.mycompany.locationdata.TestCatalogs;
+
+/**
+ * Checks {@code DeductionEngine} on small catalogs built by hand.
+ *
+ * @author aauyong
+ */
+public class DeductionEngineTest {
+
+    @AfterEach
+    void tearDown() {
+        ConnectionHandler.updateGroupSettings(SettingsHandler.DEFAULT_GROUPING);
+    }
+
+    @Test
+    void stayingVanillaIsAllowedAsAreConnectableAllows() throws InterruptedException {
+        // A light world group of two caves and a drop, and two dark caves
+        var cat = TestCatalogs.of(List.of(
+                TestCatalogs.location("Cave (West)", "cave", "light"),
+                TestCatalogs.location("Cave (East)", "cave", "light"),
+                TestCatalogs.location("Cave Drop", "drop", "light"),
+                TestCatalogs.location("Dark Cave", "cave", "dark"),
+                TestCatalogs.location("Other Dark Cave", "cave", "dark")),
+                List.of(new GroupRecord("Cave", List.of(
+                        new GroupRecord.Member("Cave (West)", "cave", null),
+                        new GroupRecord.Member("Cave (East)", "cave", null),
+                        new GroupRecord.Member("Cave Drop", "drop", null)))));
+        TrackerState<?, ?> tracker = TrackerState.fromCatalog(cat);
+        int west = tracker.indexOf("Cave (West)");
+        int drop = tracker.indexOf("Cave Drop");
+        int dark = tracker.indexOf("Dark Cave");
+
+        ConnectionHandler.updateGroupSettings(Grouping.RESTRICTED);
+        ConnectionHandler.attach(tracker);
+        tracker.connect(west, dark);
+        tracker.connect(dark, west);
+
+        // The group now leads to the dark world, but the east cave may still
+        // stay vanilla as well as pair with the other dark cave, so only the
+        // drop, which has no other drop, is forced
+        var r = deduce(tracker);
+        assertArrayEquals(new int[] {drop, drop}, r.forced());
+        assertArrayEquals(new int[0], r.impossible());
+    }
+
+    @Test
+    void stayingVanillaIsNeverForcedOnAPartner() throws InterruptedException {
+        var cat = TestCatalogs.of(List.of(
+                TestCatalogs.location("Cave", "cave", "light"),
+                TestCatalogs.location("Other Cave", "cave", "light"),
+                TestCatalogs.location("Drop", "drop", "light")),
+                List.of());
+        TrackerState<?, ?> tracker = TrackerState.fromCatalog(cat);
+        int drop = tracker.indexOf("Drop");
+
+        ConnectionHandler.updateGroupSettings(Grouping.SIMPLE);
+        ConnectionHandler.attach(tracker);
+
+        // The caves may pair or stay vanilla, the drop can only stay vanilla
+        var r = deduce(tracker);
+        assertArrayEquals(new int[] {drop, drop}, r.forced());
+        assertArrayEquals(new int[0], r.impossible());
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    private static DeductionEngine.Result deduce(TrackerState<?, ?> tracker)
+            throws InterruptedException {
+        var engine = new DeductionEngine(tracker);
+        var result = new AtomicReference<DeductionEngine.Result>();
+        var done = new CountDownLatch(1);
+        engine.request(r -> {
+            result.set(r);
+            done.countDown();
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS), "no result");
+        engine.shutdown();
+        return result.get();
+    }
+}
@@ -0,0 +1,145 @@
+package com.mycompany.entrances;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.locationdata.LocationCatalog;
+
+/**
+ * Checks {@code ReachabilityEngine} on the catalog as connections are made
+ * and cleared.
+ *
+ * @author aauyong
+ */
+public class ReachabilityEngineTest {
+
+    @BeforeEach
+    void setUp() {
+        this.tracker = TrackerState.fromCatalog(LocationCatalog.load());
+        this.start = id("Links House");
+        this.engine = new ReachabilityEngine(this.tracker, this.start);
+    }
+
+    @Test
+    void reachesTheStartsOverworldWithNothingConnected() {
+        assertTrue(this.engine.isReachable(this.start));
+        assertTrue(this.engine.isReachable(id("Chicken House")));
+        assertFalse(this.engine.isReachable(id("Dark Sanctuary Hint")));
+        assertEquals(inWorld(TrackerState.LIGHT), this.engine.reachableCount());
+    }
+
+    @Test
+    void connectReachesThroughCavesIntoTheOtherWorld() {
+        int chicken = id("Chicken House");
+        int oldManWest = id("Old Man Cave (West)");
+        int oldManEast = id("Old Man Cave (East)");
+        int sanctuary = id("Dark Sanctuary Hint");
+
+        // Chicken House leads into Old Man Cave, whose other door comes out
+        // at the Dark Sanctuary Hint, in the dark world
+        connectBoth(chicken, oldManWest);
+        assertFalse(this.engine.isReachable(sanctuary));
+
+        connectBoth(sanctuary, oldManEast);
+        assertTrue(this.engine.isReachable(sanctuary));
+        assertTrue(this.engine.isReachable(id("Dark World Shop")));
+        assertEquals(this.tracker.size(), this.engine.reachableCount());
+    }
+
+    @Test
+    void connectionsWithinTheOtherWorldReachNothing() {
+        int sanctuary = id("Dark Sanctuary Hint");
+        int shop = id("Dark World Shop");
+        connectBoth(sanctuary, shop);
+        assertFalse(this.engine.isReachable(sanctuary));
+        assertFalse(this.engine.isReachable(shop));
+
+        // Going in at Chicken House finds the interior of the lake shop,
+        // though not the dark world outside it
+        int lakeShop = id("Dark Lake Hylia Shop");
+        this.tracker.connect(id("Chicken House"), lakeShop);
+        assertTrue(this.engine.isReachable(lakeShop));
+        assertFalse(this.engine.isReachable(shop));
+    }
+
+    @Test
+    void deleteSplitsWhatWasReached() {
+        int chicken = id("Chicken House");
+        int oldManWest = id("Old Man Cave (West)");
+        int oldManEast = id("Old Man Cave (East)");
+        int sanctuary = id("Dark Sanctuary Hint");
+        connectBoth(chicken, oldManWest);
+        connectBoth(sanctuary, oldManEast);
+        assertTrue(this.engine.isReachable(sanctuary));
+
+        this.tracker.clearConnection(chicken);
+        this.tracker.clearConnection(oldManWest);
+        assertFalse(this.engine.isReachable(id("Dark World Shop")));
+        assertTrue(this.engine.isReachable(chicken));
+
+        // Going in at Old Man Cave's east door still finds the sanctuary
+        assertTrue(this.engine.isReachable(sanctuary));
+        assertEquals(inWorld(TrackerState.LIGHT) + 1, this.engine.reachableCount());
+    }
+
+    @Test
+    void followedChangesMatchARebuild() {
+        var random = new Random(11);
+        int n = this.tracker.size();
+        for (int step = 0; step < 2000; step++) {
+            int a = random.nextInt(n);
+            if (this.tracker.getConnection(a) == TrackerState.NONE)
+                this.tracker.connect(a, random.nextInt(n));
+            else
+                this.tracker.clearConnection(a);
+
+            if (step % 50 == 0) {
+                var fresh = new ReachabilityEngine(this.tracker, this.start);
+                assertArrayEquals(fresh.getReachable(), this.engine.getReachable(),
+                        "after step " + step);
+                fresh.dispose();
+            }
+        }
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    private void connectBoth(int a, int b) {
+        this.tracker.connect(a, b);
+        this.tracker.connect(b, a);
+    }
+
+    private int inWorld(byte world) {
+        int count = 0;
+        for (int i = 0; i < this.tracker.size(); i++) {
+            if (this.tracker.getWorld(i) == world)
+                count++;
+        }
+        return count;
+    }
+
+    private int id(String name) {
+        int id = this.tracker.indexOf(name);
+        assertTrue(id != TrackerState.NONE, name);
+        return id;
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    private TrackerState<?, ?> tracker;
+
+    private int start;
+
+    private ReachabilityEngine engine;
+}
@@ -0,0 +1,136 @@
+package com.mycompany.entrances;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.locationdata.LocationCatalog;
+
+/**
+ * Checks {@code RouteFinder} on the catalog as connections are made and
+ * cleared.
+ *
+ * @author aauyong
+ */
+public class RouteFinderTest {
+
+    @BeforeEach
+    void setUp() {
+        this.tracker = TrackerState.fromCatalog(LocationCatalog.load());
+        this.finder = new RouteFinder(this.tracker);
+    }
+
+    @Test
+    void noRouteToTheOtherWorldWithoutConnections() {
+        int a = id("Links House");
+        assertNull(this.finder.route(a, id("Dark Sanctuary Hint")));
+        assertArrayEquals(new int[] {a}, this.finder.route(a, a));
+    }
+
+    @Test
+    void routeCrossesTheOverworld() {
+        int links = id("Links House");
+        int chicken = id("Chicken House");
+        assertArrayEquals(new int[] {links, chicken}, this.finder.route(links, chicken));
+        assertArrayEquals(new int[] {chicken, links}, this.finder.route(chicken, links));
+    }
+
+    @Test
+    void routeGoesThroughDoorsAndCaves() {
+        int links = id("Links House");
+        int chicken = id("Chicken House");
+        int oldManWest = id("Old Man Cave (West)");
+        int oldManEast = id("Old Man Cave (East)");
+        int sanctuary = id("Dark Sanctuary Hint");
+        int shop = id("Dark World Shop");
+        connectBoth(chicken, oldManWest);
+        connectBoth(sanctuary, oldManEast);
+
+        // Over to Chicken House, in and out of Old Man Cave's west door,
+        // across the cave, out of its east door at the Dark Sanctuary Hint,
+        // and over the dark world to the shop
+        assertArrayEquals(new int[] {links, chicken, oldManWest, oldManEast, sanctuary, shop},
+                this.finder.route(links, shop));
+        assertArrayEquals(new int[] {shop, sanctuary, oldManEast, oldManWest, chicken, links},
+                this.finder.route(shop, links));
+    }
+
+    @Test
+    void routeEndsInsideWhenTheDoorIsOnlyReachedFromTheCave() {
+        int links = id("Links House");
+        int bottom = id("Bumper Cave (Bottom)");
+        int top = id("Bumper Cave (Top)");
+        this.tracker.connect(links, bottom);
+
+        assertArrayEquals(new int[] {links, bottom, top}, this.finder.route(links, top));
+    }
+
+    @Test
+    void clearingAConnectionDropsTheRoute() {
+        int links = id("Links House");
+        int chicken = id("Chicken House");
+        int oldManWest = id("Old Man Cave (West)");
+        int oldManEast = id("Old Man Cave (East)");
+        int sanctuary = id("Dark Sanctuary Hint");
+        connectBoth(chicken, oldManWest);
+        connectBoth(sanctuary, oldManEast);
+        int shop = id("Dark World Shop");
+        assertTrue(this.finder.route(links, shop) != null);
+
+        this.tracker.clearConnection(sanctuary);
+        assertNull(this.finder.route(links, shop));
+    }
+
+    @Test
+    void keptSearchesMatchAFreshFinder() {
+        var random = new Random(7);
+        int n = this.tracker.size();
+        int[] from = {id("Links House"), id("Chicken House"), id("Old Man Cave (West)")};
+        for (int step = 0; step < 2000; step++) {
+            int a = random.nextInt(n);
+            if (this.tracker.getConnection(a) == TrackerState.NONE)
+                this.tracker.connect(a, random.nextInt(n));
+            else
+                this.tracker.clearConnection(a);
+
+            if (step % 25 != 0)
+                continue;
+            var fresh = new RouteFinder(this.tracker);
+            for (int f : from) {
+                for (int to = 0; to < n; to++) {
+                    assertArrayEquals(fresh.route(f, to), this.finder.route(f, to),
+                            "after step " + step + " from " + f + " to " + to);
+                }
+            }
+            fresh.dispose();
+        }
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    private void connectBoth(int a, int b) {
+        this.tracker.connect(a, b);
+        this.tracker.connect(b, a);
+    }
+
+    private int id(String name) {
+        int id = this.tracker.indexOf(name);
+        assertTrue(id != TrackerState.NONE, name);
+        return id;
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    private TrackerState<?, ?> tracker;
+
+    private RouteFinder finder;
+}
@@ -0,0 +1,91 @@
+package com.mycompany.entrances;
+
+import com.mycompany.entrancerando.SettingsHandler.Grouping;
+import com.mycompany.locationdata.LocationCatalog;
+
+/**
+ * Times {@code ShuffleGenerator}, and the engines that follow the tracker on
+ * the complete shuffles it generates. Run by hand, it isn't a test.
+ *
+ * @author aauyong
+ */
+public final class ShuffleBenchmark {
+
+    /**
+     * Prints how many mappings per second are generated for each grouping,
+     * on one thread and on all of them, then how many per second can be fed
+     * to a tracker followed by {@code ConnectabilityMasks},
+     * {@code ReachabilityEngine} and {@code RouteFinder}, with the
+     * reachability and every route from the start asked for after each.
+     * <pre>
+     *  ShuffleBenchmark [mappings per grouping] [mappings fed]
+     * </pre>
+     */
+    public static void main(String[] args) {
+        long count = args.length > 0 ? Long.parseLong(args[0]) : 200_000;
+        int fed = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        LocationCatalog cat = LocationCatalog.load();
+        for (Grouping g : Grouping.values()) {
+            var gen = new ShuffleGenerator(cat, g);
+            gen.stream(1, count / 10).forEach(m -> {});
+
+            long start = System.nanoTime();
+            long valid = gen.stream(2, count).filter(gen::isValid).count();
+            double single = count / ((System.nanoTime() - start) / 1e9);
+
+            start = System.nanoTime();
+            gen.stream(2, count).parallel().forEach(m -> {});
+            double all = count / ((System.nanoTime() - start) / 1e9);
+
+            System.out.printf("%-10s %d/%d valid, %.0f mappings/s on one thread, %.0f/s on %d%n",
+                    g.asString(), valid, count, single, all,
+                    Runtime.getRuntime().availableProcessors());
+            feed(cat, gen, fed);
+        }
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /**
+     * Feeds {@code count} mappings of {@code gen} to a tracker followed by
+     * the engines, and prints how long it took
+     */
+    private static void feed(LocationCatalog cat, ShuffleGenerator gen, int count) {
+        TrackerState<?, ?> tracker = TrackerState.fromCatalog(cat);
+        var masks = new ConnectabilityMasks(tracker, gen.getGrouping());
+        int from = Math.max(0, tracker.indexOf(START_ENTRANCE));
+        var reach = new ReachabilityEngine(tracker, from);
+        var routes = new RouteFinder(tracker);
+        var mappings = gen.stream(3, count).toList();
+
+        long reached = 0;
+        long routed = 0;
+        long start = System.nanoTime();
+        for (int[] m : mappings) {
+            ShuffleGenerator.apply(m, tracker);
+            reached += reach.reachableCount();
+            for (int to = 0; to < tracker.size(); to++) {
+                if (routes.route(from, to) != null)
+                    routed++;
+            }
+        }
+        double secs = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-10s fed %d mappings at %.0f/s, %.1f reachable and %.1f routed on average%n",
+                gen.getGrouping().asString(), count, count / secs, reached / (double) count, routed / (double) count);
+
+        routes.dispose();
+        reach.dispose();
+        masks.dispose();
+    }
+
+    private ShuffleBenchmark() {}
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    /** Entrance that reachability and routes are measured from */
+    private static final String START_ENTRANCE = "Links House";
+}
@@ -0,0 +1,106 @@
+package com.mycompany.entrances;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.entrancerando.SettingsHandler.Grouping;
+import com.mycompany.locationdata.GroupRecord;
+import com.mycompany.locationdata.LocationCatalog;
+import com.mycompany.locationdata.TestCatalogs;
+
+/**
+ * Checks the mappings of {@code ShuffleGenerator}.
+ *
+ * @author aauyong
+ */
+public class ShuffleGeneratorTest {
+
+    @Test
+    void parallelStreamGivesTheSameMappings() {
+        var cat = LocationCatalog.load();
+        for (Grouping grouping : Grouping.values()) {
+            var gen = new ShuffleGenerator(cat, grouping);
+            List<int[]> sequential = gen.stream(42, 300).collect(Collectors.toList());
+            List<int[]> parallel = gen.stream(42, 300).parallel().collect(Collectors.toList());
+            List<int[]> again = gen.stream(42, 300).collect(Collectors.toList());
+            assertEquals(sequential.size(), parallel.size());
+            for (int i = 0; i < sequential.size(); i++) {
+                assertArrayEquals(sequential.get(i), parallel.get(i), grouping + " mapping " + i);
+                assertArrayEquals(sequential.get(i), again.get(i), grouping + " mapping " + i);
+            }
+        }
+    }
+
+    @Test
+    void mappingsAreValid() {
+        var cat = LocationCatalog.load();
+        for (Grouping grouping : Grouping.values()) {
+            var gen = new ShuffleGenerator(cat, grouping);
+            gen.stream(7, 300).forEach(m -> assertTrue(gen.isValid(m), grouping.toString()));
+        }
+    }
+
+    @Test
+    void groupsMustBePairedMemberByMember() {
+        var cat = TestCatalogs.of(List.of(
+                TestCatalogs.location("West Cave (Left)", "cave", "light"),
+                TestCatalogs.location("West Cave (Right)", "cave", "light"),
+                TestCatalogs.location("East Cave (Left)", "cave", "light"),
+                TestCatalogs.location("East Cave (Right)", "cave", "light")),
+                List.of(group("West Cave"), group("East Cave")));
+        var gen = new ShuffleGenerator(cat, Grouping.SIMPLE);
+
+        // Members are paired in the order they are listed
+        assertTrue(gen.isValid(new int[] {2, 3, 0, 1}));
+        assertFalse(gen.isValid(new int[] {3, 2, 1, 0}));
+        assertTrue(gen.isValid(new int[] {0, 1, 2, 3}));
+        assertFalse(gen.isValid(new int[] {2, 1, 0, 3}));
+    }
+
+    @Test
+    void unsatisfiableGroupingGivesUp() {
+        // Whichever member goes first leads the group to its own world, and
+        // the other can only connect to itself, in the other world
+        var cat = TestCatalogs.of(List.of(
+                TestCatalogs.location("Split Cave (Drop)", "drop", "dark"),
+                TestCatalogs.location("Split Cave (Door)", "cave", "light")),
+                List.of(new GroupRecord("Split Cave", List.of(
+                        new GroupRecord.Member("Split Cave (Drop)", "drop", null),
+                        new GroupRecord.Member("Split Cave (Door)", "cave", null)))));
+        var gen = new ShuffleGenerator(cat, Grouping.RESTRICTED);
+
+        assertThrows(IllegalStateException.class, () -> gen.generate(1));
+    }
+
+    @Test
+    void applyConnectsTheTracker() {
+        var cat = LocationCatalog.load();
+        var gen = new ShuffleGenerator(cat, Grouping.FULL);
+        TrackerState<?, ?> tracker = TrackerState.fromCatalog(cat);
+        for (long seed = 0; seed < 5; seed++) {
+            int[] m = gen.generate(seed);
+            ShuffleGenerator.apply(m, tracker);
+            for (int a = 0; a < m.length; a++) {
+                assertEquals(m[a], tracker.getConnection(a));
+            }
+        }
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    private static GroupRecord group(String name) {
+        return new GroupRecord(name, List.of(
+                new GroupRecord.Member(name + " (Left)", "cave", null),
+                new GroupRecord.Member(name + " (Right)", "cave", null)));
+    }
+}
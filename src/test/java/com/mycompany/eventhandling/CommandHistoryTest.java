@@ -0,0 +1,163 @@
+package com.mycompany.eventhandling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.entrances.EntranceGroup;
+import com.mycompany.entrances.EntranceIcon;
+import com.mycompany.entrances.TrackerState;
+import com.mycompany.locationdata.LocationCatalog;
+
+/**
+ * Checks undoing and redoing commands of {@code CommandHistory} on the
+ * catalog.
+ *
+ * @author aauyong
+ */
+public class CommandHistoryTest {
+
+    @BeforeEach
+    void setUp() {
+        this.tracker = TrackerState.fromCatalog(LocationCatalog.load());
+        this.icons = new EntranceIcon[this.tracker.size()];
+        for (int i = 0; i < this.icons.length; i++) {
+            this.icons[i] = new EntranceIcon(this.tracker, i, 0, 0, this.tracker.getType(i), 1);
+        }
+        this.log = new EventLog(this.tracker);
+        this.history = new CommandHistory(this.tracker, this.log, 1 << 20);
+    }
+
+    @Test
+    void undoAndRedoAConnection() {
+        connect(0, 1);
+        assertTrue(this.history.canUndo());
+
+        assertTrue(this.history.undo());
+        assertEquals(TrackerState.NONE, this.tracker.getConnection(0));
+        assertEquals(TrackerState.NONE, this.tracker.getConnection(1));
+        assertTrue(this.log.isEmpty());
+        assertFalse(this.history.canUndo());
+        assertTrue(this.history.canRedo());
+
+        assertTrue(this.history.redo());
+        assertEquals(1, this.tracker.getConnection(0));
+        assertEquals(0, this.tracker.getConnection(1));
+        assertEquals(1, this.log.size());
+        assertEquals(EntranceEvent.CONNECTION, this.log.getType(0));
+        assertSame(this.icons[0], this.log.getLast().getPlaceA());
+
+        // The event was appended again under a new id, which undo still finds
+        assertTrue(this.history.undo());
+        assertTrue(this.log.isEmpty());
+        assertFalse(this.history.undo());
+    }
+
+    @Test
+    void undoADeletionPutsTheEventBack() {
+        connect(2, 3);
+        this.history.begin();
+        EntranceEvent e = this.log.remove(0);
+        this.history.removed(e);
+        this.tracker.clearConnection(2);
+        this.tracker.clearConnection(3);
+        this.history.end();
+        assertTrue(this.log.isEmpty());
+
+        assertTrue(this.history.undo());
+        assertEquals(3, this.tracker.getConnection(2));
+        assertEquals(2, this.tracker.getConnection(3));
+        assertEquals(1, this.log.size());
+        assertSame(this.icons[2], this.log.get(0).getPlaceA());
+        assertSame(this.icons[3], this.log.get(0).getPlaceB());
+    }
+
+    @Test
+    void nestedBeginsMakeOneCommand() {
+        this.history.begin();
+        connect(0, 1);
+        connect(4, 5);
+        this.history.end();
+
+        assertTrue(this.history.undo());
+        assertFalse(this.history.canUndo());
+        assertEquals(TrackerState.NONE, this.tracker.getConnection(0));
+        assertEquals(TrackerState.NONE, this.tracker.getConnection(4));
+        assertTrue(this.log.isEmpty());
+    }
+
+    @Test
+    void actionsThatChangeNothingAreNotKept() {
+        this.history.begin();
+        this.history.end();
+        assertFalse(this.history.canUndo());
+        assertEquals(0, this.history.getBytes());
+
+        // Nor do they forget what could be redone
+        connect(0, 1);
+        this.history.undo();
+        this.history.begin();
+        this.history.end();
+        assertTrue(this.history.canRedo());
+    }
+
+    @Test
+    void aNewCommandForgetsRedos() {
+        connect(0, 1);
+        this.history.undo();
+        connect(2, 3);
+        assertFalse(this.history.canRedo());
+        assertFalse(this.history.redo());
+    }
+
+    @Test
+    void oldestCommandsAreForgottenPastTheBudget() {
+        connect(0, 1);
+        long one = this.history.getBytes();
+        this.history = new CommandHistory(this.tracker, this.log, one * 3);
+
+        for (int i = 2; i < 12; i += 2) {
+            connect(i, i + 1);
+            assertTrue(this.history.getBytes() <= one * 3);
+        }
+        int undone = 0;
+        while (this.history.undo()) {
+            undone++;
+        }
+        assertEquals(3, undone);
+        // The first commands were forgotten, so their connections stay
+        assertEquals(3, this.tracker.getConnection(2));
+        assertEquals(TrackerState.NONE, this.tracker.getConnection(6));
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /** Connects {@code a} and {@code b} both ways, logged as one command */
+    private void connect(int a, int b) {
+        this.history.begin();
+        this.tracker.connect(a, b);
+        this.tracker.connect(b, a);
+        var e = new EntranceEvent(EntranceEvent.CONNECTION, this.icons[a], this.icons[b]);
+        this.log.append(e);
+        this.history.added(e);
+        this.history.end();
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    private TrackerState<EntranceIcon, EntranceGroup> tracker;
+
+    private EntranceIcon[] icons;
+
+    private EventLog log;
+
+    private CommandHistory history;
+}
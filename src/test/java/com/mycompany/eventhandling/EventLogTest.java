@@ -0,0 +1,235 @@
+package com.mycompany.eventhandling;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.entrances.EntranceGroup;
+import com.mycompany.entrances.EntranceIcon;
+import com.mycompany.entrances.TrackerState;
+import com.mycompany.locationdata.LocationCatalog;
+
+/**
+ * Checks {@code EventLog} on entrances of the catalog.
+ *
+ * @author aauyong
+ */
+public class EventLogTest {
+
+    @BeforeEach
+    void setUp() {
+        this.tracker = TrackerState.fromCatalog(LocationCatalog.load());
+        this.icons = new EntranceIcon[this.tracker.size()];
+        for (int i = 0; i < this.icons.length; i++) {
+            this.icons[i] = new EntranceIcon(this.tracker, i, 0, 0, this.tracker.getType(i), 1);
+        }
+        this.log = new EventLog(this.tracker);
+    }
+
+    @Test
+    void appendsAreKeptOldestFirst() {
+        assertTrue(this.log.isEmpty());
+        assertNull(this.log.getLast());
+
+        this.log.append(connection(0, 1));
+        this.log.append(new EntranceEvent(EntranceEvent.USELESS, this.icons[2]));
+        this.log.append(new EntranceEvent(EntranceEvent.DELETION, this.icons[3], this.icons[4]));
+
+        assertEquals(3, this.log.size());
+        assertEquals(EntranceEvent.CONNECTION, this.log.getType(0));
+        assertEquals(EntranceEvent.USELESS, this.log.getType(1));
+        assertEquals(EntranceEvent.DELETION, this.log.getType(2));
+        assertEquals(EntranceEvent.DELETION, this.log.getLast().getEventType());
+        assertSame(this.icons[3], this.log.getLast().getPlaceA());
+    }
+
+    @Test
+    void appendAllTellsListenersOnce() {
+        List<int[]> appended = new ArrayList<>();
+        this.log.addListener(new EventLog.Listener() {
+            @Override
+            public void eventsAppended(int from, int to) {
+                appended.add(new int[] {from, to});
+            }
+
+            @Override
+            public void eventRemoved(int i, EntranceEvent e) {}
+        });
+
+        this.log.append(connection(0, 1));
+        this.log.appendAll(List.of(connection(2, 3), connection(4, 5), connection(6, 7)));
+        this.log.appendAll(List.of());
+
+        assertEquals(2, appended.size());
+        assertArrayEquals(new int[] {0, 1}, appended.get(0));
+        assertArrayEquals(new int[] {1, 4}, appended.get(1));
+        assertEquals(4, this.log.size());
+    }
+
+    @Test
+    void grows() {
+        for (int i = 0; i < 10_000; i++) {
+            this.log.append(connection(i % this.icons.length, (i * 7) % this.icons.length));
+        }
+        assertEquals(10_000, this.log.size());
+        for (int i = 0; i < 10_000; i += 999) {
+            assertSame(this.icons[i % this.icons.length], this.log.get(i).getPlaceA());
+            assertSame(this.icons[(i * 7) % this.icons.length], this.log.get(i).getPlaceB());
+        }
+    }
+
+    @Test
+    void columnsGiveBackWhatWasAppended() {
+        this.log.append(connection(0, 1));
+        this.log.append(new EntranceEvent(EntranceEvent.USELESS, this.icons[2]));
+
+        assertEquals(0, this.log.getEntranceA(0));
+        assertEquals(1, this.log.getEntranceB(0));
+        assertEquals(2, this.log.getEntranceA(1));
+        assertEquals(TrackerState.NONE, this.log.getEntranceB(1));
+        assertNull(this.log.get(1).getPlaceB());
+        assertEquals(this.tracker.getName(2), this.log.nameOf(this.log.getEntranceA(1)));
+        assertEquals("", this.log.nameOf(this.log.getEntranceB(1)));
+    }
+
+    @Test
+    void appendAllKeepsTheTimeGiven() {
+        var at = LocalTime.of(9, 30, 15);
+        this.log.appendAll(List.of(connection(0, 1), connection(1, 0)), at);
+        assertEquals(at, this.log.getTime(0));
+        assertEquals(at, this.log.getTime(1));
+    }
+
+    @Test
+    void packEventsCopiesTheColumns() {
+        var at = LocalTime.of(23, 59, 59);
+        this.log.appendAll(List.of(connection(3, 4),
+                new EntranceEvent(EntranceEvent.USELESS, this.icons[5]),
+                new EntranceEvent(EntranceEvent.DELETION, this.icons[6], this.icons[7])), at);
+
+        int[] out = new int[8];
+        this.log.packEvents(1, 3, out);
+        int second = at.toSecondOfDay();
+        assertArrayEquals(new int[] {
+                EntranceEvent.typeCode(EntranceEvent.USELESS), 5, TrackerState.NONE, second,
+                EntranceEvent.typeCode(EntranceEvent.DELETION), 6, 7, second}, out);
+    }
+
+    @Test
+    void idsStayWithTheirEvents() {
+        int first = this.log.append(connection(0, 1));
+        int second = this.log.append(connection(2, 3));
+        int third = this.log.append(connection(4, 5));
+        assertEquals(second, this.log.getId(1));
+
+        assertEquals(second, this.log.remove(1).getId());
+        assertEquals(2, this.log.size());
+        assertEquals(-1, this.log.indexOf(second));
+        assertNull(this.log.getById(second));
+        assertNull(this.log.removeById(second));
+        assertEquals(1, this.log.indexOf(third));
+        assertSame(this.icons[4], this.log.getById(third).getPlaceA());
+
+        // A new event gets a new id, never the removed one
+        int fourth = this.log.append(connection(6, 7));
+        assertTrue(fourth != second);
+        assertEquals(first, this.log.removeById(first).getId());
+        assertEquals(0, this.log.indexOf(third));
+        assertEquals(1, this.log.indexOf(fourth));
+        assertEquals(-1, this.log.indexOf(12345));
+    }
+
+    @Test
+    void removalsAreToldWithTheirIndex() {
+        List<Integer> removed = new ArrayList<>();
+        this.log.addListener(new EventLog.Listener() {
+            @Override
+            public void eventsAppended(int from, int to) {}
+
+            @Override
+            public void eventRemoved(int i, EntranceEvent e) {
+                removed.add(i);
+            }
+        });
+        this.log.append(connection(0, 1));
+        int id = this.log.append(connection(2, 3));
+        this.log.append(connection(4, 5));
+
+        this.log.removeById(id);
+        this.log.remove(0);
+        assertEquals(List.of(1, 0), removed);
+    }
+
+    @Test
+    void compactionKeepsIndicesAndIds() throws Exception {
+        int n = 1000;
+        var random = new Random(3);
+        List<Integer> kept = new ArrayList<>();
+        SwingUtilities.invokeAndWait(() -> {
+            for (int i = 0; i < n; i++) {
+                kept.add(this.log.append(connection(i % this.icons.length, 0)));
+            }
+        });
+
+        // Remove past COMPACT_AT again and again, appending in between, so
+        // compactions land while the log keeps changing
+        for (int round = 0; round < 20; round++) {
+            SwingUtilities.invokeAndWait(() -> {
+                for (int k = 0; k < 40; k++) {
+                    int i = random.nextInt(kept.size());
+                    int id = kept.remove(i);
+                    assertEquals(id, this.log.remove(i).getId());
+                }
+                for (int k = 0; k < 10; k++) {
+                    kept.add(this.log.append(connection(k, 1)));
+                }
+            });
+            Thread.sleep(5);
+            SwingUtilities.invokeAndWait(() -> assertKept(kept));
+        }
+
+        // Let the last compaction be swapped in
+        Thread.sleep(100);
+        SwingUtilities.invokeAndWait(() -> assertKept(kept));
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    private void assertKept(List<Integer> kept) {
+        assertEquals(kept.size(), this.log.size());
+        for (int i = 0; i < kept.size(); i++) {
+            int id = kept.get(i);
+            assertEquals(id, this.log.getId(i));
+            assertEquals(i, this.log.indexOf(id));
+            assertEquals(id, this.log.getById(id).getId());
+        }
+    }
+
+    private EntranceEvent connection(int a, int b) {
+        return new EntranceEvent(EntranceEvent.CONNECTION, this.icons[a], this.icons[b]);
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    private TrackerState<EntranceIcon, EntranceGroup> tracker;
+
+    private EntranceIcon[] icons;
+
+    private EventLog log;
+}
@@ -0,0 +1,173 @@
+package com.mycompany.eventhandling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.entrances.EntranceGroup;
+import com.mycompany.entrances.EntranceIcon;
+import com.mycompany.entrances.TrackerState;
+import com.mycompany.locationdata.LocationCatalog;
+
+/**
+ * Checks that replaying a {@code SessionJournal} into a fresh tracker and log
+ * gives back the session it was written from.
+ *
+ * @author aauyong
+ */
+public class SessionJournalTest {
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.dir = Files.createTempDirectory("journal");
+        this.file = this.dir.resolve("session.journal");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(this.file);
+        Files.deleteIfExists(this.dir);
+    }
+
+    @Test
+    void replayGivesBackTheSession() throws IOException {
+        var first = new Session(this.file);
+        first.journal.start(false);
+        play(first);
+        first.journal.close();
+
+        var second = new Session(this.file);
+        assertTrue(second.journal.hasSession());
+        assertTrue(second.journal.replay() > 0);
+        assertSameSession(first, second);
+    }
+
+    @Test
+    void aCutOffRecordEndsTheReplay() throws IOException {
+        var first = new Session(this.file);
+        first.journal.start(false);
+        play(first);
+        int kept = first.log.size();
+        first.log.append(first.event(EntranceEvent.USELESS, 9, TrackerState.NONE));
+        first.journal.close();
+
+        // Lose the end of the last record, as a crash mid write would
+        try (var ch = FileChannel.open(this.file, StandardOpenOption.WRITE)) {
+            ch.truncate(ch.size() - 3);
+        }
+        var second = new Session(this.file);
+        second.journal.replay();
+        assertEquals(kept, second.log.size());
+        first.log.remove(kept);
+        assertSameSession(first, second);
+
+        // Journaling again writes over the cut off record
+        second.journal.start(true);
+        second.log.append(second.event(EntranceEvent.USELESS, 10, TrackerState.NONE));
+        second.journal.close();
+        var third = new Session(this.file);
+        third.journal.replay();
+        assertSameSession(second, third);
+    }
+
+    @Test
+    void nothingToReplayFromAnotherFile() throws IOException {
+        Files.write(this.file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+        var s = new Session(this.file);
+        assertFalse(s.journal.hasSession());
+        assertEquals(0, s.journal.replay());
+        assertTrue(s.log.isEmpty());
+    }
+
+    /*===========================================================================
+    Private Methods
+    ===========================================================================*/
+
+    /** Connects, deletes and logs a little of everything on {@code s} */
+    private static void play(Session s) {
+        TrackerState<EntranceIcon, EntranceGroup> t = s.tracker;
+        t.connect(0, 1);
+        t.connect(1, 0);
+        s.log.append(s.event(EntranceEvent.CONNECTION, 0, 1));
+        t.connect(2, 3);
+        s.log.append(s.event(EntranceEvent.CONNECTION, 2, 3));
+        s.log.appendAll(List.of(s.event(EntranceEvent.USELESS, 4, TrackerState.NONE),
+                s.event(EntranceEvent.USELESS, 5, TrackerState.NONE)), LocalTime.of(8, 0, 30));
+
+        t.clearConnection(2);
+        s.log.remove(1);
+        s.log.append(s.event(EntranceEvent.DELETION, 2, 3));
+
+        for (int g = 0; g < t.groupCount(); g++) {
+            for (int h = g + 1; h < t.groupCount(); h++) {
+                if (t.groupsConnectable(g, h)) {
+                    assertNotNull(t.connectGroups(g, h));
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void assertSameSession(Session expected, Session actual) {
+        TrackerState<EntranceIcon, EntranceGroup> e = expected.tracker;
+        TrackerState<EntranceIcon, EntranceGroup> a = actual.tracker;
+        for (int i = 0; i < e.size(); i++) {
+            assertEquals(e.getConnection(i), a.getConnection(i), e.getName(i));
+            assertEquals(e.getState(i), a.getState(i), e.getName(i));
+        }
+        for (int g = 0; g < e.groupCount(); g++) {
+            assertEquals(e.getConnectingGroup(g), a.getConnectingGroup(g), "group " + g);
+        }
+        assertEquals(expected.log.size(), actual.log.size());
+        for (int i = 0; i < expected.log.size(); i++) {
+            assertEquals(expected.log.getType(i), actual.log.getType(i));
+            assertEquals(expected.log.getEntranceA(i), actual.log.getEntranceA(i));
+            assertEquals(expected.log.getEntranceB(i), actual.log.getEntranceB(i));
+            assertEquals(expected.log.getTime(i), actual.log.getTime(i));
+        }
+    }
+
+    /** A tracker of the catalog with its icons, its log and their journal */
+    private static final class Session {
+        Session(Path file) {
+            this.tracker = TrackerState.fromCatalog(LocationCatalog.load());
+            this.icons = new EntranceIcon[this.tracker.size()];
+            for (int i = 0; i < this.icons.length; i++) {
+                this.icons[i] = new EntranceIcon(this.tracker, i, 0, 0, this.tracker.getType(i), 1);
+            }
+            this.log = new EventLog(this.tracker);
+            this.journal = new SessionJournal(file, this.tracker, this.log);
+        }
+
+        EntranceEvent event(String type, int a, int b) {
+            return new EntranceEvent(type, this.icons[a],
+                    b == TrackerState.NONE ? null : this.icons[b]);
+        }
+
+        final TrackerState<EntranceIcon, EntranceGroup> tracker;
+        final EntranceIcon[] icons;
+        final EventLog log;
+        final SessionJournal journal;
+    }
+
+    /*===========================================================================
+    Private Members
+    ===========================================================================*/
+
+    private Path dir;
+
+    private Path file;
+}
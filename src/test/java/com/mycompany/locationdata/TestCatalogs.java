@@ -0,0 +1,29 @@
+package com.mycompany.locationdata;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Builds small catalogs by hand for tests, instead of from the JSON files.
+ *
+ * @author aauyong
+ */
+public final class TestCatalogs {
+
+    /** Compiles {@code locs} and {@code groups} as if read from the files */
+    public static LocationCatalog of(List<LocationRecord> locs, List<GroupRecord> groups) {
+        try {
+            return CatalogCompiler.compile(locs, groups);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** A location at the middle of the map, with no id */
+    public static LocationRecord location(String name, String type, String world) {
+        return new LocationRecord(name, type, world, 2048, 2048, null);
+    }
+
+    private TestCatalogs() {}
+}